@@ -0,0 +1,25 @@
+package com.mk.task.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of the benchmarks jar.
+ * Runs the benchmarks selected by the usual JMH arguments, always with the GC profiler,
+ * so that the allocation rate (gc.alloc.rate.norm) is reported next to the timings.
+ * <p>
+ * Eg: java -jar target/benchmarks.jar MessageHandlerBenchmark -p payloadSize=256
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
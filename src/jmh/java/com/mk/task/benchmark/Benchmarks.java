@@ -0,0 +1,96 @@
+package com.mk.task.benchmark;
+
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.TextMessageHandler;
+
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared setup of the benchmarks.
+ */
+final class Benchmarks {
+
+    final static String TEXT_CODEC = "text";
+    final static String BINARY_CODEC = "binary";
+
+    final static OutputStream DISCARDING = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Same handlers as created by {@link com.mk.task.Application} for the given codec.
+     */
+    static MessageHandler messageHandler(String codec, InputStream in, OutputStream out) {
+        if (BINARY_CODEC.equals(codec)) {
+            return new BinaryMessageHandler(in, out);
+        }
+        return new TextMessageHandler(out == null ? null : new BufferedWriter(new OutputStreamWriter(out)),
+                in == null ? null : new Scanner(in));
+    }
+
+    /**
+     * @return -   message of the given number of ASCII characters, without new lines.
+     */
+    static String message(int payloadSize) {
+        char[] chars = new char[payloadSize];
+        Arrays.fill(chars, 'm');
+        return new String(chars);
+    }
+
+    /**
+     * The players log every message at INFO, which would be measured instead of the transport.
+     */
+    static void quietLogging() {
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+    }
+
+    /**
+     * Endless stream which repeats the given bytes, so that decoding never runs out of messages.
+     */
+    static class RepeatingInputStream extends InputStream {
+
+        private final byte[] bytes;
+        private int position;
+
+        RepeatingInputStream(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            int b = bytes[position] & 0xff;
+            position = (position + 1) % bytes.length;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int read = Math.min(len, bytes.length - position);
+            System.arraycopy(bytes, position, b, off, read);
+            position = (position + read) % bytes.length;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mk.task.benchmark;
+
+import com.mk.task.transport.MessageHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode throughput of {@link com.mk.task.transport.TextMessageHandler} and {@link com.mk.task.transport.BinaryMessageHandler}, without any socket.
+ * Messages are written into a discarding stream and read from an endless stream of encoded messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageHandlerBenchmark {
+
+    @Param({Benchmarks.TEXT_CODEC, Benchmarks.BINARY_CODEC})
+    private String codec;
+
+    @Param({"16", "256", "4096", "65536"})
+    private int payloadSize;
+
+    private String message;
+    private MessageHandler encoder;
+    private MessageHandler decoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        message = Benchmarks.message(payloadSize);
+        encoder = Benchmarks.messageHandler(codec, null, Benchmarks.DISCARDING);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Benchmarks.messageHandler(codec, null, encoded).write(message);
+        decoder = Benchmarks.messageHandler(codec, new Benchmarks.RepeatingInputStream(encoded.toByteArray()), null);
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        encoder.write(message);
+    }
+
+    @Benchmark
+    public String decode() throws IOException {
+        return decoder.read();
+    }
+}
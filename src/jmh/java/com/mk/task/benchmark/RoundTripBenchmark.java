@@ -0,0 +1,97 @@
+package com.mk.task.benchmark;
+
+import com.mk.task.Application;
+import com.mk.task.player.Receiver;
+import com.mk.task.transport.MessageHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Initiator to {@link Receiver} over loopback TCP. The receiver is the real one, running on its own thread.
+ * The benchmark thread plays the initiator:
+ * 1. roundTrip: one message and its reply, as the initiator does with a window of 1.
+ * 2. pipelined: sustained throughput with several messages in flight, as the initiator does with a larger window.
+ * The window is kept within a few socket buffers worth of bytes, so that both sides never block on writing.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    private final static int BATCH = 256;
+    private final static int MAX_WINDOW = 32;
+    private final static int WINDOW_BYTES = 32 * 1024;
+
+    @Param({Benchmarks.TEXT_CODEC, Benchmarks.BINARY_CODEC})
+    private String codec;
+
+    @Param({"16", "256", "4096", "65536"})
+    private int payloadSize;
+
+    private String message;
+    private int window;
+    private ServerSocket serverSocket;
+    private Socket socket;
+    private Thread receiverThread;
+    private MessageHandler messageHandler;
+
+    @Setup
+    public void setUp() throws IOException {
+        Benchmarks.quietLogging();
+        message = Benchmarks.message(payloadSize);
+        window = Math.max(1, Math.min(MAX_WINDOW, WINDOW_BYTES / payloadSize));
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        receiverThread = new Thread(() -> {
+            try (Socket accepted = serverSocket.accept()) {
+                accepted.setTcpNoDelay(true);
+                new Receiver(Benchmarks.messageHandler(codec, accepted.getInputStream(), accepted.getOutputStream())).start();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, "receiver");
+        receiverThread.start();
+        socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        socket.setTcpNoDelay(true);
+        messageHandler = Benchmarks.messageHandler(codec, socket.getInputStream(), socket.getOutputStream());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        messageHandler.write(Application.POISON_PILL);
+        receiverThread.join();
+        socket.close();
+        serverSocket.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String roundTrip() throws IOException {
+        messageHandler.write(message);
+        return messageHandler.read();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public String pipelined() throws IOException {
+        String reply = null;
+        for (int sent = 0; sent < BATCH; sent++) {
+            messageHandler.write(message);
+            if (sent >= window - 1) {
+                reply = messageHandler.read();
+            }
+        }
+        for (int i = 1; i < window; i++) {
+            reply = messageHandler.read();
+        }
+        return reply;
+    }
+}
@@ -1,18 +1,52 @@
 package com.mk.task;
 
+import com.mk.task.logging.AsyncLogDispatcher;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.player.DatagramInitiator;
+import com.mk.task.player.DatagramReceiver;
+import com.mk.task.player.FanOutInitiator;
 import com.mk.task.player.IPlayer;
 import com.mk.task.player.Initiator;
+import com.mk.task.player.LoadGenerator;
+import com.mk.task.player.Payload;
+import com.mk.task.player.PipelinedReceiver;
 import com.mk.task.player.Receiver;
+import com.mk.task.player.ReceiverDaemon;
+import com.mk.task.player.ReplayInitiator;
+import com.mk.task.player.SelectorReceiver;
+import com.mk.task.player.VirtualThreadReceiver;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.Compression;
+import com.mk.task.transport.DatagramEndpoint;
+import com.mk.task.transport.FlushPolicy;
+import com.mk.task.transport.InProcessTransport;
+import com.mk.task.transport.JournalReader;
 import com.mk.task.transport.MessageHandler;
-import sun.rmi.runtime.Log;
+import com.mk.task.transport.MessageJournal;
+import com.mk.task.transport.SharedMemoryTransport;
+import com.mk.task.transport.SocketOptions;
+import com.mk.task.transport.SocketTransport;
+import com.mk.task.transport.TextMessageHandler;
+import com.mk.task.transport.Transport;
+import com.mk.task.transport.WaitStrategy;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -22,9 +56,10 @@ import java.util.logging.Logger;
  * Responsibilities:
  * 1. Validate the program arguments passed into the program.
  * 2. Creates the required objects and does the dependency injection.
- * 3. Initializes the socket to transport the messages.
+ * 3. Initializes the socket, the datagram channel, or the shared memory, to transport the messages.
  * 4. Starts the players. There are two types of players which can be executed.
  * For more details: {@link Initiator} & {@link Receiver}
+ * 5. Optionally, records the messages of a player into a journal, which an initiator can replay. {@link ReplayInitiator}
  * <p>
  * NOTE:
  * Using frameworks like Spring, JCommander, Guice will drastically reduce the code in this class.
@@ -39,21 +74,105 @@ public class Application {
     private String receiverHost;
     private int port;
     private String action;
+    private int window = 1;
+    private String receiverMode = BLOCKING_MODE;
+    private String codec = TEXT_CODEC;
+    private int reportIntervalSeconds;
+    private String reportFile;
+    private String logMode = SYNC_LOG;
+    private int logSampleEvery = 1;
+    private FlushPolicy flushPolicy = FlushPolicy.immediate();
+    private int bufferSize = BinaryMessageHandler.DEFAULT_BUFFER_SIZE;
+    private final SocketOptions socketOptions = new SocketOptions();
+    private String transportType = TCP_TRANSPORT;
+    private String sharedMemoryFile;
+    private String waitStrategy = WaitStrategy.BLOCKING;
+    private int messagesPerSecond;
+    private int connections = 1;
+    private int minPayloadSize = -1;
+    private int maxPayloadSize = -1;
+    private String payloadFile;
+    private boolean bulk;
+    private boolean compression;
+    private int compressionThreshold = Compression.DEFAULT_THRESHOLD;
+    private int credits;
+    private int streams = 1;
+    private boolean daemon;
+    private final List<InetSocketAddress> receivers = new ArrayList<>();
+    private FanOutInitiator.Balancing balancing = FanOutInitiator.Balancing.LEAST_OUTSTANDING;
+    private int reconnectAttempts = -1;
+    private int adminPort = -1;
+    private int replyTimeoutMillis = -1;
+    private String journalDirectory;
+    private String replayDirectory;
+    private int replaySpeed = 1;
+    private MessageJournal journal;
 
     public final static String MESSAGE = "Message for this Task -- ";
     public final static String POISON_PILL = "poison-pill";
 
     private final String INITIATOR_IDENTIFIER = "initiator";
     private final String RECEIVER_IDENTIFIER = "receiver";
+    private final String COMBINED_IDENTIFIER = "combined";
+    private final String SHUTDOWN_IDENTIFIER = ReceiverDaemon.SHUTDOWN;
+    private final String OPTION_PREFIX = "--";
+    private final String WINDOW_OPTION = "window";
+    private final String MODE_OPTION = "mode";
+    private final static String BLOCKING_MODE = "blocking";
+    private final static String SELECTOR_MODE = "selector";
+    private final static String VIRTUAL_MODE = "virtual";
+    private final static String PIPELINED_MODE = "pipelined";
+    private final String CODEC_OPTION = "codec";
+    private final static String TEXT_CODEC = "text";
+    private final static String BINARY_CODEC = "binary";
+    private final String REPORT_INTERVAL_OPTION = "report-interval";
+    private final String REPORT_FILE_OPTION = "report-file";
+    private final String LOG_OPTION = "log";
+    private final static String SYNC_LOG = "sync";
+    private final static String ASYNC_LOG = "async";
+    private final String LOG_SAMPLE_OPTION = "log-sample";
+    private final static int LOG_RING_CAPACITY = 64 * 1024;
+    private final String FLUSH_OPTION = "flush";
+    private final String BUFFER_SIZE_OPTION = "buffer-size";
+    private final String TCP_NO_DELAY_OPTION = "tcp-nodelay";
+    private final String SEND_BUFFER_OPTION = "send-buffer";
+    private final String RECEIVE_BUFFER_OPTION = "receive-buffer";
+    private final String KEEP_ALIVE_OPTION = "keep-alive";
+    private final String TRANSPORT_OPTION = "transport";
+    private final static String TCP_TRANSPORT = "tcp";
+    private final static String SHM_TRANSPORT = "shm";
+    private final static String UDP_TRANSPORT = "udp";
+    private final String SHM_FILE_OPTION = "shm-file";
+    private final static String SHM_DIRECTORY = "/dev/shm";
+    private final static long SHM_OPEN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private final String WAIT_OPTION = "wait";
+    private final String RATE_OPTION = "rate";
+    private final String CONNECTIONS_OPTION = "connections";
+    private final String PAYLOAD_SIZE_OPTION = "payload-size";
+    private final String PAYLOAD_FILE_OPTION = "payload-file";
+    private final String BULK_OPTION = "bulk";
+    private final String COMPRESSION_OPTION = "compression";
+    private final String COMPRESSION_THRESHOLD_OPTION = "compression-threshold";
+    private final String CREDITS_OPTION = "credits";
+    private final String STREAMS_OPTION = "streams";
+    private final String DAEMON_OPTION = "daemon";
+    private final String ADMIN_PORT_OPTION = "admin-port";
+    private final String BALANCING_OPTION = "balancing";
+    private final String RECONNECT_ATTEMPTS_OPTION = "reconnect-attempts";
+    private final String REPLY_TIMEOUT_OPTION = "reply-timeout";
+    private final String JOURNAL_OPTION = "journal";
+    private final String REPLAY_OPTION = "replay";
+    private final String REPLAY_SPEED_OPTION = "replay-speed";
+    private final static String MAX_SPEED = "max";
 
-    private Socket socket;
-    private Writer writer;
-    private Scanner readScanner;
+    private final List<Closeable> resources = new ArrayList<>();
 
     /**
      * Main program to start the process.
      * For Initiator, 4 program arguments should be passed.
      * For Receiver, passing 2 arguments should be enough. Any additional arguments will be ignored.
+     * For both players in this process, 2 arguments: combined and the max number of messages.
+     * Optional arguments are passed as --name=value and can appear anywhere.
      * For more details: {@link #validateArgs(String[])}
      *
      * @param args
@@ -68,51 +187,200 @@ public class Application {
     /**
      * Tasks carried out are:
      * 1. Validates the program arguments. {@link #validateArgs(String[])}
-     * 2. Adds the shut down hook. {@link #addShutDownHook()}
-     * 3. Starts the player. {@link IPlayer#start()}
+     * 2. Chooses how the per message logs are written. {@link HotLoopLogger}
+     * And registers the live counters of the players over JMX. {@link PlayerMetrics}
+     * 3. Adds the shut down hook. {@link #addShutDownHook()}
+     * 4. Starts the player. {@link IPlayer#start()} Or both of them. {@link #startCombined()}
+     * Or sends the shut down command to a receiver daemon. {@link ReceiverDaemon#sendAdminCommand(int, String)}
      *
      * @param args
      * @throws IOException
      */
     private void start(String[] args) throws IOException {
         validateArgs(args);
+        if (SHUTDOWN_IDENTIFIER.equals(action)) {
+            logger.info("Receiver daemon answered: [" + ReceiverDaemon.sendAdminCommand(port, ReceiverDaemon.SHUTDOWN) + "]");
+            return;
+        }
+        AsyncLogDispatcher logDispatcher = null;
+        if (ASYNC_LOG.equals(logMode)) {
+            logDispatcher = new AsyncLogDispatcher(LOG_RING_CAPACITY);
+            HotLoopLogger.useAsync(logDispatcher, logSampleEvery);
+        }
+        PlayerMetrics.current().register(action);
         IPlayer player;
-        if (INITIATOR_IDENTIFIER.equals(action)) {
-            socket = initializeSimpleSocket(receiverHost, port);
-            player = new Initiator(createMessageHandler(socket), maxMessages);
+        if (COMBINED_IDENTIFIER.equals(action)) {
+            player = this::startCombined;
+        } else if (INITIATOR_IDENTIFIER.equals(action) && messagesPerSecond > 0) {
+            player = createLoadGenerator();
+        } else if (INITIATOR_IDENTIFIER.equals(action) && UDP_TRANSPORT.equals(transportType)) {
+            DatagramEndpoint endpoint = DatagramEndpoint.connect(new InetSocketAddress(receiverHost, port), socketOptions);
+            resources.add(endpoint);
+            LatencyReporter latencyReporter = new LatencyReporter(TimeUnit.SECONDS.toNanos(reportIntervalSeconds), reportFile);
+            player = new DatagramInitiator(endpoint, maxMessages, window, latencyReporter,
+                    replyTimeoutMillis > 0 ? replyTimeoutMillis : DatagramInitiator.DEFAULT_REPLY_TIMEOUT_MILLIS);
+        } else if (INITIATOR_IDENTIFIER.equals(action) && isFanOut()) {
+            player = new FanOutInitiator(receivers,
+                    (receiver, opened) -> (BinaryMessageHandler) createMessageHandler(
+                            socketTransport(initializeSimpleSocket(receiver.getHostString(), receiver.getPort())), opened),
+                    maxMessages, window, balancing, new LatencyReporter(TimeUnit.SECONDS.toNanos(reportIntervalSeconds), reportFile),
+                    reconnectAttempts >= 0 ? reconnectAttempts : FanOutInitiator.DEFAULT_RECONNECT_ATTEMPTS, FanOutInitiator.INITIAL_BACKOFF_MILLIS);
+        } else if (INITIATOR_IDENTIFIER.equals(action)) {
+            Transport transport = SHM_TRANSPORT.equals(transportType)
+                    ? SharedMemoryTransport.open(sharedMemoryFile(), SHM_OPEN_TIMEOUT_MILLIS)
+                    : socketTransport(initializeSimpleSocket(receiverHost, port));
+            MessageHandler messageHandler = record(createMessageHandler(transport));
+            LatencyReporter latencyReporter = new LatencyReporter(TimeUnit.SECONDS.toNanos(reportIntervalSeconds), reportFile);
+            player = replayDirectory != null
+                    ? new ReplayInitiator(messageHandler, new JournalReader(new File(replayDirectory)), maxMessages, replaySpeed, window, latencyReporter)
+                    : new Initiator(messageHandler, maxMessages, window, latencyReporter, createPayload(), streams);
+        } else if (UDP_TRANSPORT.equals(transportType)) {
+            DatagramEndpoint endpoint = DatagramEndpoint.bind(port, socketOptions);
+            resources.add(endpoint);
+            player = new DatagramReceiver(endpoint);
+        } else if (SELECTOR_MODE.equals(receiverMode)) {
+            SelectorReceiver selectorReceiver = new SelectorReceiver(initializeServerSocketChannel(port));
+            resources.add(selectorReceiver);
+            player = selectorReceiver;
+        } else if (PIPELINED_MODE.equals(receiverMode)) {
+            Transport transport = SHM_TRANSPORT.equals(transportType)
+                    ? initializeSharedMemory()
+                    : socketTransport(initializeServerSocket(port));
+            resources.add(transport);
+            player = new PipelinedReceiver(createReader(transport), createWriter(transport, FlushPolicy.whenBufferFull()),
+                    PipelinedReceiver.DEFAULT_RING_SIZE, WaitStrategy.parse(waitStrategy), transport);
+        } else if (VIRTUAL_MODE.equals(receiverMode)) {
+            VirtualThreadReceiver virtualThreadReceiver = new VirtualThreadReceiver(bindServerSocket(port),
+                    (socket, opened) -> createMessageHandler(socketTransport(socket), opened));
+            resources.add(virtualThreadReceiver);
+            player = virtualThreadReceiver;
+        } else if (daemon) {
+            ReceiverDaemon receiverDaemon = new ReceiverDaemon(bindSessionSocket(port),
+                    ReceiverDaemon.bindAdminSocket(adminPort >= 0 ? adminPort : port + 1),
+                    (socket, opened) -> createMessageHandler(socketTransport(socket), opened));
+            resources.add(receiverDaemon);
+            player = receiverDaemon;
         } else {
-            socket = initializeServerSocket(port);
-            player = new Receiver(createMessageHandler(socket));
+            Transport transport = SHM_TRANSPORT.equals(transportType)
+                    ? initializeSharedMemory()
+                    : socketTransport(initializeServerSocket(port));
+            player = new Receiver(record(createMessageHandler(transport)));
+        }
+        if (logDispatcher != null) {
+            resources.add(logDispatcher);
         }
         addShutDownHook();
         player.start();
+        if (compression) {
+            logger.info("Compression [total]: " + PlayerMetrics.current().compressionSummary());
+        }
+        if (credits > 0) {
+            logger.info("Credit stalls [total]: [" + PlayerMetrics.current().getCreditStalls() + "], stalled: ["
+                    + PlayerMetrics.current().getCreditStallMillis() + " ms]");
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (logDispatcher != null) {
+            logDispatcher.close();
+        }
         logger.info("Player task is now complete. So, shutting down.");
     }
 
     /**
      * Validates the arguments passed to the program.
-     * 1. Length of arguments passed should be 3 for receiver and 4 for initiator.
+     * 1. Length of arguments passed should be 2 for receiver and 4 for initiator.
      * 2. Port (2nd Arg) and max number of messages (4th Arg) should be integers.
-     * 3. If the above does not match, the process will exit with 0 code.
+     * 3. Optional arguments are validated by {@link #validateOption(String)}
+     * 4. If the above does not match, the process will exit with 0 code.
      *
      * @param args
      */
     private void validateArgs(String[] args) {
+        List<String> positionalArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(OPTION_PREFIX)) {
+                validateOption(arg);
+            } else {
+                positionalArgs.add(arg);
+            }
+        }
+        args = positionalArgs.toArray(new String[0]);
         if (args.length != 2 && args.length != 4) {
             logger.log(Level.SEVERE, "4 arguments for Initiator & 2 for receiver are required to start the program.");
             logger.log(Level.SEVERE, "1st Argument: Type of player (receiver / initiator).");
             logger.log(Level.SEVERE, "2nd Argument: Port at which receiver should be started.");
             logger.log(Level.SEVERE, "Next two parameters are for initiator. Not required for receiver and will not be used if provided for the same.");
-            logger.log(Level.SEVERE, "3rd Argument: Host at which receiver started.");
+            logger.log(Level.SEVERE, "3rd Argument: Host at which receiver started. Or a comma separated list of HOST or HOST:PORT, to spread the messages over many receivers.");
             logger.log(Level.SEVERE, "4th Argument: Max number of messages to be sent and received.");
+            logger.log(Level.SEVERE, "Or, to run both players in this process: " + COMBINED_IDENTIFIER + " and the max number of messages.");
+            logger.log(Level.SEVERE, "Or, to stop a receiver daemon: " + SHUTDOWN_IDENTIFIER + " and its admin port.");
+            logger.log(Level.SEVERE, "Optional --" + WINDOW_OPTION + "=N: Max number of messages the initiator keeps in flight. Defaults to 1.");
+            logger.log(Level.SEVERE, "Optional --" + MODE_OPTION + "=" + BLOCKING_MODE + "/" + SELECTOR_MODE + "/" + VIRTUAL_MODE + "/" + PIPELINED_MODE
+                    + ": How the receiver serves the initiators. One at a time, all on one thread, a (virtual) thread each,"
+                    + " or one at a time with reading, processing and writing on separate threads. Defaults to " + BLOCKING_MODE + ".");
+            logger.log(Level.SEVERE, "Optional --" + CODEC_OPTION + "=" + TEXT_CODEC + "/" + BINARY_CODEC + ": How the messages are framed. Should be the same for both players. Defaults to " + TEXT_CODEC + ".");
+            logger.log(Level.SEVERE, "Optional --" + REPORT_INTERVAL_OPTION + "=SECONDS: Interval at which the initiator reports the latencies. Defaults to reporting only at the end.");
+            logger.log(Level.SEVERE, "Optional --" + REPORT_FILE_OPTION + "=PATH: CSV file to which the initiator appends the latency reports.");
+            logger.log(Level.SEVERE, "Optional --" + LOG_OPTION + "=" + SYNC_LOG + "/" + ASYNC_LOG + ": Whether the per message logs are written by a background thread. Defaults to " + SYNC_LOG + ".");
+            logger.log(Level.SEVERE, "Optional --" + LOG_SAMPLE_OPTION + "=N: With async logs, only one out of N per message INFO logs is written. Defaults to 1.");
+            logger.log(Level.SEVERE, "Optional --" + FLUSH_OPTION + "=immediate/every:N/micros:T/full: When the written messages are flushed into the socket. Defaults to immediate.");
+            logger.log(Level.SEVERE, "Optional --" + BUFFER_SIZE_OPTION + "=BYTES: Size of the buffer in which messages are written before flushing.");
+            logger.log(Level.SEVERE, "Optional --" + TCP_NO_DELAY_OPTION + "=true/false, --" + KEEP_ALIVE_OPTION + "=true/false, --"
+                    + SEND_BUFFER_OPTION + "=BYTES, --" + RECEIVE_BUFFER_OPTION + "=BYTES: Socket options. Default to the ones of the operating system.");
+            logger.log(Level.SEVERE, "Optional --" + TRANSPORT_OPTION + "=" + TCP_TRANSPORT + "/" + SHM_TRANSPORT + "/" + UDP_TRANSPORT
+                    + ": Whether the players talk through a socket, through shared memory on the same host, or through datagrams. Defaults to " + TCP_TRANSPORT + ".");
+            logger.log(Level.SEVERE, "Optional --" + REPLY_TIMEOUT_OPTION + "=MILLIS: With the " + UDP_TRANSPORT + " transport, a message without a reply in this time is lost. Defaults to "
+                    + DatagramInitiator.DEFAULT_REPLY_TIMEOUT_MILLIS + ".");
+            logger.log(Level.SEVERE, "Optional --" + SHM_FILE_OPTION + "=PATH: File shared by the players with the " + SHM_TRANSPORT + " transport. Defaults to a file in " + SHM_DIRECTORY + " named after the port.");
+            logger.log(Level.SEVERE, "Optional --" + WAIT_OPTION + "=" + WaitStrategy.BLOCKING + "/" + WaitStrategy.SPIN + "/" + WaitStrategy.YIELD + "/" + WaitStrategy.PARK
+                    + ": How the " + COMBINED_IDENTIFIER + " players, or the " + PIPELINED_MODE + " receiver stages, wait for each other. Defaults to " + WaitStrategy.BLOCKING + ".");
+            logger.log(Level.SEVERE, "Optional --" + RATE_OPTION + "=N: Messages per second the initiator offers on schedule, whatever the replies. Max number of messages is then per connection.");
+            logger.log(Level.SEVERE, "Optional --" + CONNECTIONS_OPTION + "=K: Connections over which the --" + RATE_OPTION + " is spread. Defaults to 1. More than 1 needs the " + SELECTOR_MODE + " receiver mode.");
+            logger.log(Level.SEVERE, "Optional --" + PAYLOAD_SIZE_OPTION + "=BYTES or MIN-MAX: Payload of every message the initiator sends, of a fixed or random size. Needs the " + BINARY_CODEC + " codec.");
+            logger.log(Level.SEVERE, "Optional --" + PAYLOAD_FILE_OPTION + "=PATH: File which the initiator sends as the payload of every message, with file transfers. Needs the " + BINARY_CODEC + " codec.");
+            logger.log(Level.SEVERE, "Optional --" + BULK_OPTION + "=true/false: Whether large payloads are written with gathering writes on socket channels, instead of being copied. Needs the " + BINARY_CODEC + " codec.");
+            logger.log(Level.SEVERE, "Optional --" + COMPRESSION_OPTION + "=true/false: Whether the messages are compressed, if both players agree when connecting. Needs the " + BINARY_CODEC + " codec. Defaults to false.");
+            logger.log(Level.SEVERE, "Optional --" + COMPRESSION_THRESHOLD_OPTION + "=BYTES: Messages smaller than this are not compressed. Defaults to " + Compression.DEFAULT_THRESHOLD + ".");
+            logger.log(Level.SEVERE, "Optional --" + STREAMS_OPTION + "=S: Logical streams which the initiator runs over its connection, with the max number of messages each. Needs the " + BINARY_CODEC + " codec. Defaults to 1.");
+            logger.log(Level.SEVERE, "Optional --" + DAEMON_OPTION + "=true/false: Whether the receiver keeps serving one initiator after the other, until the " + SHUTDOWN_IDENTIFIER + " command. Defaults to false.");
+            logger.log(Level.SEVERE, "Optional --" + ADMIN_PORT_OPTION + "=PORT: Port on the loopback address at which the receiver daemon takes the " + SHUTDOWN_IDENTIFIER + " command. Defaults to the port + 1.");
+            logger.log(Level.SEVERE, "Optional --" + BALANCING_OPTION + "=" + FanOutInitiator.Balancing.ROUND_ROBIN + "/" + FanOutInitiator.Balancing.LEAST_OUTSTANDING
+                    + ": How the initiator spreads the messages over many receivers. Defaults to " + FanOutInitiator.Balancing.LEAST_OUTSTANDING + ".");
+            logger.log(Level.SEVERE, "Optional --" + RECONNECT_ATTEMPTS_OPTION + "=N: Reconnects of the initiator, with a backoff, before a receiver is given up and its messages go to the others. Defaults to "
+                    + FanOutInitiator.DEFAULT_RECONNECT_ATTEMPTS + ". Needs the " + BINARY_CODEC + " codec.");
+            logger.log(Level.SEVERE, "Optional --" + JOURNAL_OPTION + "=DIR: Directory in which every message sent and received is recorded, with its time, into memory mapped segments.");
+            logger.log(Level.SEVERE, "Optional --" + REPLAY_OPTION + "=DIR: Journal recorded by an initiator, whose messages the initiator sends again. Up to the max number of messages.");
+            logger.log(Level.SEVERE, "Optional --" + REPLAY_SPEED_OPTION + "=N/" + MAX_SPEED + ": How many times faster than recorded the messages are replayed. Or as fast as the --" + WINDOW_OPTION + " allows. Defaults to 1.");
+            logger.log(Level.SEVERE, "Optional --" + CREDITS_OPTION + "=N: Credit based flow control. The receiver grants N credits, the messages it can hold unprocessed. The initiator asks for it with any N. Needs the " + BINARY_CODEC + " codec.");
             System.exit(0);
         }
         action = args[0];
-        if (!INITIATOR_IDENTIFIER.equals(action) && !RECEIVER_IDENTIFIER.equals(action)) {
-            logger.log(Level.SEVERE, "Allowed 1st Argument: Type of player (initiator / receiver)");
+        if (!INITIATOR_IDENTIFIER.equals(action) && !RECEIVER_IDENTIFIER.equals(action) && !COMBINED_IDENTIFIER.equals(action)
+                && !SHUTDOWN_IDENTIFIER.equals(action)) {
+            logger.log(Level.SEVERE, "Allowed 1st Argument: Type of player (initiator / receiver / combined), or " + SHUTDOWN_IDENTIFIER);
             System.exit(0);
         }
         logger.info("Type of player to be started: [" + action + "]");
+        if (COMBINED_IDENTIFIER.equals(action)) {
+            if (args.length != 2) {
+                logger.log(Level.SEVERE, "2 arguments are required for " + COMBINED_IDENTIFIER + ": " + COMBINED_IDENTIFIER + " and the max number of messages.");
+                System.exit(0);
+            }
+            try {
+                maxMessages = Integer.valueOf(args[1]);
+                logger.info("Maximum number of message to be sent: [" + maxMessages + "]");
+            } catch (NumberFormatException e) {
+                logger.log(Level.SEVERE, "Allowed 2nd Argument for " + COMBINED_IDENTIFIER + ": Max number of messages to be sent and received. Should be an integer");
+                System.exit(0);
+            }
+            if (!BLOCKING_MODE.equals(receiverMode) || !TCP_TRANSPORT.equals(transportType) || messagesPerSecond > 0) {
+                logger.log(Level.SEVERE, COMBINED_IDENTIFIER + " players talk through in process rings. So, --" + MODE_OPTION + ", --" + TRANSPORT_OPTION + " and --" + RATE_OPTION + " are not allowed.");
+                System.exit(0);
+            }
+            validateJournal();
+            return;
+        }
         try {
             port = Integer.valueOf(args[1]);
         } catch (NumberFormatException e) {
@@ -120,7 +388,7 @@ public class Application {
             System.exit(0);
         }
         if (args.length > 2 && INITIATOR_IDENTIFIER.equals(action)) {
-            receiverHost = args[2];
+            parseReceivers(args[2]);
             try {
                 maxMessages = Integer.valueOf(args[3]);
                 logger.info("Maximum number of message to be sent: [" + maxMessages + "]");
@@ -129,45 +397,595 @@ public class Application {
                 System.exit(0);
             }
         }
+        if (daemon && (!RECEIVER_IDENTIFIER.equals(action) || !BLOCKING_MODE.equals(receiverMode) || !TCP_TRANSPORT.equals(transportType))) {
+            logger.log(Level.SEVERE, "--" + DAEMON_OPTION + " is only for the receiver, in the [" + BLOCKING_MODE + "] mode with the [" + TCP_TRANSPORT + "] transport.");
+            System.exit(0);
+        }
+        if (SELECTOR_MODE.equals(receiverMode) && !TEXT_CODEC.equals(codec)) {
+            logger.log(Level.SEVERE, "Receiver mode [" + SELECTOR_MODE + "] supports only the [" + TEXT_CODEC + "] codec.");
+            System.exit(0);
+        }
+        if (messagesPerSecond > 0 && SHM_TRANSPORT.equals(transportType) && connections > 1) {
+            logger.log(Level.SEVERE, "The [" + SHM_TRANSPORT + "] transport supports only one connection.");
+            System.exit(0);
+        }
+        if (!BLOCKING_MODE.equals(receiverMode) && !PIPELINED_MODE.equals(receiverMode) && SHM_TRANSPORT.equals(transportType)) {
+            logger.log(Level.SEVERE, "Receiver mode [" + receiverMode + "] supports only the [" + TCP_TRANSPORT + "] transport.");
+            System.exit(0);
+        }
+        validatePayload();
+        validateFanOut();
+        validateDatagrams();
+        validateJournal();
+        if (compression && (!BINARY_CODEC.equals(codec) || messagesPerSecond > 0 || PIPELINED_MODE.equals(receiverMode))) {
+            logger.log(Level.SEVERE, "--" + COMPRESSION_OPTION + " needs the [" + BINARY_CODEC + "] codec, and is not allowed with --" + RATE_OPTION
+                    + " or the [" + PIPELINED_MODE + "] receiver mode. Their reading and writing handlers are separate.");
+            System.exit(0);
+        }
+        if (streams > 1 && (!BINARY_CODEC.equals(codec) || messagesPerSecond > 0 || PIPELINED_MODE.equals(receiverMode))) {
+            logger.log(Level.SEVERE, "--" + STREAMS_OPTION + " needs the [" + BINARY_CODEC + "] codec, and is not allowed with --" + RATE_OPTION
+                    + " or the [" + PIPELINED_MODE + "] receiver mode.");
+            System.exit(0);
+        }
+        if (streams > BinaryMessageHandler.MAX_STREAM || (long) maxMessages * streams > Integer.MAX_VALUE) {
+            logger.log(Level.SEVERE, "--" + STREAMS_OPTION + " should be at most " + BinaryMessageHandler.MAX_STREAM
+                    + ", with at most " + Integer.MAX_VALUE + " messages in all.");
+            System.exit(0);
+        }
+        if (credits > 0 && (!BINARY_CODEC.equals(codec) || messagesPerSecond > 0 || PIPELINED_MODE.equals(receiverMode))) {
+            logger.log(Level.SEVERE, "--" + CREDITS_OPTION + " needs the [" + BINARY_CODEC + "] codec, and is not allowed with --" + RATE_OPTION
+                    + " or the [" + PIPELINED_MODE + "] receiver mode. Their reading and writing handlers are separate.");
+            System.exit(0);
+        }
+    }
+
+    /**
+     * @param value -   HOST, or a comma separated list of HOST or HOST:PORT. The port defaults to the 2nd argument.
+     */
+    private void parseReceivers(String value) {
+        for (String endpoint : value.split(",")) {
+            int separator = endpoint.lastIndexOf(':');
+            String host = separator < 0 ? endpoint : endpoint.substring(0, separator);
+            int receiverPort = port;
+            if (separator >= 0) {
+                try {
+                    receiverPort = Integer.valueOf(endpoint.substring(separator + 1));
+                } catch (NumberFormatException e) {
+                    logger.log(Level.SEVERE, "Allowed 3rd Argument: HOST or HOST:PORT, comma separated. Port should be an integer: [" + endpoint + "]");
+                    System.exit(0);
+                }
+            }
+            if (host.isEmpty()) {
+                logger.log(Level.SEVERE, "Allowed 3rd Argument: HOST or HOST:PORT, comma separated. Host should not be empty: [" + endpoint + "]");
+                System.exit(0);
+            }
+            receivers.add(InetSocketAddress.createUnresolved(host, receiverPort));
+        }
+        receiverHost = receivers.get(0).getHostString();
+        port = receivers.get(0).getPort();
+        logger.info("Receivers: " + receivers);
+    }
+
+    /**
+     * Many receivers, or reconnects, need the fan out initiator.
+     */
+    private boolean isFanOut() {
+        return receivers.size() > 1 || reconnectAttempts >= 0;
+    }
+
+    /**
+     * The fan out initiator sends the message over plain binary connections, in a closed loop.
+     */
+    private void validateFanOut() {
+        if (!isFanOut()) {
+            return;
+        }
+        if (!INITIATOR_IDENTIFIER.equals(action) || !BINARY_CODEC.equals(codec) || messagesPerSecond > 0 || !TCP_TRANSPORT.equals(transportType)) {
+            logger.log(Level.SEVERE, "Many receivers and --" + RECONNECT_ATTEMPTS_OPTION + " are for the initiator, with the [" + BINARY_CODEC + "] codec and the ["
+                    + TCP_TRANSPORT + "] transport. Not with --" + RATE_OPTION + ".");
+            System.exit(0);
+        }
+        if (maxPayloadSize >= 0 || payloadFile != null || bulk || compression || credits > 0 || streams > 1) {
+            logger.log(Level.SEVERE, "Many receivers and --" + RECONNECT_ATTEMPTS_OPTION + " are not allowed with --" + PAYLOAD_SIZE_OPTION + ", --" + PAYLOAD_FILE_OPTION
+                    + ", --" + BULK_OPTION + ", --" + COMPRESSION_OPTION + ", --" + CREDITS_OPTION + " or --" + STREAMS_OPTION + ".");
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Every datagram is one message of its own layout. So, what works on the frames of a connection does not apply.
+     */
+    private void validateDatagrams() {
+        if (!UDP_TRANSPORT.equals(transportType)) {
+            if (replyTimeoutMillis > 0) {
+                logger.log(Level.SEVERE, "--" + REPLY_TIMEOUT_OPTION + " needs the [" + UDP_TRANSPORT + "] transport.");
+                System.exit(0);
+            }
+            return;
+        }
+        if (!BLOCKING_MODE.equals(receiverMode) || messagesPerSecond > 0) {
+            logger.log(Level.SEVERE, "The [" + UDP_TRANSPORT + "] transport supports only the [" + BLOCKING_MODE + "] receiver mode, and not --" + RATE_OPTION + ".");
+            System.exit(0);
+        }
+        if (maxPayloadSize >= 0 || payloadFile != null || bulk || compression || credits > 0 || streams > 1) {
+            logger.log(Level.SEVERE, "The [" + UDP_TRANSPORT + "] transport is not allowed with --" + PAYLOAD_SIZE_OPTION + ", --" + PAYLOAD_FILE_OPTION
+                    + ", --" + BULK_OPTION + ", --" + COMPRESSION_OPTION + ", --" + CREDITS_OPTION + " or --" + STREAMS_OPTION + ".");
+            System.exit(0);
+        }
+    }
+
+    /**
+     * The journal taps the handler of one connection, which both reads and writes.
+     * The replay sends what an initiator recorded, with its streams, in a closed loop.
+     */
+    private void validateJournal() {
+        boolean recordable = (INITIATOR_IDENTIFIER.equals(action) || RECEIVER_IDENTIFIER.equals(action) && BLOCKING_MODE.equals(receiverMode) && !daemon)
+                && messagesPerSecond == 0 && !isFanOut() && !UDP_TRANSPORT.equals(transportType);
+        if (journalDirectory != null && !recordable) {
+            logger.log(Level.SEVERE, "--" + JOURNAL_OPTION + " is for the initiator, or the receiver in the [" + BLOCKING_MODE + "] mode, with the [" + TCP_TRANSPORT + "] or ["
+                    + SHM_TRANSPORT + "] transport. Not with --" + RATE_OPTION + ", --" + DAEMON_OPTION + " or many receivers.");
+            System.exit(0);
+        }
+        if (replayDirectory == null) {
+            return;
+        }
+        if (!INITIATOR_IDENTIFIER.equals(action) || messagesPerSecond > 0 || isFanOut() || UDP_TRANSPORT.equals(transportType)) {
+            logger.log(Level.SEVERE, "--" + REPLAY_OPTION + " is for the initiator, with the [" + TCP_TRANSPORT + "] or [" + SHM_TRANSPORT + "] transport. Not with --"
+                    + RATE_OPTION + " or many receivers.");
+            System.exit(0);
+        }
+        if (maxPayloadSize >= 0 || payloadFile != null || credits > 0 || streams > 1) {
+            logger.log(Level.SEVERE, "--" + REPLAY_OPTION + " sends the recorded messages on their recorded streams. So, --" + PAYLOAD_SIZE_OPTION + ", --"
+                    + PAYLOAD_FILE_OPTION + ", --" + CREDITS_OPTION + " and --" + STREAMS_OPTION + " are not allowed.");
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Payloads other than the message are sent as binary frames, by the closed loop initiator.
+     */
+    private void validatePayload() {
+        boolean payload = maxPayloadSize >= 0 || payloadFile != null;
+        if ((payload || bulk) && !BINARY_CODEC.equals(codec)) {
+            logger.log(Level.SEVERE, "--" + PAYLOAD_SIZE_OPTION + ", --" + PAYLOAD_FILE_OPTION + " and --" + BULK_OPTION + " need the [" + BINARY_CODEC + "] codec.");
+            System.exit(0);
+        }
+        if (payload && messagesPerSecond > 0) {
+            logger.log(Level.SEVERE, "--" + PAYLOAD_SIZE_OPTION + " and --" + PAYLOAD_FILE_OPTION + " are not allowed with --" + RATE_OPTION + ".");
+            System.exit(0);
+        }
+        if (maxPayloadSize >= 0 && payloadFile != null) {
+            logger.log(Level.SEVERE, "Either --" + PAYLOAD_SIZE_OPTION + " or --" + PAYLOAD_FILE_OPTION + " is allowed.");
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Validates an optional argument of the form --name=value.
+     * If the name is unknown or the value is not allowed, the process will exit with 0 code.
+     *
+     * @param arg
+     */
+    private void validateOption(String arg) {
+        int separator = arg.indexOf('=');
+        String name = separator < 0 ? arg.substring(OPTION_PREFIX.length()) : arg.substring(OPTION_PREFIX.length(), separator);
+        String value = separator < 0 ? "" : arg.substring(separator + 1);
+        if (WINDOW_OPTION.equals(name)) {
+            window = positiveInteger(name, value);
+            logger.info("Maximum number of messages in flight: [" + window + "]");
+        } else if (MODE_OPTION.equals(name)) {
+            if (!BLOCKING_MODE.equals(value) && !SELECTOR_MODE.equals(value) && !VIRTUAL_MODE.equals(value) && !PIPELINED_MODE.equals(value)) {
+                logger.log(Level.SEVERE, "Allowed --" + MODE_OPTION + ": " + BLOCKING_MODE + " / " + SELECTOR_MODE + " / " + VIRTUAL_MODE + " / " + PIPELINED_MODE);
+                System.exit(0);
+            }
+            receiverMode = value;
+            logger.info("Receiver mode: [" + receiverMode + "]");
+        } else if (CODEC_OPTION.equals(name)) {
+            if (!TEXT_CODEC.equals(value) && !BINARY_CODEC.equals(value)) {
+                logger.log(Level.SEVERE, "Allowed --" + CODEC_OPTION + ": " + TEXT_CODEC + " / " + BINARY_CODEC);
+                System.exit(0);
+            }
+            codec = value;
+            logger.info("Message codec: [" + codec + "]");
+        } else if (REPORT_INTERVAL_OPTION.equals(name)) {
+            reportIntervalSeconds = positiveInteger(name, value);
+            logger.info("Latency report interval in seconds: [" + reportIntervalSeconds + "]");
+        } else if (REPORT_FILE_OPTION.equals(name)) {
+            reportFile = value;
+            logger.info("Latency report file: [" + reportFile + "]");
+        } else if (LOG_OPTION.equals(name)) {
+            if (!SYNC_LOG.equals(value) && !ASYNC_LOG.equals(value)) {
+                logger.log(Level.SEVERE, "Allowed --" + LOG_OPTION + ": " + SYNC_LOG + " / " + ASYNC_LOG);
+                System.exit(0);
+            }
+            logMode = value;
+            logger.info("Log mode: [" + logMode + "]");
+        } else if (LOG_SAMPLE_OPTION.equals(name)) {
+            logSampleEvery = positiveInteger(name, value);
+            logger.info("Per message logs sampled every: [" + logSampleEvery + "]");
+        } else if (FLUSH_OPTION.equals(name)) {
+            try {
+                flushPolicy = FlushPolicy.parse(value);
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.SEVERE, "Allowed --" + FLUSH_OPTION + ": immediate / every:N / micros:T / full");
+                System.exit(0);
+            }
+            logger.info("Flush policy: [" + value + "]");
+        } else if (BUFFER_SIZE_OPTION.equals(name)) {
+            bufferSize = positiveInteger(name, value);
+            logger.info("Write buffer size: [" + bufferSize + "]");
+        } else if (TCP_NO_DELAY_OPTION.equals(name)) {
+            socketOptions.setTcpNoDelay(booleanOption(name, value));
+        } else if (SEND_BUFFER_OPTION.equals(name)) {
+            socketOptions.setSendBufferSize(positiveInteger(name, value));
+        } else if (RECEIVE_BUFFER_OPTION.equals(name)) {
+            socketOptions.setReceiveBufferSize(positiveInteger(name, value));
+        } else if (KEEP_ALIVE_OPTION.equals(name)) {
+            socketOptions.setKeepAlive(booleanOption(name, value));
+        } else if (TRANSPORT_OPTION.equals(name)) {
+            if (!TCP_TRANSPORT.equals(value) && !SHM_TRANSPORT.equals(value) && !UDP_TRANSPORT.equals(value)) {
+                logger.log(Level.SEVERE, "Allowed --" + TRANSPORT_OPTION + ": " + TCP_TRANSPORT + " / " + SHM_TRANSPORT + " / " + UDP_TRANSPORT);
+                System.exit(0);
+            }
+            transportType = value;
+            logger.info("Transport: [" + transportType + "]");
+        } else if (RATE_OPTION.equals(name)) {
+            messagesPerSecond = positiveInteger(name, value);
+            logger.info("Target messages per second: [" + messagesPerSecond + "]");
+        } else if (CONNECTIONS_OPTION.equals(name)) {
+            connections = positiveInteger(name, value);
+            logger.info("Connections: [" + connections + "]");
+        } else if (WAIT_OPTION.equals(name)) {
+            try {
+                WaitStrategy.parse(value);
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.SEVERE, "Allowed --" + WAIT_OPTION + ": " + WaitStrategy.BLOCKING + " / " + WaitStrategy.SPIN
+                        + " / " + WaitStrategy.YIELD + " / " + WaitStrategy.PARK);
+                System.exit(0);
+            }
+            waitStrategy = value;
+            logger.info("Wait strategy: [" + waitStrategy + "]");
+        } else if (PAYLOAD_SIZE_OPTION.equals(name)) {
+            int range = value.indexOf('-', 1);
+            minPayloadSize = payloadSize(name, range < 0 ? value : value.substring(0, range));
+            maxPayloadSize = range < 0 ? minPayloadSize : payloadSize(name, value.substring(range + 1));
+            if (minPayloadSize > maxPayloadSize) {
+                logger.log(Level.SEVERE, "Allowed --" + name + ": MIN should not be more than MAX.");
+                System.exit(0);
+            }
+            logger.info("Payload size in bytes: [" + value + "]");
+        } else if (PAYLOAD_FILE_OPTION.equals(name)) {
+            payloadFile = value;
+            logger.info("Payload file: [" + payloadFile + "]");
+        } else if (BULK_OPTION.equals(name)) {
+            bulk = booleanOption(name, value);
+            logger.info("Bulk writes: [" + bulk + "]");
+        } else if (COMPRESSION_OPTION.equals(name)) {
+            compression = booleanOption(name, value);
+            logger.info("Compression: [" + compression + "]");
+        } else if (COMPRESSION_THRESHOLD_OPTION.equals(name)) {
+            compressionThreshold = positiveInteger(name, value);
+            logger.info("Compression threshold in bytes: [" + compressionThreshold + "]");
+        } else if (STREAMS_OPTION.equals(name)) {
+            streams = positiveInteger(name, value);
+            logger.info("Streams: [" + streams + "]");
+        } else if (DAEMON_OPTION.equals(name)) {
+            daemon = booleanOption(name, value);
+            logger.info("Receiver daemon: [" + daemon + "]");
+        } else if (ADMIN_PORT_OPTION.equals(name)) {
+            adminPort = positiveInteger(name, value);
+            logger.info("Admin port: [" + adminPort + "]");
+        } else if (BALANCING_OPTION.equals(name)) {
+            try {
+                balancing = FanOutInitiator.Balancing.parse(value);
+                logger.info("Balancing: [" + balancing + "]");
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.SEVERE, "Allowed --" + BALANCING_OPTION + ": " + FanOutInitiator.Balancing.ROUND_ROBIN + " / " + FanOutInitiator.Balancing.LEAST_OUTSTANDING);
+                System.exit(0);
+            }
+        } else if (RECONNECT_ATTEMPTS_OPTION.equals(name)) {
+            reconnectAttempts = positiveInteger(name, value);
+            logger.info("Reconnect attempts: [" + reconnectAttempts + "]");
+        } else if (REPLY_TIMEOUT_OPTION.equals(name)) {
+            replyTimeoutMillis = positiveInteger(name, value);
+            logger.info("Reply timeout in milliseconds: [" + replyTimeoutMillis + "]");
+        } else if (JOURNAL_OPTION.equals(name)) {
+            journalDirectory = value;
+            logger.info("Message journal directory: [" + journalDirectory + "]");
+        } else if (REPLAY_OPTION.equals(name)) {
+            replayDirectory = value;
+            logger.info("Replayed message journal directory: [" + replayDirectory + "]");
+        } else if (REPLAY_SPEED_OPTION.equals(name)) {
+            replaySpeed = MAX_SPEED.equals(value) ? ReplayInitiator.AS_FAST_AS_POSSIBLE : positiveInteger(name, value);
+            logger.info("Replay speed: [" + value + "]");
+        } else if (CREDITS_OPTION.equals(name)) {
+            credits = positiveInteger(name, value);
+            logger.info("Flow control credits: [" + credits + "]");
+        } else if (SHM_FILE_OPTION.equals(name)) {
+            sharedMemoryFile = value;
+            logger.info("Shared memory file: [" + sharedMemoryFile + "]");
+        } else {
+            logger.log(Level.SEVERE, "Unknown optional argument: [" + arg + "]");
+            System.exit(0);
+        }
+    }
+
+    private int positiveInteger(String name, String value) {
+        try {
+            int parsed = Integer.valueOf(value);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        logger.log(Level.SEVERE, "Allowed --" + name + ": Should be a positive integer.");
+        System.exit(0);
+        return -1;
+    }
+
+    private int payloadSize(String name, String value) {
+        try {
+            int parsed = Integer.valueOf(value);
+            if (parsed >= 0 && parsed <= Payload.MAX_SIZE) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        logger.log(Level.SEVERE, "Allowed --" + name + ": BYTES or MIN-MAX, between 0 and " + Payload.MAX_SIZE + ".");
+        System.exit(0);
+        return -1;
+    }
+
+    private boolean booleanOption(String name, String value) {
+        if (!"true".equals(value) && !"false".equals(value)) {
+            logger.log(Level.SEVERE, "Allowed --" + name + ": true / false");
+            System.exit(0);
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    private MessageHandler createMessageHandler(Transport transport) throws IOException {
+        return createMessageHandler(transport, resources);
+    }
+
+    /**
+     * Taps the handler into a new {@link MessageJournal}, if asked for. The journal is closed once the player is done.
+     *
+     * @param messageHandler
+     * @return -   the same handler.
+     * @throws IOException -   thrown if the journal could not be created.
+     */
+    private MessageHandler record(MessageHandler messageHandler) throws IOException {
+        if (journalDirectory != null) {
+            journal = MessageJournal.create(new File(journalDirectory), MessageJournal.DEFAULT_SEGMENT_SIZE);
+            resources.add(journal);
+            messageHandler.setJournal(journal);
+        }
+        return messageHandler;
     }
 
     /**
      * Create an instance of {@link MessageHandler}
      *
-     * @param socket
-     * @return -   {@link MessageHandler} with input write and output scanner.
+     * @param transport
+     * @param opened    -   what is opened for the handler is added, so that it can be closed.
+     * @return -   {@link TextMessageHandler} with input write and output scanner.
+     * Or {@link BinaryMessageHandler} with the transport streams if the binary codec is selected. It can compress, if asked to.
+     * Both flush as per the {@link FlushPolicy}.
+     * With --credits, the binary one uses flow control.
      * @throws IOException -   thrown if there is any exception while getting output or input stream.
      */
-    private MessageHandler createMessageHandler(Socket socket) throws IOException {
-        writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-        readScanner = new Scanner(socket.getInputStream());
-        return new MessageHandler(writer, readScanner);
+    private MessageHandler createMessageHandler(Transport transport, List<Closeable> opened) throws IOException {
+        logger.info("Messages are exchanged through: [" + transport + "]");
+        if (BINARY_CODEC.equals(codec)) {
+            opened.add(transport);
+            BinaryMessageHandler binaryHandler = new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream(),
+                    transport.getWritableChannel(), flushPolicy, bufferSize);
+            if (compression) {
+                Compression handlerCompression = new Compression(compressionThreshold);
+                binaryHandler.setCompression(handlerCompression);
+                opened.add(handlerCompression);
+            }
+            binaryHandler.setCreditCapacity(credits);
+            return binaryHandler;
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(transport.getOutputStream()), bufferSize);
+        Scanner readScanner = new Scanner(transport.getInputStream());
+        opened.add(readScanner);
+        opened.add(writer);
+        opened.add(transport);
+        return new TextMessageHandler(writer, readScanner, flushPolicy);
+    }
+
+    /**
+     * @return -   what the {@link Initiator} sends. {@link Application#MESSAGE} unless a payload is given.
+     * @throws IOException -   thrown if the payload file could not be opened.
+     */
+    private Payload createPayload() throws IOException {
+        Payload payload = Payload.message();
+        if (payloadFile != null) {
+            payload = Payload.file(new File(payloadFile));
+            resources.add(payload);
+        } else if (maxPayloadSize >= 0) {
+            payload = Payload.sized(minPayloadSize, maxPayloadSize, bulk);
+        }
+        logger.info("Payload: [" + payload + "]");
+        return payload;
+    }
+
+    /**
+     * Opens the connections of the {@link LoadGenerator}.
+     * Every connection is written and read by different threads. So, it gets a handler for each direction.
+     */
+    private IPlayer createLoadGenerator() throws IOException {
+        List<LoadGenerator.Connection> loadConnections = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Transport transport = SHM_TRANSPORT.equals(transportType)
+                    ? SharedMemoryTransport.open(sharedMemoryFile(), SHM_OPEN_TIMEOUT_MILLIS)
+                    : socketTransport(initializeSimpleSocket(receiverHost, port));
+            resources.add(transport);
+            loadConnections.add(new LoadGenerator.Connection(createWriter(transport, flushPolicy), createReader(transport), transport));
+        }
+        LatencyReporter latencyReporter = new LatencyReporter(TimeUnit.SECONDS.toNanos(reportIntervalSeconds), reportFile);
+        return new LoadGenerator(loadConnections, maxMessages, messagesPerSecond, latencyReporter);
     }
 
     /**
-     * Closes the input scanner, output write and socket.
+     * Handler which only writes into the transport. For players which read on another thread.
+     */
+    private MessageHandler createWriter(Transport transport, FlushPolicy writerFlushPolicy) throws IOException {
+        if (BINARY_CODEC.equals(codec)) {
+            return new BinaryMessageHandler(null, transport.getOutputStream(), writerFlushPolicy, bufferSize);
+        }
+        return new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(transport.getOutputStream()), bufferSize), null, writerFlushPolicy);
+    }
+
+    /**
+     * Handler which only reads from the transport. For players which write on another thread.
+     */
+    private MessageHandler createReader(Transport transport) throws IOException {
+        if (BINARY_CODEC.equals(codec)) {
+            return new BinaryMessageHandler(transport.getInputStream(), null, FlushPolicy.immediate(), bufferSize);
+        }
+        return new TextMessageHandler(null, new Scanner(transport.getInputStream()));
+    }
+
+    /**
+     * Applies the {@link SocketOptions} on the connected socket.
+     */
+    private Transport socketTransport(Socket socket) throws IOException {
+        socketOptions.apply(socket);
+        logger.info("Socket options: " + socketOptions);
+        return new SocketTransport(socket);
+    }
+
+    /**
+     * Runs the {@link Receiver} on a thread of its own and the {@link Initiator} on this one.
+     * They talk through an {@link InProcessTransport}, so the network stack plays no part.
+     * The initiator end is closed once it is done. So, the receiver stops even if the initiator failed.
+     */
+    private void startCombined() {
+        InProcessTransport transport = new InProcessTransport(InProcessTransport.DEFAULT_RING_CAPACITY, WaitStrategy.parse(waitStrategy));
+        Thread receiverThread;
+        try {
+            IPlayer receiver = new Receiver(createMessageHandler(transport.getPeer()));
+            LatencyReporter latencyReporter = new LatencyReporter(TimeUnit.SECONDS.toNanos(reportIntervalSeconds), reportFile);
+            IPlayer initiator = new Initiator(createMessageHandler(transport), maxMessages, window, latencyReporter, createPayload(), streams);
+            receiverThread = new Thread(receiver::start, RECEIVER_IDENTIFIER);
+            receiverThread.start();
+            initiator.start();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while creating the players.", e);
+            return;
+        } finally {
+            transport.close();
+        }
+        try {
+            receiverThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Closes the resources opened for the player. Eg: input scanner, output write and socket.
+     * The asynchronous logs are flushed last, so that nothing logged while closing is lost.
      */
     private void addShutDownHook() {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                readScanner.close();
-                writer.close();
-                socket.close();
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Exception while closing connections.", e);
+            for (Closeable resource : resources) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Exception while closing connections.", e);
+                }
             }
         }));
     }
 
+    /**
+     * For bulk writes, the socket of a {@link SocketChannel}, so that the channel can be written directly.
+     */
     private Socket initializeSimpleSocket(final String receiverHost, final int port) throws IOException {
         logger.info("Simple socket initialized on [" + port + "] and connected to [" + receiverHost + "].");
-        return new Socket(receiverHost, port);
+        Socket socket = bulk || payloadFile != null ? SocketChannel.open().socket() : new Socket();
+        if (socketOptions.getReceiveBufferSize() != null) {
+            socket.setReceiveBufferSize(socketOptions.getReceiveBufferSize());
+        }
+        socket.connect(new InetSocketAddress(receiverHost, port));
+        return socket;
     }
 
     private Socket initializeServerSocket(final int port) throws IOException {
-        ServerSocket serverSocket = new ServerSocket(port);
+        if (bulk) {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            if (socketOptions.getReceiveBufferSize() != null) {
+                serverChannel.socket().setReceiveBufferSize(socketOptions.getReceiveBufferSize());
+            }
+            serverChannel.bind(new InetSocketAddress(port));
+            logger.info("Receiver socket channel start on [" + port + "]. Waiting for initiator to connect.");
+            return serverChannel.accept().socket();
+        }
+        return bindServerSocket(port).accept();
+    }
+
+    /**
+     * For the receiver daemon. With --bulk, the sessions need socket channels, so the server socket is the one of a channel.
+     */
+    private ServerSocket bindSessionSocket(final int port) throws IOException {
+        if (bulk) {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            if (socketOptions.getReceiveBufferSize() != null) {
+                serverChannel.socket().setReceiveBufferSize(socketOptions.getReceiveBufferSize());
+            }
+            serverChannel.bind(new InetSocketAddress(port));
+            logger.info("Receiver socket channel start on [" + port + "]. Waiting for initiators to connect.");
+            return serverChannel.socket();
+        }
+        return bindServerSocket(port);
+    }
+
+    private ServerSocket bindServerSocket(final int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+        if (socketOptions.getReceiveBufferSize() != null) {
+            serverSocket.setReceiveBufferSize(socketOptions.getReceiveBufferSize());
+        }
+        serverSocket.bind(new InetSocketAddress(port));
         logger.info("Receiver socket start on [" + port + "]. Waiting for initiator to connect.");
-        return serverSocket.accept();
+        return serverSocket;
+    }
+
+    /**
+     * The receiver creates the shared memory. The initiator waits for it in {@link SharedMemoryTransport#open(File, long)}
+     */
+    private Transport initializeSharedMemory() throws IOException {
+        SharedMemoryTransport transport = SharedMemoryTransport.create(sharedMemoryFile(), SharedMemoryTransport.DEFAULT_RING_CAPACITY);
+        logger.info("Receiver shared memory start for [" + port + "]. Waiting for initiator to write.");
+        return transport;
+    }
+
+    /**
+     * Both players derive the same file from the port, unless it is given.
+     * Falls back to the temporary directory where there is no /dev/shm. Eg: not on linux.
+     */
+    private File sharedMemoryFile() {
+        if (sharedMemoryFile != null) {
+            return new File(sharedMemoryFile);
+        }
+        File directory = new File(SHM_DIRECTORY);
+        if (!directory.isDirectory()) {
+            directory = new File(System.getProperty("java.io.tmpdir"));
+        }
+        return new File(directory, "task-sockets-" + port);
+    }
+
+    private ServerSocketChannel initializeServerSocketChannel(final int port) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        logger.info("Receiver socket channel start on [" + port + "]. Waiting for initiators to connect.");
+        return serverChannel;
     }
 
 }
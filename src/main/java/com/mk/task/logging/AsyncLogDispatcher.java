@@ -0,0 +1,196 @@
+package com.mk.task.logging;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands the log events of the hot loops over to a background thread, which does the formatting and the logging.
+ * Responsibilities:
+ * 1. Keeps the events in a bounded, preallocated and lock free ring. Adding an event never blocks and creates no object.
+ * 2. Drains the ring on the background thread into the {@link Logger} of every event.
+ * 3. If the ring is full, {@link Level#WARNING} and {@link Level#SEVERE} events are logged by the calling thread,
+ * so that they are never lost. Less important events are dropped and counted.
+ * NOTE: Such an event is logged right away, so it can come before the events added earlier which are still in the ring.
+ * 4. On {@link #close()}, stops the background thread and logs the remaining events.
+ * An event added while or after closing is logged by the thread which adds it. So, no event in the ring is left behind.
+ * <p>
+ * Any number of threads can add events. Every slot has a sequence, telling whether it is free for the given lap
+ * of the producers or ready for the consumer.
+ */
+public class AsyncLogDispatcher implements Closeable {
+
+    private final static Logger logger = Logger.getLogger(AsyncLogDispatcher.class.getName());
+
+    private final static long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Logger[] loggers;
+    private final Level[] levels;
+    private final String[] templates;
+    private final Object[] parameters;
+    private final long[] values;
+    private final boolean[] hasValue;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long head;
+
+    private final Thread drainer;
+    private volatile boolean running = true;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity -   number of events the ring can hold. Rounded up to a power of two.
+     */
+    public AsyncLogDispatcher(final int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.loggers = new Logger[size];
+        this.levels = new Level[size];
+        this.templates = new String[size];
+        this.parameters = new Object[size];
+        this.values = new long[size];
+        this.hasValue = new boolean[size];
+        this.drainer = new Thread(this::drain, "async-log-dispatcher");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    void dispatch(Logger target, Level level, String template, Object parameter) {
+        if (!offer(target, level, template, parameter, 0, false)) {
+            overflow(target, level, template, new Object[]{parameter});
+        } else if (closed) {
+            drainClaimed();
+        }
+    }
+
+    void dispatch(Logger target, Level level, String template, long value) {
+        if (!offer(target, level, template, null, value, true)) {
+            overflow(target, level, template, new Object[]{value});
+        } else if (closed) {
+            drainClaimed();
+        }
+    }
+
+    /**
+     * @return -   number of events dropped so far because the ring was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops the background thread and logs the remaining events.
+     * An event added after the last pass of the background thread is logged here, or by the thread which added it.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        boolean interrupted = false;
+        while (drainer.isAlive()) {
+            try {
+                drainer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+        drainClaimed();
+        if (dropped.get() > 0) {
+            logger.log(Level.WARNING, "Dropped log events as the ring was full: [" + dropped.get() + "]");
+        }
+    }
+
+    private boolean offer(Logger target, Level level, String template, Object parameter, long value, boolean isValue) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    loggers[index] = target;
+                    levels[index] = level;
+                    templates[index] = template;
+                    parameters[index] = parameter;
+                    values[index] = value;
+                    hasValue[index] = isValue;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void overflow(Logger target, Level level, String template, Object[] parameters) {
+        if (level.intValue() >= Level.WARNING.intValue()) {
+            target.log(level, template, parameters);
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            if (!poll()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        while (poll()) {
+            // logs the events added before closing
+        }
+    }
+
+    /**
+     * Only once the background thread is stopped. Logs every event which claimed a slot so far.
+     * A claimed slot is filled right after, so it is waited for. The closed flag is set before the tail is read.
+     * So, a thread claiming a slot after that read sees the flag, and drains its event itself.
+     */
+    private synchronized void drainClaimed() {
+        long end = tail.get();
+        while (head < end) {
+            if (!poll()) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private boolean poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return false;
+        }
+        Logger target = loggers[index];
+        Level level = levels[index];
+        String template = templates[index];
+        Object parameter = hasValue[index] ? (Object) values[index] : parameters[index];
+        loggers[index] = null;
+        parameters[index] = null;
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        target.log(level, template, parameter);
+        return true;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.mk.task.logging;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logger for the events logged once per message by the players.
+ * Responsibilities:
+ * 1. Checks the level before anything else, so that nothing is done for disabled levels.
+ * 2. Passes the message as a template and a parameter, so that the message is built only when it is really logged.
+ * Templates follow {@link java.text.MessageFormat}. Eg: "Sent message: count: [{0,number,#}]"
+ * 3. Synchronous by default. Once {@link #useAsync(AsyncLogDispatcher, int)} is called,
+ * events are handed over to the {@link AsyncLogDispatcher} and only every Nth INFO or lower event is logged.
+ * {@link Level#WARNING} and {@link Level#SEVERE} events are never sampled.
+ * <p>
+ * The mode is global, same as the {@link java.util.logging.LogManager} configuration.
+ * So, it should be chosen before the players are created.
+ * NOTE: Not thread safe. Every player should have its own instance.
+ */
+public class HotLoopLogger {
+
+    private static volatile AsyncLogDispatcher asyncDispatcher;
+    private static volatile int asyncSampleEvery = 1;
+
+    private final Logger logger;
+    private final AsyncLogDispatcher dispatcher;
+    private final int sampleEvery;
+    private long sampleCount;
+
+    public HotLoopLogger(final Logger logger) {
+        this.logger = logger;
+        this.dispatcher = asyncDispatcher;
+        this.sampleEvery = dispatcher == null ? 1 : asyncSampleEvery;
+    }
+
+    /**
+     * Makes the hot loop loggers created from now on asynchronous.
+     *
+     * @param dispatcher
+     * @param sampleEvery -   1 to log every INFO or lower event, N to log one out of N.
+     */
+    public static void useAsync(final AsyncLogDispatcher dispatcher, final int sampleEvery) {
+        asyncSampleEvery = sampleEvery;
+        asyncDispatcher = dispatcher;
+    }
+
+    /**
+     * Makes the hot loop loggers created from now on synchronous again.
+     */
+    public static void useSync() {
+        asyncDispatcher = null;
+        asyncSampleEvery = 1;
+    }
+
+    public void log(final Level level, final String template, final Object parameter) {
+        if (!isLogged(level)) {
+            return;
+        }
+        if (dispatcher == null) {
+            logger.log(level, template, parameter);
+        } else {
+            dispatcher.dispatch(logger, level, template, parameter);
+        }
+    }
+
+    public void log(final Level level, final String template, final long value) {
+        if (!isLogged(level)) {
+            return;
+        }
+        if (dispatcher == null) {
+            logger.log(level, template, value);
+        } else {
+            dispatcher.dispatch(logger, level, template, value);
+        }
+    }
+
+    private boolean isLogged(Level level) {
+        if (!logger.isLoggable(level)) {
+            return false;
+        }
+        if (sampleEvery == 1 || level.intValue() >= Level.WARNING.intValue()) {
+            return true;
+        }
+        return sampleCount++ % sampleEvery == 0;
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.mk.task.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the round trip latencies of a player and reports them.
+ * Responsibilities:
+ * 1. Records every latency into a total and an interval {@link LatencyHistogram}.
+ * 2. Logs the interval report whenever the configured interval has passed. The interval histogram then starts over.
+ * 3. Logs the total report when the player finishes.
+ * 4. Optionally, appends every report as a CSV line to a file. For the columns: {@link #CSV_HEADER}
+ * <p>
+ * Reports contain min / mean / p50 / p99 / p99.9 / max in microseconds and the messages per second.
+ * {@link #record(long, long)} is on the hot path of the player. So, the interval reports are formatted and written by a background thread.
+ * The full interval histogram is handed to it, and a spare one takes its place. If the previous report is not done yet,
+ * the interval goes on until the next record, so the player never waits. The file is kept open until {@link #finish(long)}.
+ */
+public class LatencyReporter {
+
+    private final static Logger logger = Logger.getLogger(LatencyReporter.class.getName());
+
+    public final static String CSV_HEADER = "epochMillis,type,messages,messagesPerSecond,minMicros,meanMicros,p50Micros,p99Micros,p999Micros,maxMicros";
+
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final long intervalNanos;
+    private final String reportFile;
+    private final Thread reporter;
+
+    private LatencyHistogram interval = new LatencyHistogram();
+    private volatile LatencyHistogram spare;
+    private volatile LatencyHistogram pending;
+    private volatile long pendingElapsedNanos;
+    private volatile boolean finished;
+    private Writer writer;
+    private long startNanos;
+    private long intervalStartNanos;
+
+    /**
+     * Reports only the total, into the logs.
+     */
+    public LatencyReporter() {
+        this(0, null);
+    }
+
+    /**
+     * @param intervalNanos -   0 to report only the total.
+     * @param reportFile    -   CSV file to append the reports to. Null to report only into the logs.
+     */
+    public LatencyReporter(final long intervalNanos, final String reportFile) {
+        this.intervalNanos = intervalNanos;
+        this.reportFile = reportFile;
+        if (intervalNanos > 0) {
+            this.spare = new LatencyHistogram();
+            this.reporter = new Thread(this::reportIntervals, "latency-reporter");
+            reporter.setDaemon(true);
+            reporter.start();
+        } else {
+            this.reporter = null;
+        }
+    }
+
+    public void start(long nowNanos) {
+        startNanos = nowNanos;
+        intervalStartNanos = nowNanos;
+    }
+
+    public void record(long nowNanos, long latencyNanos) {
+        total.record(latencyNanos);
+        interval.record(latencyNanos);
+        if (intervalNanos > 0 && nowNanos - intervalStartNanos >= intervalNanos) {
+            LatencyHistogram next = spare;
+            if (next != null) {
+                spare = null;
+                pendingElapsedNanos = nowNanos - intervalStartNanos;
+                pending = interval;
+                interval = next;
+                intervalStartNanos = nowNanos;
+                LockSupport.unpark(reporter);
+            }
+        }
+    }
+
+    /**
+     * Waits for the interval reports handed over, so that they come before the total. Then, closes the file.
+     */
+    public void finish(long nowNanos) {
+        if (reporter != null) {
+            finished = true;
+            LockSupport.unpark(reporter);
+            try {
+                reporter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warning("Interrupted while waiting for the interval latency reports.");
+            }
+        }
+        report("total", total, nowNanos - startNanos);
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Exception while closing the latency report [" + reportFile + "]", e);
+            }
+            writer = null;
+        }
+    }
+
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    /**
+     * Runs on the reporter thread. The histogram is returned as the spare once reported.
+     * The finished flag is read before the pending histogram, so that the last interval handed over is not missed.
+     */
+    private void reportIntervals() {
+        while (true) {
+            boolean last = finished;
+            LatencyHistogram histogram = pending;
+            if (histogram != null) {
+                report("interval", histogram, pendingElapsedNanos);
+                histogram.reset();
+                pending = null;
+                spare = histogram;
+            } else if (last) {
+                return;
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private void report(String type, LatencyHistogram histogram, long elapsedNanos) {
+        double messagesPerSecond = elapsedNanos <= 0 ? 0 : histogram.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        logger.info(String.format(Locale.ROOT,
+                "Latency [%s]: messages: [%d], messages/sec: [%.1f], min: [%.1f us], mean: [%.1f us], p50: [%.1f us], p99: [%.1f us], p99.9: [%.1f us], max: [%.1f us]",
+                type, histogram.getCount(), messagesPerSecond, micros(histogram.getMin()), histogram.getMean() / 1000,
+                micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(99)),
+                micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getMax())));
+        if (reportFile != null) {
+            appendToFile(String.format(Locale.ROOT, "%d,%s,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                    System.currentTimeMillis(), type, histogram.getCount(), messagesPerSecond,
+                    micros(histogram.getMin()), histogram.getMean() / 1000, micros(histogram.getValueAtPercentile(50)),
+                    micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+                    micros(histogram.getMax())));
+        }
+    }
+
+    /**
+     * The file is opened on the first report. Every line is flushed, so that the reports so far are there if the process dies.
+     */
+    private void appendToFile(String line) {
+        try {
+            if (writer == null) {
+                boolean newFile = !new File(reportFile).exists();
+                writer = new BufferedWriter(new FileWriter(reportFile, true));
+                if (newFile) {
+                    writer.write(CSV_HEADER + System.lineSeparator());
+                }
+            }
+            writer.write(line);
+            writer.flush();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while writing the latency report into [" + reportFile + "]", e);
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+}
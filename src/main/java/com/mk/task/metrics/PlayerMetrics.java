@@ -0,0 +1,385 @@
+package com.mk.task.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Live counters of the players, so that they can be watched over JMX instead of through the logs.
+ * Responsibilities:
+ * 1. Counts the messages and bytes sent and received, the failed writes and reads, and the poison pills handled.
+ * 2. Summarizes the round trip latencies: count, mean, min, max, and p50 / p99 / p99.9 from a {@link LatencyHistogram}.
+ * 3. Works out the rate of received messages over the last {@link #RATE_WINDOW_NANOS}, sampled by a background thread once registered.
+ * 4. Counts the frames compressed, the bytes before and after, and the time spent compressing and inflating.
+ * 5. Counts the credit stalls of the flow control, and the time spent waiting for credits.
+ * 6. Counts the datagrams lost, duplicated and reordered, with the UDP transport.
+ * 7. Registers itself with the platform MBean server. {@link #register(String)}
+ * <p>
+ * Counters are {@link LongAdder}s and {@link LongAccumulator}s, which spread the updates over cells.
+ * So, players on many threads do not contend on one counter and the hot path stays cheap.
+ * Sums are only built when read, which is rare.
+ * Histograms are not thread safe. So, every recording thread has its own, under a lock which only the readers contend for.
+ * Reading, over JMX or not, changes nothing. Eg: two consoles polling the rate see the same value.
+ * The metrics are global, same as the {@link com.mk.task.logging.HotLoopLogger} mode. Players take the current ones when created.
+ * Bytes of the text codec are counted as characters plus the line separator.
+ */
+public class PlayerMetrics implements PlayerMetricsMBean {
+
+    private final static Logger logger = Logger.getLogger(PlayerMetrics.class.getName());
+
+    public final static String DOMAIN = "com.mk.task";
+    public final static long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static volatile PlayerMetrics current = new PlayerMetrics();
+
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder readFailures = new LongAdder();
+    private final LongAdder poisonPills = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private final LongAdder latencyTotal = new LongAdder();
+    private final LongAccumulator latencyMin = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator latencyMax = new LongAccumulator(Math::max, 0);
+    private final LongAdder compressedMessages = new LongAdder();
+    private final LongAdder bytesBeforeCompression = new LongAdder();
+    private final LongAdder bytesAfterCompression = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+    private final LongAdder creditStalls = new LongAdder();
+    private final LongAdder creditStallNanos = new LongAdder();
+    private final LongAdder datagramsLost = new LongAdder();
+    private final LongAdder datagramsDuplicated = new LongAdder();
+    private final LongAdder datagramsReordered = new LongAdder();
+
+    private final List<LatencyHistogram> latencyHistograms = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<LatencyHistogram> threadLatencyHistogram = ThreadLocal.withInitial(() -> {
+        LatencyHistogram histogram = new LatencyHistogram();
+        latencyHistograms.add(histogram);
+        return histogram;
+    });
+
+    private long rateSinceNanos = System.nanoTime();
+    private long rateSinceMessages;
+    private volatile double currentRate;
+
+    /**
+     * @return -   the metrics which the players created from now on update.
+     */
+    public static PlayerMetrics current() {
+        return current;
+    }
+
+    /**
+     * Makes the players created from now on update the given metrics.
+     *
+     * @param metrics
+     */
+    public static void use(final PlayerMetrics metrics) {
+        current = metrics;
+    }
+
+    /**
+     * Registers the metrics as {@value #DOMAIN}:type=Player,name=... A failure is only logged, as the players work without it.
+     *
+     * @param name -   eg: the type of the player.
+     */
+    public void register(final String name) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Player,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            logger.info("Player metrics are registered as [" + objectName + "]");
+            Thread sampler = new Thread(this::sampleRates, "player-metrics-sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+        } catch (JMException e) {
+            logger.log(Level.SEVERE, "Exception while registering the player metrics.", e);
+        }
+    }
+
+    public void messageSent(int bytes) {
+        messagesSent.increment();
+        bytesOut.add(bytes);
+    }
+
+    public void messageReceived(int bytes) {
+        messagesReceived.increment();
+        bytesIn.add(bytes);
+    }
+
+    /**
+     * Text codec. Eg: {@link com.mk.task.transport.MessageHandler#write(String)}
+     */
+    public void messageSent(String message) {
+        messageSent(textBytes(message));
+    }
+
+    /**
+     * Text codec. Eg: {@link com.mk.task.transport.MessageHandler#read()}
+     */
+    public void messageReceived(String message) {
+        messageReceived(textBytes(message));
+    }
+
+    public void writeFailed() {
+        writeFailures.increment();
+    }
+
+    public void readFailed() {
+        readFailures.increment();
+    }
+
+    public void poisonPill() {
+        poisonPills.increment();
+    }
+
+    public void latency(long nanos) {
+        latencyCount.increment();
+        latencyTotal.add(nanos);
+        latencyMin.accumulate(nanos);
+        latencyMax.accumulate(nanos);
+        LatencyHistogram histogram = threadLatencyHistogram.get();
+        synchronized (histogram) {
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * Runs on the sampler thread, for as long as the process does. The metrics are global.
+     */
+    private void sampleRates() {
+        long next = System.nanoTime() + RATE_WINDOW_NANOS;
+        while (true) {
+            LockSupport.parkNanos(this, next - System.nanoTime());
+            long now = System.nanoTime();
+            if (now - next >= 0) {
+                sampleRate(now);
+                next = now + RATE_WINDOW_NANOS;
+            }
+        }
+    }
+
+    /**
+     * Ends the current window of the rate. Called by the sampler thread only.
+     */
+    void sampleRate(long nowNanos) {
+        long received = messagesReceived.sum();
+        if (nowNanos != rateSinceNanos) {
+            currentRate = (received - rateSinceMessages) * (double) TimeUnit.SECONDS.toNanos(1) / (nowNanos - rateSinceNanos);
+        }
+        rateSinceNanos = nowNanos;
+        rateSinceMessages = received;
+    }
+
+    private static int textBytes(String message) {
+        return message == null ? 0 : message.length() + 1;
+    }
+
+    /**
+     * A frame which did not get smaller is sent as it is. Then it counts only for the time spent.
+     *
+     * @param before -   bytes of the frame.
+     * @param after  -   bytes compressed. The same as before, if the frame was sent as it is.
+     * @param nanos  -   spent compressing.
+     */
+    public void compressed(int before, int after, long nanos) {
+        compressionNanos.add(nanos);
+        if (after < before) {
+            compressedMessages.increment();
+            bytesBeforeCompression.add(before);
+            bytesAfterCompression.add(after);
+        }
+    }
+
+    public void decompressed(long nanos) {
+        decompressionNanos.add(nanos);
+    }
+
+    /**
+     * A message could not be sent, as the receiver had granted no credits. Backpressure, rather than network latency.
+     *
+     * @param nanos -   spent waiting until a credit was granted.
+     */
+    public void creditStall(long nanos) {
+        creditStalls.increment();
+        creditStallNanos.add(nanos);
+    }
+
+    /**
+     * No reply came within the timeout. A reply which comes later does not make it any less lost.
+     */
+    public void datagramLost() {
+        datagramsLost.increment();
+    }
+
+    public void datagramDuplicated() {
+        datagramsDuplicated.increment();
+    }
+
+    public void datagramReordered() {
+        datagramsReordered.increment();
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getWriteFailures() {
+        return writeFailures.sum();
+    }
+
+    @Override
+    public long getReadFailures() {
+        return readFailures.sum();
+    }
+
+    @Override
+    public long getPoisonPills() {
+        return poisonPills.sum();
+    }
+
+    /**
+     * @return -   messages received per second, over the last window sampled. 0 until the first window is over,
+     * or if the metrics are not registered.
+     */
+    @Override
+    public double getCurrentRate() {
+        return currentRate;
+    }
+
+    @Override
+    public long getLatencyCount() {
+        return latencyCount.sum();
+    }
+
+    @Override
+    public double getLatencyMeanMicros() {
+        long count = latencyCount.sum();
+        return count == 0 ? 0 : latencyTotal.sum() / 1000.0 / count;
+    }
+
+    @Override
+    public double getLatencyMinMicros() {
+        return latencyCount.sum() == 0 ? 0 : latencyMin.get() / 1000.0;
+    }
+
+    @Override
+    public double getLatencyMaxMicros() {
+        return latencyMax.get() / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return latencyHistogram().getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return latencyHistogram().getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP999Micros() {
+        return latencyHistogram().getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    /**
+     * @return -   the latencies of all the threads so far, merged into a new histogram.
+     */
+    private LatencyHistogram latencyHistogram() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : latencyHistograms) {
+            synchronized (histogram) {
+                merged.add(histogram);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public long getCompressedMessages() {
+        return compressedMessages.sum();
+    }
+
+    /**
+     * @return -   bytes of the compressed frames before compression, per byte after. Eg: 4.0 for frames 4 times smaller.
+     */
+    @Override
+    public double getCompressionRatio() {
+        long after = bytesAfterCompression.sum();
+        return after == 0 ? 0 : (double) bytesBeforeCompression.sum() / after;
+    }
+
+    @Override
+    public double getCompressionMillis() {
+        return compressionNanos.sum() / 1_000_000.0;
+    }
+
+    @Override
+    public double getDecompressionMillis() {
+        return decompressionNanos.sum() / 1_000_000.0;
+    }
+
+    @Override
+    public long getCreditStalls() {
+        return creditStalls.sum();
+    }
+
+    @Override
+    public double getCreditStallMillis() {
+        return creditStallNanos.sum() / 1_000_000.0;
+    }
+
+    @Override
+    public long getDatagramsLost() {
+        return datagramsLost.sum();
+    }
+
+    @Override
+    public long getDatagramsDuplicated() {
+        return datagramsDuplicated.sum();
+    }
+
+    @Override
+    public long getDatagramsReordered() {
+        return datagramsReordered.sum();
+    }
+
+    /**
+     * @return -   eg: for the log at the end of the run.
+     */
+    public String compressionSummary() {
+        return String.format(Locale.ROOT, "messages: [%d], bytes: [%d] -> [%d], ratio: [%.2f], compress time: [%.1f ms], inflate time: [%.1f ms]",
+                getCompressedMessages(), bytesBeforeCompression.sum(), bytesAfterCompression.sum(), getCompressionRatio(),
+                getCompressionMillis(), getDecompressionMillis());
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.mk.task.metrics;
+
+/**
+ * Live counters of the players, as exposed over JMX. For the details: {@link PlayerMetrics}
+ */
+public interface PlayerMetricsMBean {
+
+    long getMessagesSent();
+
+    long getMessagesReceived();
+
+    long getBytesOut();
+
+    long getBytesIn();
+
+    long getWriteFailures();
+
+    long getReadFailures();
+
+    long getPoisonPills();
+
+    double getCurrentRate();
+
+    long getLatencyCount();
+
+    double getLatencyMeanMicros();
+
+    double getLatencyMinMicros();
+
+    double getLatencyMaxMicros();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyP999Micros();
+
+    long getCompressedMessages();
+
+    double getCompressionRatio();
+
+    double getCompressionMillis();
+
+    double getDecompressionMillis();
+
+    long getCreditStalls();
+
+    double getCreditStallMillis();
+
+    long getDatagramsLost();
+
+    long getDatagramsDuplicated();
+
+    long getDatagramsReordered();
+
+}
@@ -0,0 +1,264 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.DatagramEndpoint;
+
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link Initiator} for the UDP transport, which sends datagrams to {@link DatagramReceiver}
+ * Responsibilities:
+ * 1. Sends {@link Application#MESSAGE} in datagrams numbered from 1, up to {@code window} of them in flight.
+ * 2. Matches every reply against its sequence number, and records the round trip latency.
+ * 3. A datagram without a reply within the reply timeout is lost. Its place in the window is freed, so that the run goes on.
+ * 4. Tells the duplicated, reordered and late replies apart. {@link #getDuplicated()}, {@link #getReordered()}, {@link #getLate()}
+ * 5. Reports the loss rate next to the latency report.
+ * 6. Sends the poison pill until the receiver echoes it, a few times at most.
+ * <p>
+ * A reply is reordered when a higher sequence was answered before it. A duplicate when its sequence was answered already.
+ * Late when it comes after its timeout. The message stays lost then, as the latency that matters was missed.
+ * The send time of every message in flight is kept in a ring indexed by its sequence, same as the {@link Initiator}.
+ * The answered sequences are kept in a bit set of all the messages, so that duplicates are found however late they come.
+ * Both are allocated once. So, nothing is created per message.
+ * NOTE: Unlike TCP, a lost reply does not hold back the ones behind it. It only costs the timeout of its own place in the window.
+ */
+public class DatagramInitiator implements IPlayer {
+
+    private final static Logger logger = Logger.getLogger(DatagramInitiator.class.getName());
+
+    public final static int DEFAULT_REPLY_TIMEOUT_MILLIS = 100;
+    public final static int POISON_PILL_ATTEMPTS = 3;
+
+    private final static byte[] MESSAGE_BYTES = Application.MESSAGE.getBytes(StandardCharsets.UTF_8);
+    private final static byte[] NO_PAYLOAD = new byte[0];
+
+    private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+    private final PlayerMetrics metrics = PlayerMetrics.current();
+
+    private final DatagramEndpoint endpoint;
+    private final int maxMessages;
+    private final int window;
+    private final LatencyReporter latencyReporter;
+    private final long replyTimeoutNanos;
+    private final long[] sequences;
+    private final long[] sendTimes;
+    private final long[] answered;
+    private long sent;
+    private long oldest = 1;
+    private long highestAnswered;
+    private int inFlight;
+    private long acknowledged;
+    private long lost;
+    private long duplicated;
+    private long reordered;
+    private long late;
+
+    public DatagramInitiator(final DatagramEndpoint endpoint, final int maxMessages, final int window,
+                             final LatencyReporter latencyReporter) {
+        this(endpoint, maxMessages, window, latencyReporter, DEFAULT_REPLY_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param replyTimeoutMillis -   after which a message without a reply is lost.
+     */
+    public DatagramInitiator(final DatagramEndpoint endpoint, final int maxMessages, final int window,
+                             final LatencyReporter latencyReporter, final long replyTimeoutMillis) {
+        if (DatagramEndpoint.HEADER_LENGTH + MESSAGE_BYTES.length > DatagramEndpoint.MAX_DATAGRAM_SIZE) {
+            throw new IllegalStateException("Message does not fit in a datagram.");
+        }
+        this.endpoint = endpoint;
+        this.maxMessages = maxMessages;
+        this.window = window;
+        this.latencyReporter = latencyReporter;
+        this.replyTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(replyTimeoutMillis);
+        int ringSize = Integer.highestOneBit(Math.max(1, Math.min(window, maxMessages)) * 2 - 1) << 1;
+        this.sequences = new long[ringSize];
+        this.sendTimes = new long[ringSize];
+        this.answered = new long[(maxMessages + 63) >>> 6];
+    }
+
+    @Override
+    public void start() {
+        latencyReporter.start(System.nanoTime());
+        boolean completed = exchangeDatagrams();
+        latencyReporter.finish(System.nanoTime());
+        logger.info(String.format(Locale.ROOT,
+                "Datagrams: sent: [%d], acknowledged: [%d], lost: [%d], loss rate: [%.3f %%], duplicated: [%d], reordered: [%d], late: [%d]",
+                sent, acknowledged, lost, sent == 0 ? 0 : lost * 100.0 / sent, duplicated, reordered, late));
+        if (completed) {
+            sendPoisonPill();
+        }
+    }
+
+    public long getAcknowledged() {
+        return acknowledged;
+    }
+
+    public long getLost() {
+        return lost;
+    }
+
+    public long getDuplicated() {
+        return duplicated;
+    }
+
+    public long getReordered() {
+        return reordered;
+    }
+
+    public long getLate() {
+        return late;
+    }
+
+    /**
+     * Waits for a reply only until the oldest message in flight times out. A reply which comes later than that is late.
+     *
+     * @return -   true if every message is answered or lost.
+     */
+    private boolean exchangeDatagrams() {
+        while (sent < maxMessages || inFlight > 0) {
+            while (sent < maxMessages && inFlight < window && isFree(sent + 1)) {
+                try {
+                    send(sent + 1);
+                } catch (IOException e) {
+                    metrics.writeFailed();
+                    logger.log(Level.SEVERE, "Exception while sending the datagram", e);
+                    return false;
+                }
+            }
+            long now = System.nanoTime();
+            expire(now);
+            if (inFlight == 0) {
+                continue;
+            }
+            try {
+                if (endpoint.receive(sendTimes[slot(oldest)] + replyTimeoutNanos - now)) {
+                    now = System.nanoTime();
+                    expire(now);
+                    receive(now);
+                }
+            } catch (IOException e) {
+                metrics.readFailed();
+                logger.log(Level.SEVERE, "Exception while reading the datagram. Is the receiver started?", e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A place of the ring is taken until its message is answered or lost.
+     */
+    private boolean isFree(long sequence) {
+        long previous = sequences[slot(sequence)];
+        return previous < oldest;
+    }
+
+    private void send(long sequence) throws IOException {
+        int slot = slot(sequence);
+        sequences[slot] = sequence;
+        sendTimes[slot] = System.nanoTime();
+        metrics.messageSent(endpoint.send(sequence, DatagramEndpoint.MESSAGE_TYPE, MESSAGE_BYTES));
+        sent = sequence;
+        inFlight++;
+    }
+
+    /**
+     * Messages are sent in the order of their sequences, so their timeouts expire in the same order.
+     * The oldest one in flight moves ahead over the ones already answered.
+     */
+    private void expire(long now) {
+        while (oldest <= sent) {
+            if (isAnswered(oldest)) {
+                oldest++;
+            } else if (now - sendTimes[slot(oldest)] >= replyTimeoutNanos) {
+                lost++;
+                inFlight--;
+                metrics.datagramLost();
+                hotLoopLogger.log(Level.FINE, "Lost datagram with sequence: [{0,number,#}]", oldest);
+                oldest++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void receive(long now) {
+        long sequence = endpoint.getSequence();
+        metrics.messageReceived(endpoint.getLength());
+        if (endpoint.getType() != DatagramEndpoint.MESSAGE_TYPE || sequence < 1 || sequence > sent) {
+            hotLoopLogger.log(Level.WARNING, "Received a datagram with an unknown sequence: [{0,number,#}]", sequence);
+            return;
+        }
+        if (isAnswered(sequence)) {
+            duplicated++;
+            metrics.datagramDuplicated();
+            hotLoopLogger.log(Level.FINE, "Received a duplicate of the datagram with sequence: [{0,number,#}]", sequence);
+            return;
+        }
+        answered[(int) ((sequence - 1) >>> 6)] |= 1L << (sequence - 1);
+        if (sequence < highestAnswered) {
+            reordered++;
+            metrics.datagramReordered();
+        } else {
+            highestAnswered = sequence;
+        }
+        if (sequence < oldest) {
+            late++;
+            hotLoopLogger.log(Level.FINE, "Received the datagram with sequence: [{0,number,#}] after its timeout", sequence);
+            return;
+        }
+        acknowledged++;
+        inFlight--;
+        long latency = now - sendTimes[slot(sequence)];
+        latencyReporter.record(now, latency);
+        metrics.latency(latency);
+        hotLoopLogger.log(Level.FINE, "Received datagram with sequence: [{0,number,#}]", sequence);
+    }
+
+    private boolean isAnswered(long sequence) {
+        return (answered[(int) ((sequence - 1) >>> 6)] & 1L << (sequence - 1)) != 0;
+    }
+
+    private int slot(long sequence) {
+        return (int) sequence & (sequences.length - 1);
+    }
+
+    /**
+     * The pill may be lost as any datagram. So, it is sent again until the receiver echoes it.
+     * Other replies which come meanwhile are too late to count.
+     */
+    private void sendPoisonPill() {
+        logger.info("Received or lost the datagram having sequence: [" + sent + "].");
+        long pillSequence = sent + 1;
+        try {
+            for (int attempt = 1; attempt <= POISON_PILL_ATTEMPTS; attempt++) {
+                endpoint.send(pillSequence, DatagramEndpoint.POISON_PILL_TYPE, NO_PAYLOAD);
+                metrics.poisonPill();
+                long deadline = System.nanoTime() + replyTimeoutNanos;
+                while (endpoint.receive(deadline - System.nanoTime())) {
+                    if (endpoint.getType() == DatagramEndpoint.POISON_PILL_TYPE) {
+                        logger.info("Poison pill is now sent and acknowledged.");
+                        return;
+                    }
+                }
+            }
+            logger.log(Level.WARNING, "Receiver did not acknowledge the poison pill after [" + POISON_PILL_ATTEMPTS + "] attempts.");
+        } catch (PortUnreachableException e) {
+            logger.info("Receiver stopped before its acknowledgement of the poison pill came.");
+        } catch (IOException e) {
+            metrics.writeFailed();
+            logger.log(Level.SEVERE, "Exception while sending poison pill to stop receiver.", e);
+        }
+    }
+
+}
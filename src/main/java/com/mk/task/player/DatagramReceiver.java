@@ -0,0 +1,63 @@
+package com.mk.task.player;
+
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.DatagramEndpoint;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link Receiver} for the UDP transport.
+ * Responsibilities:
+ * 1. Reads the datagrams of {@link DatagramInitiator}
+ * 2. Sends every one of them back as it is, with the sequence number of the initiator.
+ * 3. The process will stop once it receives a poison pill datagram, which is echoed first as its acknowledgement.
+ * 4. The process will also stop if there is any exception while reading or writing the channel.
+ * <p>
+ * Unlike the {@link Receiver}, no count is added. A count of its own would not match the initiator's one after the first loss,
+ * so the sequence number is what both sides agree on. Every datagram is handled on its own and nothing is created per message.
+ */
+public class DatagramReceiver implements IPlayer {
+
+    private final static Logger logger = Logger.getLogger(DatagramReceiver.class.getName());
+
+    private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+    private final PlayerMetrics metrics = PlayerMetrics.current();
+    private final DatagramEndpoint endpoint;
+
+    public DatagramReceiver(final DatagramEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void start() {
+        int received = 0;
+        while (true) {
+            try {
+                endpoint.receive();
+            } catch (IOException e) {
+                metrics.readFailed();
+                logger.log(Level.SEVERE, "Exception while reading datagram: count: [" + (received + 1) + "]", e);
+                break;
+            }
+            received++;
+            metrics.messageReceived(endpoint.getLength());
+            try {
+                metrics.messageSent(endpoint.echo());
+            } catch (IOException e) {
+                metrics.writeFailed();
+                logger.log(Level.SEVERE, "Exception while sending datagram: sequence: [" + endpoint.getSequence() + "]", e);
+                break;
+            }
+            if (endpoint.getType() == DatagramEndpoint.POISON_PILL_TYPE) {
+                metrics.poisonPill();
+                logger.info("Received poison pill after [" + (received - 1) + "] datagrams. So, exiting.");
+                break;
+            }
+            hotLoopLogger.log(Level.FINE, "Sent datagram with sequence: [{0,number,#}]", endpoint.getSequence());
+        }
+    }
+
+}
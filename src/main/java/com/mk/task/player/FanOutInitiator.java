@@ -0,0 +1,500 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.Sequences;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.mk.task.Application.MESSAGE;
+import static com.mk.task.Application.POISON_PILL;
+
+/**
+ * Variant of {@link Initiator} which spreads the messages over many {@link Receiver}s, each on its own connection.
+ * Responsibilities:
+ * 1. Keeps one connection, with a thread of its own, per receiver. Every connection keeps up to {@code window} messages in flight.
+ * 2. Gives every message a sequence number, and the next one to the connection picked by the {@link Balancing}
+ * 3. When a connection fails, reconnects to the same receiver with an exponential backoff,
+ * and re-sends the messages which were not acknowledged, in order.
+ * 4. When a receiver cannot be reached anymore, its messages which were not acknowledged go to the other receivers.
+ * 5. Once every message is acknowledged, {@link Application#POISON_PILL} is sent on every connection.
+ * 6. At the end, one report for all the receivers: latencies, messages per second, re-sent messages and reconnects.
+ * The interval latency reports, if any, are for all the receivers too.
+ * <p>
+ * Messages of a connection are acknowledged by their replies, which come in the order they were sent.
+ * So, every connection keeps the sequence numbers and the send times of its messages in flight in a ring.
+ * The count appended by the receiver is per connection. So, it starts over after a reconnect.
+ * The latency of a re-sent message is measured from its first send, so that a failover shows up in the latencies.
+ * Only the picking of the next message and its acknowledgement are shared between the connections. The rest of the hot path is on their own threads.
+ * The latency is recorded with the acknowledgement, under the same lock. So, the connections share one {@link LatencyReporter}
+ * Needs the {@link BinaryMessageHandler}, which tells a closed connection apart from a message.
+ * NOTE: Every receiver should serve its connection on its own, eg: one receiver process per host, or the virtual thread mode.
+ * A receiver in the blocking mode stops once its connection drops. So, for the reconnects, it should run as a {@link ReceiverDaemon}
+ */
+public class FanOutInitiator implements IPlayer {
+
+    private final static Logger logger = Logger.getLogger(FanOutInitiator.class.getName());
+
+    private final static byte[] MESSAGE_BYTES = MESSAGE.getBytes(StandardCharsets.UTF_8);
+
+    public final static long INITIAL_BACKOFF_MILLIS = 50;
+    public final static long MAX_BACKOFF_MILLIS = 5_000;
+    public final static int DEFAULT_RECONNECT_ATTEMPTS = 5;
+
+    /**
+     * How the next message is given to a connection.
+     */
+    public enum Balancing {
+        /**
+         * The connections take the messages in turn.
+         */
+        ROUND_ROBIN("round-robin"),
+        /**
+         * A connection takes the next message only if no other connection has fewer messages in flight.
+         * So, a slow receiver gets fewer messages.
+         */
+        LEAST_OUTSTANDING("least-outstanding");
+
+        private final String option;
+
+        Balancing(String option) {
+            this.option = option;
+        }
+
+        /**
+         * @param value -   round-robin / least-outstanding
+         * @return
+         * @throws IllegalArgumentException -   thrown if the value is none of them.
+         */
+        public static Balancing parse(final String value) {
+            for (Balancing balancing : values()) {
+                if (balancing.option.equals(value)) {
+                    return balancing;
+                }
+            }
+            throw new IllegalArgumentException("Unknown balancing: [" + value + "]");
+        }
+
+        @Override
+        public String toString() {
+            return option;
+        }
+    }
+
+    /**
+     * Connects to a receiver.
+     */
+    public interface Connector {
+        /**
+         * @param receiver
+         * @param opened   -   what is opened for the handler is added. Closed once the connection fails or is done.
+         * @return
+         * @throws IOException -   thrown if the receiver could not be reached.
+         */
+        BinaryMessageHandler connect(InetSocketAddress receiver, List<Closeable> opened) throws IOException;
+    }
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final Connector connector;
+    private final int maxMessages;
+    private final int window;
+    private final Balancing balancing;
+    private final LatencyReporter latencyReporter;
+    private final int reconnectAttempts;
+    private final long initialBackoffMillis;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Integer> unacknowledged = new ArrayDeque<>();
+    private int nextSequence = 1;
+    private int acknowledged;
+    private int liveLanes;
+    private int turn;
+    private int waiting;
+
+    public FanOutInitiator(final List<InetSocketAddress> receivers, final Connector connector, final int maxMessages,
+                           final int window, final Balancing balancing, final LatencyReporter latencyReporter) {
+        this(receivers, connector, maxMessages, window, balancing, latencyReporter, DEFAULT_RECONNECT_ATTEMPTS, INITIAL_BACKOFF_MILLIS);
+    }
+
+    /**
+     * @param receivers            -   one connection to each of them. Should not be empty.
+     * @param connector
+     * @param maxMessages          -   across all the receivers.
+     * @param window               -   max messages in flight, per connection.
+     * @param balancing
+     * @param latencyReporter      -   reports the latencies of all the connections, every interval and at the end.
+     * @param reconnectAttempts    -   after a failure, before the receiver is given up.
+     * @param initialBackoffMillis -   wait before the first reconnect. Doubled for every next one, up to {@link #MAX_BACKOFF_MILLIS}
+     */
+    public FanOutInitiator(final List<InetSocketAddress> receivers, final Connector connector, final int maxMessages,
+                           final int window, final Balancing balancing, final LatencyReporter latencyReporter,
+                           final int reconnectAttempts, final long initialBackoffMillis) {
+        if (receivers.isEmpty()) {
+            throw new IllegalArgumentException("At least one receiver is needed.");
+        }
+        this.connector = connector;
+        this.maxMessages = maxMessages;
+        this.window = window;
+        this.balancing = balancing;
+        this.latencyReporter = latencyReporter;
+        this.reconnectAttempts = reconnectAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        for (InetSocketAddress receiver : receivers) {
+            lanes.add(new Lane(lanes.size(), receiver));
+        }
+        this.liveLanes = lanes.size();
+    }
+
+    @Override
+    public void start() {
+        List<Thread> threads = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        latencyReporter.start(startNanos);
+        for (Lane lane : lanes) {
+            Thread thread = new Thread(lane::run, "fan-out-" + lane.index);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.log(Level.SEVERE, "Interrupted while waiting for the connections.", e);
+                return;
+            }
+        }
+        long resent = 0;
+        long reconnects = 0;
+        for (Lane lane : lanes) {
+            resent += lane.resent;
+            reconnects += lane.reconnects;
+            logger.info("Receiver [" + lane.receiver + "]: acknowledged: [" + lane.acks + "], re-sent: [" + lane.resent
+                    + "], reconnects: [" + lane.reconnects + "], given up: [" + !lane.live + "]");
+        }
+        latencyReporter.finish(System.nanoTime());
+        logger.info(String.format(Locale.ROOT, "Fan out [total]: receivers: [%d], balancing: [%s], messages: [%d], acknowledged: [%d], re-sent: [%d], reconnects: [%d], messages/sec: [%.1f]",
+                lanes.size(), balancing, maxMessages, getAcknowledged(), resent, reconnects,
+                getAcknowledged() * (double) TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - startNanos)));
+        if (getAcknowledged() < maxMessages) {
+            logger.log(Level.SEVERE, "All the receivers were given up, with [" + (maxMessages - getAcknowledged()) + "] messages not acknowledged.");
+        }
+    }
+
+    public int getAcknowledged() {
+        synchronized (lock) {
+            return acknowledged;
+        }
+    }
+
+    /**
+     * @return -   messages acknowledged through each receiver, in the order of the receivers.
+     */
+    public List<Integer> getAcknowledgedPerReceiver() {
+        List<Integer> perReceiver = new ArrayList<>();
+        for (Lane lane : lanes) {
+            perReceiver.add(lane.acks);
+        }
+        return perReceiver;
+    }
+
+    /**
+     * Messages which were not acknowledged by a given up receiver come first.
+     *
+     * @return -   the sequence of the next message for the lane. 0 if it should not take one now.
+     */
+    private int take(Lane lane) {
+        synchronized (lock) {
+            if (!mayTake(lane)) {
+                return 0;
+            }
+            lane.outstanding++;
+            if (balancing == Balancing.ROUND_ROBIN) {
+                turn = nextLiveLane(lane.index);
+                if (waiting > 0) {
+                    lock.notifyAll();
+                }
+            }
+            return unacknowledged.isEmpty() ? nextSequence++ : unacknowledged.poll();
+        }
+    }
+
+    private boolean mayTake(Lane lane) {
+        if (!lane.live || (unacknowledged.isEmpty() && nextSequence > maxMessages)) {
+            return false;
+        }
+        if (balancing == Balancing.ROUND_ROBIN) {
+            return turn == lane.index;
+        }
+        for (Lane other : lanes) {
+            if (other.live && other.outstanding < lane.outstanding) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int nextLiveLane(int index) {
+        for (int i = 1; i <= lanes.size(); i++) {
+            Lane next = lanes.get((index + i) % lanes.size());
+            if (next.live) {
+                return next.index;
+            }
+        }
+        return index;
+    }
+
+    private void acknowledge(Lane lane, long nowNanos, long latencyNanos) {
+        synchronized (lock) {
+            latencyReporter.record(nowNanos, latencyNanos);
+            lane.outstanding--;
+            acknowledged++;
+            if (waiting > 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits while the lane has nothing in flight and may not take a message.
+     *
+     * @return -   false once there is nothing left to do. All the messages are acknowledged, or all the receivers are given up.
+     */
+    private boolean awaitWork(Lane lane) {
+        synchronized (lock) {
+            while (acknowledged < maxMessages && liveLanes > 0 && !mayTake(lane)) {
+                waiting++;
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                } finally {
+                    waiting--;
+                }
+            }
+            return acknowledged < maxMessages && liveLanes > 0;
+        }
+    }
+
+    /**
+     * The messages in flight of the lane go to the other lanes, oldest first.
+     */
+    private void giveUp(Lane lane) {
+        synchronized (lock) {
+            lane.live = false;
+            liveLanes--;
+            for (int i = 0; i < lane.inFlight; i++) {
+                unacknowledged.add(lane.sequences[(lane.oldest + i) % window]);
+            }
+            lane.outstanding = 0;
+            if (turn == lane.index) {
+                turn = nextLiveLane(lane.index);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * One connection to one receiver, sending and reading on its own thread.
+     */
+    private class Lane {
+
+        private final int index;
+        private final InetSocketAddress receiver;
+        private final int[] sequences = new int[window];
+        private final long[] sendTimes = new long[window];
+        private final List<Closeable> opened = new ArrayList<>();
+        private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+        private final PlayerMetrics metrics = PlayerMetrics.current();
+
+        private BinaryMessageHandler handler;
+        private int oldest;
+        private int inFlight;
+        private int connectionReplies;
+        private volatile int acks;
+        private int resent;
+        private int reconnects;
+        /**
+         * Guarded by the lock. Same as inFlight, as seen by the other lanes.
+         */
+        private int outstanding;
+        private volatile boolean live = true;
+
+        private Lane(int index, InetSocketAddress receiver) {
+            this.index = index;
+            this.receiver = receiver;
+        }
+
+        private void run() {
+            if (!connect(0)) {
+                return;
+            }
+            while (live) {
+                if (!fillWindow()) {
+                    continue;
+                }
+                if (inFlight == 0) {
+                    if (!awaitWork(this)) {
+                        break;
+                    }
+                    continue;
+                }
+                try {
+                    receive();
+                } catch (IOException e) {
+                    metrics.readFailed();
+                    logger.log(Level.WARNING, "Exception while reading the message from: [" + receiver + "]", e);
+                    reconnect();
+                }
+            }
+            if (live) {
+                sendPoisonPill();
+                close();
+            }
+        }
+
+        /**
+         * @return -   false if a write failed. Then, the lane is reconnected, or given up.
+         */
+        private boolean fillWindow() {
+            int sequence;
+            while (inFlight < window && (sequence = take(this)) > 0) {
+                int slot = (oldest + inFlight) % window;
+                sequences[slot] = sequence;
+                sendTimes[slot] = System.nanoTime();
+                inFlight++;
+                try {
+                    send();
+                } catch (IOException e) {
+                    metrics.writeFailed();
+                    logger.log(Level.WARNING, "Exception while writing the message to: [" + receiver + "]", e);
+                    reconnect();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void send() throws IOException {
+            handler.startFrame(MESSAGE_BYTES.length).put(MESSAGE_BYTES);
+            handler.writeFrame();
+            metrics.messageSent(BinaryMessageHandler.HEADER_LENGTH + MESSAGE_BYTES.length);
+        }
+
+        /**
+         * The oldest message in flight is acknowledged by the reply.
+         */
+        private void receive() throws IOException {
+            ByteBuffer frame = handler.readFrame();
+            metrics.messageReceived(BinaryMessageHandler.HEADER_LENGTH + frame.remaining());
+            connectionReplies++;
+            if (Sequences.parseTrailing(frame) != connectionReplies) {
+                // The frame may be as large as the biggest payload. So, it is described instead of logged.
+                hotLoopLogger.log(Level.WARNING, "Did not find the proper count in the message: {0}",
+                        "count: [" + Sequences.parseTrailing(frame) + "], expected: [" + connectionReplies
+                                + "], receiver: [" + index + "], length: [" + frame.remaining() + "]");
+            } else {
+                hotLoopLogger.log(Level.FINE, "Received message having sequence: [{0,number,#}]", sequences[oldest]);
+            }
+            long now = System.nanoTime();
+            long latency = now - sendTimes[oldest];
+            metrics.latency(latency);
+            oldest = (oldest + 1) % window;
+            inFlight--;
+            acks++;
+            acknowledge(this, now, latency);
+        }
+
+        /**
+         * Reconnects with a backoff, and re-sends the messages in flight. Gives the receiver up after the attempts.
+         *
+         * @return -   false if the receiver is given up.
+         */
+        private boolean reconnect() {
+            close();
+            return connect(1);
+        }
+
+        /**
+         * @param firstAttempt -   0 to try right away. Otherwise, the attempt after a failure, for the backoff.
+         */
+        private boolean connect(int firstAttempt) {
+            for (int attempt = firstAttempt; attempt <= reconnectAttempts; attempt++) {
+                if (attempt > 0) {
+                    reconnects++;
+                    long backoffMillis = Math.min(MAX_BACKOFF_MILLIS, initialBackoffMillis << Math.min(attempt - 1, 30));
+                    logger.info("Reconnecting to: [" + receiver + "] in [" + backoffMillis + " ms], attempt: [" + attempt + "]");
+                    try {
+                        Thread.sleep(backoffMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                try {
+                    handler = connector.connect(receiver, opened);
+                    connectionReplies = 0;
+                    resend();
+                    return true;
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not connect to: [" + receiver + "]", e);
+                    close();
+                }
+            }
+            logger.log(Level.SEVERE, "Gave up the receiver: [" + receiver + "], with [" + inFlight + "] messages in flight.");
+            giveUp(this);
+            inFlight = 0;
+            return false;
+        }
+
+        private void resend() throws IOException {
+            for (int i = 0; i < inFlight; i++) {
+                send();
+                resent++;
+            }
+            if (inFlight > 0) {
+                handler.flush();
+                logger.info("Re-sent [" + inFlight + "] messages to: [" + receiver + "]");
+            }
+        }
+
+        private void sendPoisonPill() {
+            try {
+                handler.write(POISON_PILL);
+                handler.flush();
+                metrics.poisonPill();
+            } catch (IOException e) {
+                metrics.writeFailed();
+                logger.log(Level.SEVERE, "Exception while sending poison pill to stop receiver: [" + receiver + "]", e);
+            }
+        }
+
+        private void close() {
+            for (Closeable resource : opened) {
+                try {
+                    resource.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Exception while closing the connection to: [" + receiver + "]", e);
+                }
+            }
+            opened.clear();
+            handler = null;
+        }
+    }
+
+}
@@ -1,9 +1,16 @@
 package com.mk.task.player;
 
 import com.mk.task.Application;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.BinaryMessageHandler;
 import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.Sequences;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,58 +20,311 @@ import static com.mk.task.Application.POISON_PILL;
 /**
  * {@link IPlayer} which sends messages to {@link Receiver}
  * Responsibilities:
- * 1. Write {@link Application#MESSAGE} to the socket.
+ * 1. Write {@link Application#MESSAGE}, or the {@link Payload}, to the socket.
  * 2. Receive the message sent by {@link Receiver}
  * 3. If the maximum number of messages are sent and received,
  * {@link Application#POISON_PILL} is sent to Receiver to stop the receiver process.
  * 4. The process will stop if there is any exception while writing messages into the socket.
+ * <p>
+ * Messages are pipelined: up to {@code window} messages can be in flight before a reply is awaited.
+ * A window of 1 is the classic ping-pong. Replies arrive in the order they were sent,
+ * so every reply is matched against the sequence number which {@link Receiver} appends to it.
+ * With a {@link BinaryMessageHandler} no object is created per message and per message logs are FINE.
+ * Per message logs go through the {@link HotLoopLogger}, so that they can be asynchronous and sampled.
+ * The round trip latency of every message is recorded by the {@link LatencyReporter}, which reports at the end.
+ * Messages, bytes, failures and latencies are also counted live in the {@link PlayerMetrics}.
+ * Payloads other than the message need a {@link BinaryMessageHandler}. Large ones are never turned into a String.
+ * A {@link BinaryMessageHandler} which can compress offers it to the receiver first. {@link BinaryMessageHandler#negotiateCompression()}
+ * With flow control, a message is sent only with a credit granted by the receiver. {@link BinaryMessageHandler#negotiateFlowControl()}
+ * Without credits, the replies in flight are read first, as they can bring credits. Only when none is in flight, the initiator
+ * waits for credits. Every such stall is counted with the time it took, so that backpressure of the receiver can be told apart
+ * from the network latency, which shows in the round trip latencies. The poison pill needs no credit.
+ * Many logical streams can share the connection, each of them a whole conversation: maxMessages messages and a poison pill.
+ * Messages go to the streams in turn, so the replies come back in the same order. Every reply is matched against the stream
+ * and the count of that stream. The poison pills close only the streams. The connection stays open until the initiator closes it.
+ * NOTE: The window should stay well below what the socket buffers can hold,
+ * otherwise both players can block on writing while nobody is reading.
  */
 public class Initiator implements IPlayer {
 
     private final static Logger logger = Logger.getLogger(Initiator.class.getName());
 
+    private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+    private final PlayerMetrics metrics = PlayerMetrics.current();
+
     private final MessageHandler messageHandler;
+    private final BinaryMessageHandler binaryHandler;
     private final int maxMessages;
+    private final int window;
+    private final LatencyReporter latencyReporter;
+    private final Payload payload;
+    private final int streams;
+    private final int totalMessages;
+    private final long[] sendTimes;
+    private long stallStartNanos;
+    private int creditStalls;
+    private long creditStallNanos;
 
     public Initiator(final MessageHandler messageHandler, final int maxMessages) {
+        this(messageHandler, maxMessages, 1);
+    }
+
+    public Initiator(final MessageHandler messageHandler, final int maxMessages, final int window) {
+        this(messageHandler, maxMessages, window, new LatencyReporter());
+    }
+
+    public Initiator(final MessageHandler messageHandler, final int maxMessages, final int window,
+                     final LatencyReporter latencyReporter) {
+        this(messageHandler, maxMessages, window, latencyReporter, Payload.message());
+    }
+
+    public Initiator(final MessageHandler messageHandler, final int maxMessages, final int window,
+                     final LatencyReporter latencyReporter, final Payload payload) {
+        this(messageHandler, maxMessages, window, latencyReporter, payload, 1);
+    }
+
+    /**
+     * @param streams -   logical streams over the connection, which get maxMessages each.
+     *                1 uses no stream ids, same as before. More need a {@link BinaryMessageHandler}
+     */
+    public Initiator(final MessageHandler messageHandler, final int maxMessages, final int window,
+                     final LatencyReporter latencyReporter, final Payload payload, final int streams) {
+        if (payload != Payload.message() && !(messageHandler instanceof BinaryMessageHandler)) {
+            throw new IllegalArgumentException("Payload [" + payload + "] needs the binary codec.");
+        }
+        if (streams < 1 || streams > BinaryMessageHandler.MAX_STREAM || (long) maxMessages * streams > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Streams should be between 1 and " + BinaryMessageHandler.MAX_STREAM
+                    + ", with at most " + Integer.MAX_VALUE + " messages in all: [" + streams + "]");
+        }
+        if (streams > 1 && !(messageHandler instanceof BinaryMessageHandler)) {
+            throw new IllegalArgumentException("Streams need the binary codec.");
+        }
         this.messageHandler = messageHandler;
+        this.binaryHandler = messageHandler instanceof BinaryMessageHandler ? (BinaryMessageHandler) messageHandler : null;
         this.maxMessages = maxMessages;
+        this.window = window;
+        this.latencyReporter = latencyReporter;
+        this.payload = payload;
+        this.streams = streams;
+        this.totalMessages = maxMessages * streams;
+        this.sendTimes = new long[Math.max(1, Math.min(window, totalMessages))];
     }
 
     @Override
     public void start() {
-        int count = 1;
-        while (true) {
-            try {
-                messageHandler.write(MESSAGE);
-                logger.info("Sent message: [" + MESSAGE + "].");
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, "Exception while writing the message", e);
-                break;
+        if (!negotiateCompression() || !negotiateFlowControl()) {
+            return;
+        }
+        latencyReporter.start(System.nanoTime());
+        boolean completed = exchangeMessages();
+        latencyReporter.finish(System.nanoTime());
+        if (binaryHandler != null && binaryHandler.isFlowControlled()) {
+            logger.info(String.format(Locale.ROOT, "Credit stalls: [%d], stalled: [%.1f ms]",
+                    creditStalls, creditStallNanos / 1_000_000.0));
+        }
+        if (completed && streams == 1) {
+            sendPoisonPill(maxMessages);
+        } else if (completed) {
+            closeStreams();
+        }
+    }
+
+    /**
+     * @return -   false if the negotiation failed. Eg: the receiver is gone.
+     */
+    private boolean negotiateCompression() {
+        if (binaryHandler == null) {
+            return true;
+        }
+        try {
+            if (binaryHandler.negotiateCompression()) {
+                logger.info("Receiver accepted the compression.");
             }
-            String receivedMessage = messageHandler.read();
-            if (receivedMessage.contains(String.valueOf(count))) {
-                logger.info("Received message: [" + receivedMessage + "]");
-            } else {
-                logger.log(Level.WARNING, "Did not find the proper count in the message: [" + receivedMessage + "]");
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while negotiating the compression.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return -   false if the negotiation failed. Eg: the receiver is gone.
+     */
+    private boolean negotiateFlowControl() {
+        if (binaryHandler == null) {
+            return true;
+        }
+        try {
+            if (binaryHandler.negotiateFlowControl()) {
+                logger.info("Receiver granted credits for the flow control.");
             }
-            if (sendPoisonIfRequired(maxMessages, count)) break;
-            count++;
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while negotiating the flow control.", e);
+            return false;
         }
     }
 
-    private boolean sendPoisonIfRequired(int maxMessages, int count) {
-        if (count >= maxMessages) {
-            logger.info("Received the message having count: [" + count + "].");
+    /**
+     * Send time of every message in flight is kept in a ring indexed by its sequence,
+     * so that the latency of the matching reply can be recorded.
+     *
+     * @return -   true if all the messages are sent and their replies received.
+     */
+    private boolean exchangeMessages() {
+        int sent = 0;
+        int received = 0;
+        while (received < totalMessages) {
+            while (sent < totalMessages && sent - received < window) {
+                try {
+                    if (!takeCredit(sent > received)) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    metrics.readFailed();
+                    logger.log(Level.SEVERE, "Exception while waiting for credits", e);
+                    return false;
+                }
+                try {
+                    sendTimes[sent % sendTimes.length] = System.nanoTime();
+                    send(sent);
+                } catch (IOException e) {
+                    metrics.writeFailed();
+                    logger.log(Level.SEVERE, "Exception while writing the message", e);
+                    return false;
+                }
+                sent++;
+            }
+            received++;
             try {
-                messageHandler.write(POISON_PILL);
-                logger.info("Position pill is now sent.");
+                receive(streamOf(received - 1), (received - 1) / streams + 1);
             } catch (IOException e) {
-                logger.log(Level.SEVERE, "Exception while sending poison pill to stop receiver.", e);
+                metrics.readFailed();
+                logger.log(Level.SEVERE, "Exception while reading the message", e);
+                return false;
             }
+            long now = System.nanoTime();
+            long latency = now - sendTimes[(received - 1) % sendTimes.length];
+            latencyReporter.record(now, latency);
+            metrics.latency(latency);
+        }
+        return true;
+    }
+
+    /**
+     * A stall lasts from the first time no credit is held until the next one is taken.
+     *
+     * @param replyInFlight -   whether a reply can be read instead of waiting for credits.
+     * @return -   false if there is no credit yet, and a reply should be read first.
+     */
+    private boolean takeCredit(boolean replyInFlight) throws IOException {
+        if (binaryHandler == null) {
             return true;
         }
-        return false;
+        while (!binaryHandler.takeCredit()) {
+            if (stallStartNanos == 0) {
+                stallStartNanos = System.nanoTime();
+            }
+            if (replyInFlight) {
+                return false;
+            }
+            binaryHandler.awaitCredit();
+        }
+        if (stallStartNanos != 0) {
+            long stalled = System.nanoTime() - stallStartNanos;
+            stallStartNanos = 0;
+            creditStalls++;
+            creditStallNanos += stalled;
+            metrics.creditStall(stalled);
+        }
+        return true;
+    }
+
+    /**
+     * @param index -   of the message among all the messages of the connection.
+     * @return -   the stream of the message, in turn. 0 without streams.
+     */
+    private int streamOf(int index) {
+        return streams == 1 ? 0 : index % streams + 1;
+    }
+
+    private void send(int index) throws IOException {
+        if (binaryHandler != null) {
+            binaryHandler.setWriteStream(streamOf(index));
+            int length = payload.write(binaryHandler);
+            metrics.messageSent(BinaryMessageHandler.HEADER_LENGTH + length);
+            return;
+        }
+        messageHandler.write(MESSAGE);
+        metrics.messageSent(MESSAGE);
+        hotLoopLogger.log(Level.INFO, "Sent message: [{0}].", MESSAGE);
+    }
+
+    /**
+     * Reads the next reply and compares the sequence number at its end with the expected one.
+     * A mismatch is only logged.
+     */
+    private void receive(int expectedStream, int expectedCount) throws IOException {
+        if (binaryHandler != null) {
+            ByteBuffer frame = binaryHandler.readFrame();
+            metrics.messageReceived(BinaryMessageHandler.HEADER_LENGTH + frame.remaining());
+            if (binaryHandler.getReadStream() != expectedStream) {
+                hotLoopLogger.log(Level.WARNING, "Received the message of a wrong stream: [{0,number,#}]", binaryHandler.getReadStream());
+            } else if (Sequences.parseTrailing(frame) != expectedCount) {
+                // The frame may be as large as the biggest payload. So, it is described instead of logged.
+                hotLoopLogger.log(Level.WARNING, "Did not find the proper count in the message: {0}",
+                        "count: [" + Sequences.parseTrailing(frame) + "], expected: [" + expectedCount
+                                + "], stream: [" + expectedStream + "], length: [" + frame.remaining() + "]");
+            } else {
+                hotLoopLogger.log(Level.FINE, "Received message having count: [{0,number,#}]", expectedCount);
+            }
+            return;
+        }
+        String receivedMessage = messageHandler.read();
+        metrics.messageReceived(receivedMessage);
+        if (Sequences.parseTrailing(receivedMessage) == expectedCount) {
+            hotLoopLogger.log(Level.INFO, "Received message: [{0}]", receivedMessage);
+        } else {
+            hotLoopLogger.log(Level.WARNING, "Did not find the proper count in the message: [{0}]", receivedMessage);
+        }
+    }
+
+    /**
+     * A poison pill on every stream. Only the streams are closed, not the connection.
+     */
+    private void closeStreams() {
+        logger.info("Received the message having count: [" + maxMessages + "] on [" + streams + "] streams.");
+        try {
+            for (int stream = 1; stream <= streams; stream++) {
+                binaryHandler.setWriteStream(stream);
+                binaryHandler.write(POISON_PILL);
+                metrics.poisonPill();
+            }
+            binaryHandler.flush();
+            binaryHandler.setWriteStream(0);
+            logger.info("Poison pills are now sent on [" + streams + "] streams.");
+        } catch (IOException e) {
+            metrics.writeFailed();
+            logger.log(Level.SEVERE, "Exception while sending poison pills to close the streams.", e);
+        }
+    }
+
+    /**
+     * Sent only once all the in flight replies are drained,
+     * so that the receiver never stops with a reply still pending.
+     * Flushed right away, as nothing is read afterwards which would flush it.
+     */
+    private void sendPoisonPill(int count) {
+        logger.info("Received the message having count: [" + count + "].");
+        try {
+            messageHandler.write(POISON_PILL);
+            messageHandler.flush();
+            metrics.poisonPill();
+            logger.info("Position pill is now sent.");
+        } catch (IOException e) {
+            metrics.writeFailed();
+            logger.log(Level.SEVERE, "Exception while sending poison pill to stop receiver.", e);
+        }
     }
 
 }
@@ -0,0 +1,329 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.Sequences;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.mk.task.Application.MESSAGE;
+import static com.mk.task.Application.POISON_PILL;
+
+/**
+ * Open loop variant of {@link Initiator}, which offers a fixed rate of messages over many connections.
+ * Responsibilities:
+ * 1. Every connection sends {@link Application#MESSAGE} at scheduled times, whether the replies keep up or not.
+ * 2. The replies of every connection are read by a thread of its own and matched against their sequence numbers.
+ * 3. Latency is measured from the time at which a message was scheduled, not from when it was actually sent.
+ * 4. Once all the replies of a connection are read, {@link Application#POISON_PILL} is sent on it.
+ * 5. At the end, one report for all the connections: latencies, achieved messages per second, and errors.
+ * The interval latency reports, if any, are for all the connections too.
+ * <p>
+ * A closed loop initiator waits for the receiver before sending the next message.
+ * So, when the receiver stalls, the messages which should have been sent meanwhile are never measured (coordinated omission).
+ * Here the schedule does not move, so a stall shows up in the latency of every message scheduled during it.
+ * Errors are the messages without a proper reply: failed writes or reads, and replies with a wrong count.
+ * Meanwhile, the connections count into the {@link PlayerMetrics}, so that the load can be watched live.
+ * NOTE: Every connection is served on its own by the receiver. Eg: the selector receiver mode, for more than one.
+ */
+public class LoadGenerator implements IPlayer {
+
+    private final static Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+
+    private final static byte[] MESSAGE_BYTES = MESSAGE.getBytes(StandardCharsets.UTF_8);
+    private final static long START_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private final static long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final List<Connection> connections;
+    private final int messagesPerConnection;
+    private final int messagesPerSecond;
+    private final long intervalNanos;
+    private final LatencyReporter latencyReporter;
+    private final Object reportLock = new Object();
+
+    private long sent;
+    private long received;
+    private long errors;
+
+    /**
+     * @param connections           -   sides of the connections to load. Should not be empty.
+     * @param messagesPerConnection
+     * @param messagesPerSecond     -   target rate, across all the connections.
+     * @param latencyReporter       -   reports the latencies of all the connections, every interval and at the end.
+     */
+    public LoadGenerator(final List<Connection> connections, final int messagesPerConnection,
+                         final int messagesPerSecond, final LatencyReporter latencyReporter) {
+        this.connections = connections;
+        this.messagesPerConnection = messagesPerConnection;
+        this.messagesPerSecond = messagesPerSecond;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) * connections.size() / messagesPerSecond;
+        this.latencyReporter = latencyReporter;
+    }
+
+    /**
+     * The connections start one after the other, so that the messages are spread evenly over time.
+     */
+    @Override
+    public void start() {
+        long startNanos = System.nanoTime() + START_DELAY_NANOS;
+        long staggerNanos = intervalNanos / connections.size();
+        List<Thread> threads = new ArrayList<>();
+        latencyReporter.start(startNanos);
+        for (int i = 0; i < connections.size(); i++) {
+            Connection connection = connections.get(i);
+            long firstSendNanos = startNanos + i * staggerNanos;
+            Thread thread = new Thread(() -> connection.run(this, messagesPerConnection, intervalNanos, firstSendNanos), "load-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.log(Level.SEVERE, "Interrupted while waiting for the connections.", e);
+                return;
+            }
+        }
+        for (Connection connection : connections) {
+            sent += connection.sent;
+            received += connection.received;
+            errors += messagesPerConnection - connection.matched;
+        }
+        latencyReporter.finish(System.nanoTime());
+        logger.info("Load [total]: connections: [" + connections.size() + "], target messages/sec: [" + messagesPerSecond
+                + "], scheduled: [" + (long) messagesPerConnection * connections.size() + "], sent: [" + sent
+                + "], received: [" + received + "], errors: [" + errors + "]");
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * From the reading threads of all the connections. So, the reporter is shared under a lock.
+     */
+    private void recordLatency(long nowNanos, long latencyNanos) {
+        synchronized (reportLock) {
+            latencyReporter.record(nowNanos, latencyNanos);
+        }
+    }
+
+    /**
+     * Parks while the next send time is far, and spins close to it.
+     */
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            }
+        }
+    }
+
+    /**
+     * One connection to the receiver. Written by one thread and read by another one.
+     * So, the two sides should be separate handlers on the same connection. Eg: one without reader and one without writer.
+     * If the writing fails, the connection is closed, so that the reading thread ends before the results are taken.
+     */
+    public static class Connection {
+
+        private final MessageHandler writer;
+        private final MessageHandler reader;
+        private final BinaryMessageHandler binaryWriter;
+        private final BinaryMessageHandler binaryReader;
+        private final Closeable connection;
+        private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+        private final PlayerMetrics metrics = PlayerMetrics.current();
+
+        private LoadGenerator generator;
+        private int messages;
+        private long intervalNanos;
+        private long firstSendNanos;
+        private volatile int sent;
+        private volatile int received;
+        private volatile int matched;
+
+        /**
+         * For a reader which ends on its own, once the writer fails. Eg: one which does not block.
+         */
+        public Connection(final MessageHandler writer, final MessageHandler reader) {
+            this(writer, reader, null);
+        }
+
+        /**
+         * @param connection -   closed if the writing fails, to end the reading. Eg: the transport.
+         */
+        public Connection(final MessageHandler writer, final MessageHandler reader, final Closeable connection) {
+            this.writer = writer;
+            this.reader = reader;
+            this.connection = connection;
+            this.binaryWriter = writer instanceof BinaryMessageHandler ? (BinaryMessageHandler) writer : null;
+            this.binaryReader = reader instanceof BinaryMessageHandler ? (BinaryMessageHandler) reader : null;
+        }
+
+        private void run(LoadGenerator generator, int messages, long intervalNanos, long firstSendNanos) {
+            this.generator = generator;
+            this.messages = messages;
+            this.intervalNanos = intervalNanos;
+            this.firstSendNanos = firstSendNanos;
+            Thread readerThread = new Thread(this::receiveAll, Thread.currentThread().getName() + "-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+            if (!sendAll()) {
+                abort(readerThread);
+                return;
+            }
+            try {
+                readerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            sendPoisonPill();
+        }
+
+        /**
+         * The replies of the messages not sent would never come. So, the reading is ended, and waited for.
+         */
+        private void abort(Thread readerThread) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Exception while closing the connection.", e);
+                }
+            }
+            readerThread.interrupt();
+            try {
+                readerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * @return -   true if all the messages are sent.
+         */
+        private boolean sendAll() {
+            for (int i = 0; i < messages; i++) {
+                try {
+                    awaitSend(firstSendNanos + i * intervalNanos);
+                    send();
+                } catch (IOException e) {
+                    metrics.writeFailed();
+                    logger.log(Level.SEVERE, "Exception while writing the message", e);
+                    return false;
+                }
+                sent = i + 1;
+            }
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                metrics.writeFailed();
+                logger.log(Level.SEVERE, "Exception while writing the message", e);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * The writer does not read, which would flush the messages left pending by the flush policy.
+         * So, they are flushed while waiting, once due. Eg: with {@link com.mk.task.transport.FlushPolicy#afterMicros(long)}
+         */
+        private void awaitSend(long sendNanos) throws IOException {
+            long flushDueNanos = writer.getFlushDueNanos();
+            if (flushDueNanos != Long.MAX_VALUE && flushDueNanos - sendNanos < 0) {
+                waitUntil(flushDueNanos);
+                writer.flushIfDue();
+            }
+            waitUntil(sendNanos);
+        }
+
+        private void send() throws IOException {
+            if (binaryWriter != null) {
+                binaryWriter.startFrame(MESSAGE_BYTES.length).put(MESSAGE_BYTES);
+                binaryWriter.writeFrame();
+                metrics.messageSent(BinaryMessageHandler.HEADER_LENGTH + MESSAGE_BYTES.length);
+                return;
+            }
+            writer.write(MESSAGE);
+            metrics.messageSent(MESSAGE);
+            hotLoopLogger.log(Level.INFO, "Sent message: [{0}].", MESSAGE);
+        }
+
+        /**
+         * The reply to the N-th message was scheduled at firstSendNanos + (N - 1) * intervalNanos.
+         * So, no send time needs to be shared with the writing thread.
+         */
+        private void receiveAll() {
+            for (int count = 1; count <= messages; count++) {
+                long replyCount;
+                try {
+                    replyCount = receive();
+                } catch (IOException e) {
+                    metrics.readFailed();
+                    logger.log(Level.SEVERE, "Exception while reading the message", e);
+                    return;
+                }
+                received = count;
+                if (replyCount == count) {
+                    long now = System.nanoTime();
+                    long latency = now - (firstSendNanos + (count - 1) * intervalNanos);
+                    generator.recordLatency(now, latency);
+                    metrics.latency(latency);
+                    matched++;
+                } else {
+                    hotLoopLogger.log(Level.WARNING, "Did not find the proper count in the message: [{0,number,#}]", replyCount);
+                }
+            }
+        }
+
+        private long receive() throws IOException {
+            if (binaryReader != null) {
+                ByteBuffer frame = binaryReader.readFrame();
+                metrics.messageReceived(BinaryMessageHandler.HEADER_LENGTH + frame.remaining());
+                long count = Sequences.parseTrailing(frame);
+                hotLoopLogger.log(Level.FINE, "Received message having count: [{0,number,#}]", count);
+                return count;
+            }
+            String receivedMessage = reader.read();
+            metrics.messageReceived(receivedMessage);
+            hotLoopLogger.log(Level.INFO, "Received message: [{0}]", receivedMessage);
+            return Sequences.parseTrailing(receivedMessage);
+        }
+
+        private void sendPoisonPill() {
+            try {
+                writer.write(POISON_PILL);
+                writer.flush();
+                metrics.poisonPill();
+            } catch (IOException e) {
+                metrics.writeFailed();
+                logger.log(Level.SEVERE, "Exception while sending poison pill to stop receiver.", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.Sequences;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * What the {@link Initiator} sends in every message, with a {@link BinaryMessageHandler}
+ * Responsibilities:
+ * 1. Decides the size of every message: {@link Application#MESSAGE}, a fixed size, or a random size between a min and a max.
+ * 2. Writes the message: copied into the write buffer of the handler, or straight from the payload for the bulk mode.
+ * 3. Or sends the content of a file, with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * <p>
+ * Sized payloads repeat {@link Application#MESSAGE} up to the size. They are built once, so nothing is created per message.
+ * In the bulk mode, the payload is a direct buffer, which a socket channel writes without copying it through the heap.
+ * The content is never turned into a String, whatever the size.
+ */
+public abstract class Payload implements Closeable {
+
+    /**
+     * Largest payload whose reply still fits in a frame, with the count appended by the {@link Receiver}
+     */
+    public final static int MAX_SIZE = BinaryMessageHandler.MAX_FRAME_LENGTH - 1 - Sequences.MAX_DIGITS;
+
+    private final static byte[] MESSAGE_BYTES = Application.MESSAGE.getBytes(StandardCharsets.UTF_8);
+    private final static Payload MESSAGE_PAYLOAD = new Payload() {
+        @Override
+        int write(BinaryMessageHandler handler) throws IOException {
+            handler.startFrame(MESSAGE_BYTES.length).put(MESSAGE_BYTES);
+            handler.writeFrame();
+            return MESSAGE_BYTES.length;
+        }
+
+        @Override
+        public String toString() {
+            return "message";
+        }
+    };
+
+    /**
+     * @return -   {@link Application#MESSAGE} in every message. The only payload which the text codec can send.
+     */
+    public static Payload message() {
+        return MESSAGE_PAYLOAD;
+    }
+
+    /**
+     * @param minSize -   bytes. The same as maxSize for a fixed size.
+     * @param maxSize -   bytes. Not more than {@link #MAX_SIZE}
+     * @param bulk    -   whether the messages are written straight from the payload. {@link BinaryMessageHandler#writeBulk(ByteBuffer, ByteBuffer)}
+     * @return -   random sizes between minSize and maxSize, both included.
+     */
+    public static Payload sized(final int minSize, final int maxSize, final boolean bulk) {
+        if (minSize < 0 || minSize > maxSize || maxSize > MAX_SIZE) {
+            throw new IllegalArgumentException("Payload size should be between 0 and " + MAX_SIZE + ": [" + minSize + "-" + maxSize + "]");
+        }
+        return new SizedPayload(minSize, maxSize, bulk);
+    }
+
+    /**
+     * @param file -   sent whole in every message. Not larger than {@link #MAX_SIZE}
+     * @return -   the content of the file, sent with {@link BinaryMessageHandler#transferFrame(FileChannel, long, int)}
+     * @throws IOException -   thrown if the file could not be opened or is too large.
+     */
+    public static Payload file(final File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        if (channel.size() > MAX_SIZE) {
+            channel.close();
+            throw new IOException("Payload file is larger than " + MAX_SIZE + " bytes: [" + file + "]");
+        }
+        return new FilePayload(file, channel);
+    }
+
+    /**
+     * Writes one message.
+     *
+     * @param handler
+     * @return -   the number of payload bytes written.
+     * @throws IOException -   thrown if the message could not be written.
+     */
+    abstract int write(BinaryMessageHandler handler) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    private static class SizedPayload extends Payload {
+
+        private final int minSize;
+        private final int maxSize;
+        private final boolean bulk;
+        private final ByteBuffer content;
+        private final SplittableRandom random = new SplittableRandom();
+
+        private SizedPayload(int minSize, int maxSize, boolean bulk) {
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.bulk = bulk;
+            this.content = bulk ? ByteBuffer.allocateDirect(maxSize) : ByteBuffer.allocate(maxSize);
+            while (content.hasRemaining()) {
+                content.put(MESSAGE_BYTES, 0, Math.min(MESSAGE_BYTES.length, content.remaining()));
+            }
+        }
+
+        @Override
+        int write(BinaryMessageHandler handler) throws IOException {
+            int size = minSize == maxSize ? maxSize : random.nextInt(minSize, maxSize + 1);
+            content.limit(size).position(0);
+            if (bulk) {
+                handler.writeBulk(content, null);
+            } else {
+                handler.startFrame(size).put(content);
+                handler.writeFrame();
+            }
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return (minSize == maxSize ? minSize : minSize + "-" + maxSize) + " bytes" + (bulk ? ", bulk" : "");
+        }
+    }
+
+    private static class FilePayload extends Payload {
+
+        private final File file;
+        private final FileChannel channel;
+        private final int size;
+
+        private FilePayload(File file, FileChannel channel) throws IOException {
+            this.file = file;
+            this.channel = channel;
+            this.size = (int) channel.size();
+        }
+
+        @Override
+        int write(BinaryMessageHandler handler) throws IOException {
+            handler.transferFrame(channel, 0, size);
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        @Override
+        public String toString() {
+            return "file " + file + ", " + size + " bytes";
+        }
+    }
+
+}
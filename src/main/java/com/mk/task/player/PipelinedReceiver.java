@@ -0,0 +1,363 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.PaddedSequence;
+import com.mk.task.transport.Sequences;
+import com.mk.task.transport.WaitStrategy;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Variant of {@link Receiver} which reads, processes and writes the messages on three threads.
+ * Responsibilities:
+ * 1. Reader stage: reads the messages from the connection into the slots of a ring. Runs on the calling thread.
+ * 2. Processing stage: adds the message count to the slots, in place, and logs them.
+ * 3. Writer stage: writes the processed slots, and flushes once per batch. Eg: once it caught up with the processing.
+ * 4. The process will stop if it receives {@link Application#POISON_PILL}, once the replies before it are written.
+ * 5. The process will also stop once the initiator closes the connection, or if reading or writing fails.
+ *    A failed stage closes the connection, if given, so that the reader stage does not stay blocked on it.
+ * 6. At the end, reports the queue depth seen by each stage. Messages are counted live in the {@link PlayerMetrics}.
+ * <p>
+ * The stages hand over through one preallocated ring, the way the LMAX Disruptor does.
+ * Each stage has its own sequence and follows the one before it: reader, then processing, then writer.
+ * The reader reuses a slot only once the writer is past it. So, nothing is allocated per message with a
+ * {@link BinaryMessageHandler} and the replies keep the order of the messages.
+ * A slow write no longer stalls reading, until the ring is full.
+ * NOTE: The handlers of the reader and of the writer should be different, as handlers are not thread safe.
+ */
+public class PipelinedReceiver implements IPlayer {
+
+    private final static Logger logger = Logger.getLogger(PipelinedReceiver.class.getName());
+
+    public final static int DEFAULT_RING_SIZE = 1024;
+
+    private final static int SLOT_SIZE = 256;
+    private final static byte[] POISON_PILL_BYTES = Application.POISON_PILL.getBytes(StandardCharsets.UTF_8);
+
+    private final MessageHandler reader;
+    private final MessageHandler writer;
+    private final BinaryMessageHandler binaryReader;
+    private final BinaryMessageHandler binaryWriter;
+    private final WaitStrategy waitStrategy;
+    private final Closeable connection;
+    private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+    private final PlayerMetrics metrics = PlayerMetrics.current();
+
+    private final Slot[] slots;
+    private final int mask;
+    private final PaddedSequence published = new PaddedSequence();
+    private final PaddedSequence processed = new PaddedSequence();
+    private final PaddedSequence written = new PaddedSequence();
+    private final Depth processingDepth = new Depth();
+    private final Depth writingDepth = new Depth();
+    private volatile boolean stopped;
+
+    private long readerNext;
+    private long processorNext;
+    private long writerNext;
+    private final WaitStrategy.Ready slotFree;
+    private final WaitStrategy.Ready slotRead;
+    private final WaitStrategy.Ready slotProcessed;
+
+    /**
+     * For a reader which ends on its own, once the writer fails. Eg: one which does not block.
+     */
+    public PipelinedReceiver(final MessageHandler reader, final MessageHandler writer, final int ringSize,
+                             final WaitStrategy waitStrategy) {
+        this(reader, writer, ringSize, waitStrategy, null);
+    }
+
+    /**
+     * @param reader       -   reads the messages. Used only by the reader stage.
+     * @param writer       -   writes the replies. Used only by the writer stage, which flushes it at the end of every batch.
+     * @param ringSize     -   messages in flight between the reader and the writer. Should be a power of two.
+     * @param waitStrategy -   how a stage waits for the one before it, or the reader for a free slot.
+     * @param connection   -   closed if a stage fails, to end the reading. Eg: the transport.
+     */
+    public PipelinedReceiver(final MessageHandler reader, final MessageHandler writer, final int ringSize,
+                             final WaitStrategy waitStrategy, final Closeable connection) {
+        if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size should be a power of two: [" + ringSize + "]");
+        }
+        this.reader = reader;
+        this.writer = writer;
+        this.binaryReader = reader instanceof BinaryMessageHandler ? (BinaryMessageHandler) reader : null;
+        this.binaryWriter = writer instanceof BinaryMessageHandler ? (BinaryMessageHandler) writer : null;
+        this.waitStrategy = waitStrategy;
+        this.connection = connection;
+        this.slots = new Slot[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = ringSize - 1;
+        this.slotFree = () -> readerNext - written.get() < ringSize || stopped;
+        this.slotRead = () -> published.get() > processorNext || stopped;
+        this.slotProcessed = () -> processed.get() > writerNext || stopped;
+    }
+
+    @Override
+    public void start() {
+        Thread processor = new Thread(this::process, "receiver-processor");
+        Thread writerThread = new Thread(this::write, "receiver-writer");
+        processor.start();
+        writerThread.start();
+        read();
+        try {
+            processor.join();
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Stage queue depth [processing]: " + processingDepth);
+        logger.info("Stage queue depth [writing]: " + writingDepth);
+    }
+
+    public Depth getProcessingDepth() {
+        return processingDepth;
+    }
+
+    public Depth getWritingDepth() {
+        return writingDepth;
+    }
+
+    /**
+     * Reader stage. Publishes one slot per message. The last slot marks the end, whatever the reason.
+     */
+    private void read() {
+        while (true) {
+            if (!await(slotFree)) {
+                return;
+            }
+            Slot slot = slots[(int) readerNext & mask];
+            readInto(slot);
+            published.lazySet(++readerNext);
+            waitStrategy.signal();
+            if (slot.last) {
+                return;
+            }
+        }
+    }
+
+    private void readInto(Slot slot) {
+        slot.last = true;
+        try {
+            if (binaryReader != null) {
+                ByteBuffer frame = binaryReader.readFrame();
+                metrics.messageReceived(BinaryMessageHandler.HEADER_LENGTH + frame.remaining());
+                if (isPoisonPill(frame)) {
+                    metrics.poisonPill();
+                    logger.info("Received poison pill. So, exiting.");
+                    return;
+                }
+                slot.copy(frame);
+            } else {
+                String message = reader.read();
+                metrics.messageReceived(message);
+                if (Application.POISON_PILL.equals(message)) {
+                    metrics.poisonPill();
+                    logger.info("Received poison pill. So, exiting.");
+                    return;
+                }
+                slot.text = message;
+            }
+            slot.last = false;
+        } catch (EOFException e) {
+            if (!stopped) {
+                logger.info("Initiator closed the connection. So, exiting.");
+            }
+        } catch (IOException e) {
+            if (stopped) {
+                return;
+            }
+            metrics.readFailed();
+            logger.log(Level.SEVERE, "Exception while reading message: count: [" + (readerNext + 1) + "]", e);
+        }
+    }
+
+    /**
+     * Processing stage. Adds the count to every slot read so far, then hands the whole batch over to the writer.
+     */
+    private void process() {
+        int count = 1;
+        while (await(slotRead)) {
+            long available = published.get();
+            processingDepth.record(available - processorNext);
+            boolean last = false;
+            while (processorNext < available && !last) {
+                Slot slot = slots[(int) processorNext & mask];
+                last = slot.last;
+                if (!last) {
+                    if (binaryReader != null) {
+                        slot.buffer.put((byte) ' ');
+                        Sequences.putDecimal(slot.buffer, count);
+                        hotLoopLogger.log(Level.FINE, "Received message with count: [{0,number,#}]", count);
+                    } else {
+                        hotLoopLogger.log(Level.INFO, "Received message: [{0}]", slot.text);
+                        slot.text = slot.text + " " + count;
+                    }
+                    count++;
+                }
+                processorNext++;
+            }
+            processed.lazySet(processorNext);
+            waitStrategy.signal();
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writer stage. Writes every processed slot, then flushes once for the batch.
+     */
+    private void write() {
+        while (await(slotProcessed)) {
+            long available = processed.get();
+            writingDepth.record(available - writerNext);
+            boolean last = false;
+            try {
+                while (writerNext < available && !last) {
+                    Slot slot = slots[(int) writerNext & mask];
+                    last = slot.last;
+                    if (!last) {
+                        writeSlot(slot);
+                    }
+                    writerNext++;
+                }
+                writer.flush();
+            } catch (IOException e) {
+                metrics.writeFailed();
+                logger.log(Level.SEVERE, "Exception while sending message: count: [" + (writerNext + 1) + "]", e);
+                stop();
+                return;
+            }
+            written.lazySet(writerNext);
+            waitStrategy.signal();
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    private void writeSlot(Slot slot) throws IOException {
+        if (binaryWriter != null) {
+            slot.buffer.flip();
+            int length = slot.buffer.remaining();
+            binaryWriter.startFrame(length).put(slot.buffer);
+            binaryWriter.writeFrame();
+            metrics.messageSent(BinaryMessageHandler.HEADER_LENGTH + length);
+            hotLoopLogger.log(Level.FINE, "Sent message with count: [{0,number,#}]", writerNext + 1);
+            return;
+        }
+        writer.write(slot.text);
+        metrics.messageSent(slot.text);
+        hotLoopLogger.log(Level.INFO, "Sent message: [{0}]", slot.text);
+    }
+
+    /**
+     * @return -   false if the pipeline is stopped, because a stage failed.
+     */
+    private boolean await(WaitStrategy.Ready ready) {
+        try {
+            waitStrategy.await(ready);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Interrupted while waiting for the other stages.", e);
+            stop();
+        }
+        return !stopped;
+    }
+
+    /**
+     * The reader stage may be blocked on the connection, where no signal reaches it. So, the connection is closed too.
+     */
+    private void stop() {
+        stopped = true;
+        waitStrategy.signal();
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Exception while closing the connection.", e);
+            }
+        }
+    }
+
+    private static boolean isPoisonPill(ByteBuffer frame) {
+        if (frame.remaining() != POISON_PILL_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < POISON_PILL_BYTES.length; i++) {
+            if (frame.get(frame.position() + i) != POISON_PILL_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One message in flight. Preallocated, and reused once the writer is done with it.
+     */
+    private static class Slot {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+        private String text;
+        private boolean last;
+
+        /**
+         * Copies the frame, leaving room for the count.
+         */
+        private void copy(ByteBuffer frame) {
+            int required = frame.remaining() + 1 + Sequences.MAX_DIGITS;
+            if (buffer.capacity() < required) {
+                buffer = ByteBuffer.allocate(required);
+            }
+            buffer.clear();
+            buffer.put(frame);
+        }
+    }
+
+    /**
+     * Messages waiting for a stage, as seen by the stage whenever it takes a batch. Recorded by that stage only.
+     */
+    public static class Depth {
+
+        private long batches;
+        private long total;
+        private long max;
+
+        private void record(long depth) {
+            batches++;
+            total += depth;
+            max = Math.max(max, depth);
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return batches == 0 ? 0 : (double) total / batches;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "batches: [%d], mean: [%.1f], max: [%d]", batches, getMean(), max);
+        }
+    }
+
+}
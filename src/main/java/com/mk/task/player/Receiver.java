@@ -1,9 +1,17 @@
 package com.mk.task.player;
 
 import com.mk.task.Application;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.BinaryMessageHandler;
 import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.Sequences;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,13 +21,29 @@ import java.util.logging.Logger;
  * 2. Then, sends it back to the socket for {@link Initiator}
  * 3. The process will stop if it receives {@link Application#POISON_PILL}.
  * 4. The process will also stop if there is any exception while writing data into socket.
- *
+ * 5. The process will also stop once the initiator closes the connection.
+ * <p>
+ * With a {@link BinaryMessageHandler} the frames are echoed without creating any object per message.
+ * The count is appended as digits straight into the write buffer and per message logs are FINE.
+ * Large frames are echoed straight from the read buffer, with the count in a small suffix buffer. {@link BinaryMessageHandler#writeBulk}
+ * Per message logs go through the {@link HotLoopLogger}, so that they can be asynchronous and sampled.
+ * Messages, bytes, failures and poison pills are counted live in the {@link PlayerMetrics}.
+ * With a {@link BinaryMessageHandler}, the connection can carry many logical streams. {@link BinaryMessageHandler#getReadStream()}
+ * Every stream has its own count, and its replies go back on the same stream. A poison pill on a stream closes only that stream:
+ * its count starts again and the connection stays open for the other streams. A poison pill without a stream stops the receiver.
+ * Counts are kept in an array indexed by the stream id, which grows to the largest id seen. So, nothing is created per message.
  */
 public class Receiver implements IPlayer {
 
     private final static Logger logger = Logger.getLogger(Receiver.class.getName());
 
     private final MessageHandler messageHandler;
+    private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+    private final PlayerMetrics metrics = PlayerMetrics.current();
+    private final ByteBuffer suffix = ByteBuffer.allocate(1 + Sequences.MAX_DIGITS);
+    private int[] streamCounts = new int[1];
+
+    private final static byte[] POISON_PILL_BYTES = Application.POISON_PILL.getBytes(StandardCharsets.UTF_8);
 
     public Receiver(final MessageHandler messageHandler) {
         this.messageHandler = messageHandler;
@@ -27,19 +51,37 @@ public class Receiver implements IPlayer {
 
     @Override
     public void start() {
+        if (messageHandler instanceof BinaryMessageHandler) {
+            startBinary((BinaryMessageHandler) messageHandler);
+            return;
+        }
         int count = 1;
         while (true) {
-            String message = messageHandler.read();
-            logger.info("Received message: [" + message + "]");
+            String message;
+            try {
+                message = messageHandler.read();
+            } catch (EOFException e) {
+                logger.info("Initiator closed the connection. So, exiting.");
+                break;
+            } catch (IOException e) {
+                metrics.readFailed();
+                logger.log(Level.SEVERE, "Exception while reading message: count: [" + count + "]", e);
+                break;
+            }
+            metrics.messageReceived(message);
+            hotLoopLogger.log(Level.INFO, "Received message: [{0}]", message);
             if (Application.POISON_PILL.equals(message)) {
+                metrics.poisonPill();
                 logger.info("Received poison pill. So, exiting.");
                 break;
             }
             try {
                 String sendingMessage = message + " " + count;
                 messageHandler.write(sendingMessage);
-                logger.info("Sent message: [" + sendingMessage + "]");
+                metrics.messageSent(sendingMessage);
+                hotLoopLogger.log(Level.INFO, "Sent message: [{0}]", sendingMessage);
             } catch (IOException e) {
+                metrics.writeFailed();
                 logger.log(Level.SEVERE, "Exception while sending message: count: [" + count + "]", e);
                 break;
             }
@@ -47,4 +89,87 @@ public class Receiver implements IPlayer {
         }
     }
 
+    private void startBinary(BinaryMessageHandler binaryHandler) {
+        int received = 0;
+        while (true) {
+            ByteBuffer frame;
+            try {
+                frame = binaryHandler.readFrame();
+            } catch (EOFException e) {
+                logger.info("Initiator closed the connection. So, exiting.");
+                break;
+            } catch (IOException e) {
+                metrics.readFailed();
+                logger.log(Level.SEVERE, "Exception while reading message: count: [" + (received + 1) + "]", e);
+                break;
+            }
+            received++;
+            metrics.messageReceived(BinaryMessageHandler.HEADER_LENGTH + frame.remaining());
+            int stream = binaryHandler.getReadStream();
+            if (isPoisonPill(frame)) {
+                metrics.poisonPill();
+                binaryHandler.creditExempt();
+                if (stream == 0) {
+                    logger.info("Received poison pill. So, exiting.");
+                    break;
+                }
+                int messages = stream < streamCounts.length ? streamCounts[stream] : 0;
+                logger.info("Received poison pill on stream: [" + stream + "], after [" + messages + "] messages. So, closing the stream.");
+                if (messages > 0) {
+                    streamCounts[stream] = 0;
+                }
+                continue;
+            }
+            int count = nextCount(stream);
+            try {
+                binaryHandler.setWriteStream(stream);
+                if (frame.remaining() >= BinaryMessageHandler.BULK_THRESHOLD) {
+                    int length = frame.remaining();
+                    suffix.clear();
+                    suffix.put((byte) ' ');
+                    Sequences.putDecimal(suffix, count);
+                    suffix.flip();
+                    metrics.messageSent(BinaryMessageHandler.HEADER_LENGTH + length + suffix.remaining());
+                    binaryHandler.writeBulk(frame, suffix);
+                    hotLoopLogger.log(Level.FINE, "Sent message with count: [{0,number,#}]", count);
+                    continue;
+                }
+                ByteBuffer sendingFrame = binaryHandler.startFrame(frame.remaining() + 1 + Sequences.MAX_DIGITS);
+                int start = sendingFrame.position();
+                sendingFrame.put(frame).put((byte) ' ');
+                Sequences.putDecimal(sendingFrame, count);
+                metrics.messageSent(BinaryMessageHandler.HEADER_LENGTH + sendingFrame.position() - start);
+                binaryHandler.writeFrame();
+                hotLoopLogger.log(Level.FINE, "Sent message with count: [{0,number,#}]", count);
+            } catch (IOException e) {
+                metrics.writeFailed();
+                logger.log(Level.SEVERE, "Exception while sending message: count: [" + count + "]", e);
+                break;
+            }
+        }
+    }
+
+    /**
+     * @param stream -   0 for the whole connection.
+     * @return -   the count of the message just received on the stream.
+     */
+    private int nextCount(int stream) {
+        if (stream >= streamCounts.length) {
+            streamCounts = Arrays.copyOf(streamCounts, Math.max(stream + 1, streamCounts.length * 2));
+        }
+        return ++streamCounts[stream];
+    }
+
+    private static boolean isPoisonPill(ByteBuffer frame) {
+        if (frame.remaining() != POISON_PILL_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < POISON_PILL_BYTES.length; i++) {
+            if (frame.get(frame.position() + i) != POISON_PILL_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
@@ -0,0 +1,208 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.metrics.PlayerMetrics;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long lived variant of {@link Receiver}, which serves one {@link Initiator} after the other in the same process.
+ * Responsibilities:
+ * 1. Accepts the initiators connecting to the server socket in a loop, one session at a time.
+ * 2. Runs a new {@link Receiver} with its own {@link com.mk.task.transport.MessageHandler} for every session.
+ * So, the counts, buffers and negotiated options of a session never leak into the next one.
+ * 3. A session ends when its receiver stops. Eg: on {@link Application#POISON_PILL}, or when the initiator closes the connection.
+ * Then, the next initiator is accepted.
+ * 4. Answers the admin commands on a separate socket, bound to the loopback address only. {@link #SHUTDOWN} & {@link #STATUS}
+ * 5. The process will stop only on {@link #close()}. Eg: on the {@link #SHUTDOWN} command.
+ * <p>
+ * Every run of an initiator against a fresh receiver process pays the JVM start and the JIT warm up again.
+ * Here, the hot paths compiled during a session stay compiled for the next ones, as the classes and the process are the same.
+ * So, only the first session runs cold. The {@link PlayerMetrics} are the ones of the process, and add up over the sessions.
+ */
+public class ReceiverDaemon implements IPlayer, Closeable {
+
+    private final static Logger logger = Logger.getLogger(ReceiverDaemon.class.getName());
+
+    /**
+     * Admin command which stops the daemon, and the session in progress.
+     */
+    public final static String SHUTDOWN = "shutdown";
+    /**
+     * Admin command which answers with the number of sessions served.
+     */
+    public final static String STATUS = "status";
+    /**
+     * An admin connection which does not send its command in time is closed. So, it cannot block the next commands. Eg: {@link #SHUTDOWN}
+     */
+    public final static int ADMIN_READ_TIMEOUT_MILLIS = 2_000;
+
+    private final ServerSocket serverSocket;
+    private final ServerSocket adminSocket;
+    private final VirtualThreadReceiver.MessageHandlerFactory messageHandlerFactory;
+    private volatile boolean running = true;
+    private volatile Socket session;
+    private volatile int sessions;
+
+    /**
+     * @param serverSocket          -   to which the initiators connect.
+     * @param adminSocket           -   to which the admin commands are sent. {@link #sendAdminCommand(int, String)}
+     * @param messageHandlerFactory -   creates the handler of every session.
+     */
+    public ReceiverDaemon(final ServerSocket serverSocket, final ServerSocket adminSocket,
+                          final VirtualThreadReceiver.MessageHandlerFactory messageHandlerFactory) {
+        this.serverSocket = serverSocket;
+        this.adminSocket = adminSocket;
+        this.messageHandlerFactory = messageHandlerFactory;
+    }
+
+    /**
+     * @param port -   of the admin socket, on the loopback address.
+     * @return -   the admin socket for {@link #ReceiverDaemon(ServerSocket, ServerSocket, VirtualThreadReceiver.MessageHandlerFactory)}
+     * @throws IOException -   thrown if the port could not be bound.
+     */
+    public static ServerSocket bindAdminSocket(final int port) throws IOException {
+        ServerSocket adminSocket = new ServerSocket();
+        adminSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        logger.info("Admin socket start on [" + adminSocket.getLocalPort() + "].");
+        return adminSocket;
+    }
+
+    /**
+     * Sends one admin command to the daemon on this host.
+     *
+     * @param port    -   of the admin socket.
+     * @param command -   eg: {@link #SHUTDOWN}
+     * @return -   the answer of the daemon.
+     * @throws IOException -   thrown if the daemon could not be reached.
+     */
+    public static String sendAdminCommand(final int port, final String command) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(ADMIN_READ_TIMEOUT_MILLIS);
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(command + "\n");
+            writer.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            return reader.readLine();
+        }
+    }
+
+    @Override
+    public void start() {
+        Thread admin = new Thread(this::serveAdmin, "receiver-admin");
+        admin.setDaemon(true);
+        admin.start();
+        try {
+            while (running) {
+                Socket socket = serverSocket.accept();
+                session = socket;
+                if (!running) {
+                    closeQuietly(socket);
+                    break;
+                }
+                serve(socket, ++sessions);
+            }
+        } catch (IOException e) {
+            if (running) {
+                logger.log(Level.SEVERE, "Exception while accepting the initiator.", e);
+            }
+        } finally {
+            close();
+        }
+        logger.info("Receiver daemon is now stopped after [" + sessions + "] sessions.");
+    }
+
+    /**
+     * Stops accepting, and closes the session in progress, which stops its receiver.
+     */
+    @Override
+    public void close() {
+        running = false;
+        closeQuietly(serverSocket);
+        closeQuietly(adminSocket);
+        Socket current = session;
+        if (current != null) {
+            closeQuietly(current);
+        }
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    private void serve(Socket socket, int number) {
+        logger.info("Session [" + number + "] started with: [" + socket.getRemoteSocketAddress() + "]");
+        long startNanos = System.nanoTime();
+        List<Closeable> opened = new ArrayList<>();
+        try {
+            new Receiver(messageHandlerFactory.create(socket, opened)).start();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while creating the handler of the session.", e);
+        } finally {
+            session = null;
+            closeQuietly(socket);
+            for (Closeable resource : opened) {
+                closeQuietly(resource);
+            }
+        }
+        logger.info("Session [" + number + "] is over in [" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+                + " ms]. Waiting for the next initiator.");
+    }
+
+    /**
+     * One command per admin connection, answered with one line.
+     */
+    private void serveAdmin() {
+        while (running) {
+            try (Socket socket = adminSocket.accept()) {
+                socket.setSoTimeout(ADMIN_READ_TIMEOUT_MILLIS);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                String command = reader.readLine();
+                logger.info("Received admin command: [" + command + "]");
+                if (SHUTDOWN.equals(command)) {
+                    writer.write("Shutting down after [" + sessions + "] sessions.\n");
+                    writer.flush();
+                    close();
+                } else if (STATUS.equals(command)) {
+                    writer.write("Sessions: [" + sessions + "], in progress: [" + (session != null) + "]\n");
+                    writer.flush();
+                } else {
+                    writer.write("Unknown command. Allowed: " + SHUTDOWN + " / " + STATUS + "\n");
+                    writer.flush();
+                }
+            } catch (SocketTimeoutException e) {
+                logger.warning("Admin connection sent no command in [" + ADMIN_READ_TIMEOUT_MILLIS + " ms]. So, closing it.");
+            } catch (IOException e) {
+                if (running) {
+                    logger.log(Level.SEVERE, "Exception while serving the admin command.", e);
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while closing the connection.", e);
+        }
+    }
+
+}
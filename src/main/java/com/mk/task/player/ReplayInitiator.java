@@ -0,0 +1,244 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.JournalReader;
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.MessageJournal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.mk.task.Application.POISON_PILL;
+
+/**
+ * Variant of {@link Initiator}, which sends the messages recorded in a {@link MessageJournal} to a {@link Receiver}
+ * Responsibilities:
+ * 1. Reads the messages which the recorded player sent, with their streams and timestamps. {@link JournalReader}
+ * 2. Sends up to the max number of messages, with the same gaps between them as when they were recorded. Or with gaps divided by the speed.
+ * Or as fast as the window allows, with a speed of {@link #AS_FAST_AS_POSSIBLE}.
+ * 3. Receives the replies, with up to {@code window} messages in flight, and records their round trip latencies.
+ * 4. Once all the messages are replayed and replied to, {@link Application#POISON_PILL} is sent to stop the receiver.
+ * <p>
+ * The recorded poison pills and the received messages are skipped. So, a journal of an initiator can be replayed as it is.
+ * While waiting for the time of the next message, the replies in flight are read. The schedule is kept from the start,
+ * so a replay which fell behind catches up, and the messages until then are late. Eg: a closed loop recording, replayed at 1x,
+ * is as fast as the round trips allow. How late the messages were is reported, so that such a run can be told apart.
+ * The payloads are sent straight from the mapped journal, with a {@link BinaryMessageHandler}. Large ones without a copy.
+ * With the text codec, every payload is decoded into a String first, as that codec only writes Strings.
+ * NOTE: The receiver should reply to every message, as the {@link Receiver} does.
+ */
+public class ReplayInitiator implements IPlayer {
+
+    private final static Logger logger = Logger.getLogger(ReplayInitiator.class.getName());
+
+    public final static int AS_FAST_AS_POSSIBLE = 0;
+
+    private final static byte[] POISON_PILL_BYTES = POISON_PILL.getBytes(StandardCharsets.UTF_8);
+    private final static long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private final static long LATE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+    private final PlayerMetrics metrics = PlayerMetrics.current();
+
+    private final MessageHandler messageHandler;
+    private final BinaryMessageHandler binaryHandler;
+    private final JournalReader journalReader;
+    private final int maxMessages;
+    private final int speed;
+    private final int window;
+    private final LatencyReporter latencyReporter;
+    private final long[] sendTimes;
+    private int sent;
+    private int received;
+    private int late;
+    private long maxBehindNanos;
+
+    /**
+     * @param journalReader -   of the journal recorded by an initiator.
+     * @param maxMessages   -   the replay stops there, even if the journal holds more.
+     * @param speed         -   1 for the recorded pace, 2 for twice as fast ... {@link #AS_FAST_AS_POSSIBLE} to ignore the pace.
+     * @param window        -   max number of messages in flight.
+     */
+    public ReplayInitiator(final MessageHandler messageHandler, final JournalReader journalReader, final int maxMessages,
+                           final int speed, final int window, final LatencyReporter latencyReporter) {
+        this.messageHandler = messageHandler;
+        this.binaryHandler = messageHandler instanceof BinaryMessageHandler ? (BinaryMessageHandler) messageHandler : null;
+        this.journalReader = journalReader;
+        this.maxMessages = maxMessages;
+        this.speed = speed;
+        this.window = window;
+        this.latencyReporter = latencyReporter;
+        this.sendTimes = new long[window];
+    }
+
+    @Override
+    public void start() {
+        if (binaryHandler != null) {
+            try {
+                if (binaryHandler.negotiateCompression()) {
+                    logger.info("Receiver accepted the compression.");
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Exception while negotiating the compression.", e);
+                return;
+            }
+        }
+        latencyReporter.start(System.nanoTime());
+        boolean completed = replay();
+        latencyReporter.finish(System.nanoTime());
+        logger.info(String.format(Locale.ROOT, "Replayed: [%d] messages, speed: [%s], late by more than 1 ms: [%d], max behind schedule: [%.3f ms]",
+                sent, speed == AS_FAST_AS_POSSIBLE ? "max" : speed + "x", late, maxBehindNanos / 1_000_000.0));
+        if (completed) {
+            sendPoisonPill();
+        }
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    /**
+     * The schedule starts with the first message sent. Its time is the recorded one, less the one of the first recorded message.
+     *
+     * @return -   true if all the messages are sent and their replies received.
+     */
+    private boolean replay() {
+        long firstRecordedNanos = 0;
+        long startNanos = 0;
+        try {
+            while (sent < maxMessages && journalReader.next()) {
+                if (journalReader.getDirection() != MessageJournal.SENT || isPoisonPill(journalReader.getPayload())) {
+                    continue;
+                }
+                boolean scheduled = sent > 0 && speed != AS_FAST_AS_POSSIBLE;
+                long dueNanos = 0;
+                if (sent == 0) {
+                    firstRecordedNanos = journalReader.getNanos();
+                    startNanos = System.nanoTime();
+                } else if (scheduled) {
+                    dueNanos = startNanos + (journalReader.getNanos() - firstRecordedNanos) / speed;
+                }
+                while (sent - received >= window || (scheduled && sent > received && dueNanos - System.nanoTime() > 0)) {
+                    receive();
+                }
+                if (scheduled) {
+                    waitUntil(dueNanos);
+                    long behind = System.nanoTime() - dueNanos;
+                    maxBehindNanos = Math.max(maxBehindNanos, behind);
+                    if (behind > LATE_NANOS) {
+                        late++;
+                    }
+                }
+                send(journalReader.getStream(), journalReader.getPayload());
+            }
+            while (sent > received) {
+                receive();
+            }
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while replaying the message journal, after [" + sent + "] messages.", e);
+            return false;
+        }
+    }
+
+    private void send(int stream, ByteBuffer payload) throws IOException {
+        sendTimes[sent % sendTimes.length] = System.nanoTime();
+        try {
+            if (binaryHandler != null) {
+                int length = payload.remaining();
+                binaryHandler.setWriteStream(stream);
+                if (length >= BinaryMessageHandler.BULK_THRESHOLD) {
+                    binaryHandler.writeBulk(payload, null);
+                } else {
+                    binaryHandler.startFrame(length).put(payload);
+                    binaryHandler.writeFrame();
+                }
+                metrics.messageSent(BinaryMessageHandler.HEADER_LENGTH + length);
+            } else {
+                String message = StandardCharsets.UTF_8.decode(payload).toString();
+                messageHandler.write(message);
+                metrics.messageSent(message);
+            }
+        } catch (IOException e) {
+            metrics.writeFailed();
+            throw e;
+        }
+        sent++;
+        hotLoopLogger.log(Level.FINE, "Replayed message: [{0,number,#}]", sent);
+    }
+
+    /**
+     * Replies come in the order of the messages, so the oldest send time in flight is the one of this reply.
+     */
+    private void receive() throws IOException {
+        try {
+            if (binaryHandler != null) {
+                metrics.messageReceived(BinaryMessageHandler.HEADER_LENGTH + binaryHandler.readFrame().remaining());
+            } else {
+                metrics.messageReceived(messageHandler.read());
+            }
+        } catch (IOException e) {
+            metrics.readFailed();
+            throw e;
+        }
+        long now = System.nanoTime();
+        long latency = now - sendTimes[received % sendTimes.length];
+        latencyReporter.record(now, latency);
+        metrics.latency(latency);
+        received++;
+    }
+
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            }
+        }
+    }
+
+    private static boolean isPoisonPill(ByteBuffer payload) {
+        if (payload.remaining() != POISON_PILL_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < POISON_PILL_BYTES.length; i++) {
+            if (payload.get(payload.position() + i) != POISON_PILL_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * On the whole connection, whatever the streams of the recorded messages. So, the receiver stops.
+     */
+    private void sendPoisonPill() {
+        try {
+            if (binaryHandler != null) {
+                binaryHandler.setWriteStream(0);
+            }
+            messageHandler.write(POISON_PILL);
+            messageHandler.flush();
+            metrics.poisonPill();
+            logger.info("Poison pill is now sent, after [" + sent + "] replayed messages.");
+        } catch (IOException e) {
+            metrics.writeFailed();
+            logger.log(Level.SEVERE, "Exception while sending poison pill to stop receiver.", e);
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.logging.HotLoopLogger;
+import com.mk.task.metrics.PlayerMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non blocking variant of {@link Receiver} which serves many {@link Initiator}s from a single thread.
+ * Responsibilities:
+ * 1. Accepts the initiators connecting to the server socket channel.
+ * 2. Reads the messages of every connection, adds the message count of that connection.
+ * 3. Then, sends it back to the same connection.
+ * 4. A connection is closed when it sends {@link Application#POISON_PILL} or when writing into it fails.
+ * The other connections are not affected.
+ * 5. The process will stop only on {@link #close()}.
+ * <p>
+ * Messages are separated by new lines, same as {@link com.mk.task.transport.TextMessageHandler},
+ * so the initiators do not need to know which receiver they are talking to.
+ * All the connections count into the same {@link PlayerMetrics}.
+ * A connection is not read while its replies are not written, so an initiator which does not read holds back only itself.
+ * A line longer than {@link #MAX_LINE_LENGTH} closes its connection. So, no connection makes the buffers grow without limit.
+ */
+public class SelectorReceiver implements IPlayer, Closeable {
+
+    private final static Logger logger = Logger.getLogger(SelectorReceiver.class.getName());
+
+    private final static int BUFFER_SIZE = 8 * 1024;
+    public final static int MAX_LINE_LENGTH = 64 * 1024;
+    private final static Charset CHARSET = Charset.defaultCharset();
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+    private final PlayerMetrics metrics = PlayerMetrics.current();
+    private volatile boolean running = true;
+
+    public SelectorReceiver(final ServerSocketChannel serverChannel) throws IOException {
+        this.serverChannel = serverChannel;
+        this.selector = Selector.open();
+    }
+
+    @Override
+    public void start() {
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                logger.log(Level.SEVERE, "Exception while selecting the connections.", e);
+            }
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Stops the selector loop. Open connections are closed by the selector thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception on the connection: count: [" + connection.count + "]", e);
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+            logger.info("Initiator connected from [" + channel.getRemoteAddress() + "].");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while accepting the initiator.", e);
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while closing the server socket.", e);
+        }
+    }
+
+    /**
+     * State of a single initiator connection.
+     * The count is kept per connection, so every initiator sees the same numbering as with {@link Receiver}.
+     */
+    private class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private int count = 1;
+        private boolean poisoned;
+
+        private Connection(final SocketChannel channel, final SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() throws IOException {
+            int read;
+            try {
+                read = channel.read(readBuffer);
+            } catch (IOException e) {
+                metrics.readFailed();
+                throw e;
+            }
+            if (read < 0) {
+                logger.info("Initiator closed the connection.");
+                close();
+                return;
+            }
+            readBuffer.flip();
+            int lineStart = 0;
+            for (int i = readBuffer.position(); i < readBuffer.limit() && !poisoned; i++) {
+                if (readBuffer.get(i) == '\n') {
+                    metrics.messageReceived(i + 1 - lineStart);
+                    onMessage(decode(lineStart, i));
+                    lineStart = i + 1;
+                }
+            }
+            readBuffer.position(lineStart);
+            readBuffer.compact();
+            if (!readBuffer.hasRemaining()) {
+                if (readBuffer.capacity() >= MAX_LINE_LENGTH) {
+                    logger.log(Level.SEVERE, "Message longer than [" + MAX_LINE_LENGTH + "] bytes. So, closing the connection.");
+                    close();
+                    return;
+                }
+                readBuffer = grow(readBuffer, Math.min(readBuffer.capacity() * 2, MAX_LINE_LENGTH));
+            }
+            flush();
+        }
+
+        private String decode(int start, int end) {
+            if (end > start && readBuffer.get(end - 1) == '\r') {
+                end--;
+            }
+            return new String(readBuffer.array(), readBuffer.arrayOffset() + start, end - start, CHARSET);
+        }
+
+        private void onMessage(String message) {
+            hotLoopLogger.log(Level.INFO, "Received message: [{0}]", message);
+            if (Application.POISON_PILL.equals(message)) {
+                metrics.poisonPill();
+                logger.info("Received poison pill. So, closing the connection.");
+                poisoned = true;
+                return;
+            }
+            String sendingMessage = message + " " + count;
+            byte[] bytes = (sendingMessage + "\n").getBytes(CHARSET);
+            if (writeBuffer.remaining() < bytes.length) {
+                writeBuffer = grow(writeBuffer, Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + bytes.length));
+            }
+            writeBuffer.put(bytes);
+            metrics.messageSent(bytes.length);
+            hotLoopLogger.log(Level.INFO, "Sent message: [{0}]", sendingMessage);
+            count++;
+        }
+
+        /**
+         * Writes as much as the socket accepts. The rest is written once the channel is writable again.
+         * Until then, the connection is not read. So, the replies pending are at most the ones of a read.
+         */
+        private void flush() throws IOException {
+            writeBuffer.flip();
+            try {
+                channel.write(writeBuffer);
+            } catch (IOException e) {
+                metrics.writeFailed();
+                throw e;
+            }
+            boolean pending = writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (pending) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (poisoned) {
+                close();
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Exception while closing the connection.", e);
+            }
+        }
+
+        private ByteBuffer grow(ByteBuffer buffer, int capacity) {
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            grown.put(buffer);
+            return grown;
+        }
+    }
+
+}
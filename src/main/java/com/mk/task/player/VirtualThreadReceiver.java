@@ -0,0 +1,166 @@
+package com.mk.task.player;
+
+import com.mk.task.Application;
+import com.mk.task.transport.MessageHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Variant of {@link Receiver} which serves many {@link Initiator}s, each one by a plain blocking {@link Receiver}.
+ * Responsibilities:
+ * 1. Accepts the initiators connecting to the server socket in a loop.
+ * 2. Runs a {@link Receiver} with its own {@link MessageHandler} for every connection, on a thread of its own.
+ * 3. A connection is closed when its receiver stops. Eg: on {@link Application#POISON_PILL}. The other connections are not affected.
+ * 4. The process will stop only on {@link #close()}.
+ * <p>
+ * The threads are virtual when the JDK has them (21 and later). They are cheap while blocked on a socket,
+ * so tens of thousands of mostly idle connections need neither a selector nor a platform thread each.
+ * On older JDKs, each connection gets a platform thread instead.
+ * NOTE: The executor is looked up reflectively, so that the same source still builds for Java 8.
+ */
+public class VirtualThreadReceiver implements IPlayer, Closeable {
+
+    private final static Logger logger = Logger.getLogger(VirtualThreadReceiver.class.getName());
+
+    /**
+     * Creates the handler of an accepted connection.
+     */
+    public interface MessageHandlerFactory {
+        /**
+         * @param socket
+         * @param opened -   what is opened for the handler is added. Closed once the connection is done. Eg: its compression.
+         * @return
+         * @throws IOException
+         */
+        MessageHandler create(Socket socket, List<Closeable> opened) throws IOException;
+    }
+
+    private final ServerSocket serverSocket;
+    private final MessageHandlerFactory messageHandlerFactory;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger accepted = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public VirtualThreadReceiver(final ServerSocket serverSocket, final MessageHandlerFactory messageHandlerFactory) {
+        this.serverSocket = serverSocket;
+        this.messageHandlerFactory = messageHandlerFactory;
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : Executors.newCachedThreadPool();
+    }
+
+    @Override
+    public void start() {
+        try {
+            while (running) {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                if (!running) {
+                    connections.remove(socket);
+                    closeQuietly(socket);
+                    break;
+                }
+                accepted.incrementAndGet();
+                try {
+                    executor.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    connections.remove(socket);
+                    closeQuietly(socket);
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                logger.log(Level.SEVERE, "Exception while accepting the initiator.", e);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stops accepting and closes the open connections, which stops their receivers.
+     * May be called from another thread. A connection accepted meanwhile is closed by the accepting thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while closing the server socket.", e);
+        }
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        executor.shutdown();
+    }
+
+    public int getAccepted() {
+        return accepted.get();
+    }
+
+    public int getOpenConnections() {
+        return connections.size();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    private void serve(Socket socket) {
+        List<Closeable> opened = new ArrayList<>();
+        try {
+            new Receiver(messageHandlerFactory.create(socket, opened)).start();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while creating the handler of the connection.", e);
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+            for (Closeable resource : opened) {
+                closeQuietly(resource);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Exception while closing the connection.", e);
+        }
+    }
+
+    /**
+     * @return -   Executors.newVirtualThreadPerTaskExecutor() on JDK 21 and later. Otherwise, null.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.info("Connections are served by virtual threads.");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            logger.warning("Virtual threads need JDK 21 or later. So, connections are served by platform threads.");
+        } catch (ReflectiveOperationException e) {
+            logger.log(Level.WARNING, "Virtual threads are not available. So, connections are served by platform threads.", e);
+        }
+        return null;
+    }
+
+}
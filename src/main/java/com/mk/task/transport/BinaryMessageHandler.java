@@ -0,0 +1,661 @@
+package com.mk.task.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link MessageHandler} which frames every message as a 4 byte length followed by the UTF-8 bytes of the message.
+ * Responsibilities:
+ * 1. Write the frames into the output stream through a reusable buffer.
+ * 2. Read the frames from the input stream through a reusable buffer.
+ * 3. Signal the end of stream with {@link EOFException} instead of a magic message.
+ * 4. Coalesce the frames in the write buffer as decided by the {@link FlushPolicy}. Always flushed before blocking on reading.
+ * 5. Write large frames without copying them into the write buffer. {@link #writeBulk(ByteBuffer, ByteBuffer)} & {@link #transferFrame(FileChannel, long, int)}
+ * 6. Compress the frames, once negotiated with the other player. {@link #negotiateCompression()}
+ * 7. Credit based flow control, once negotiated with the other player. {@link #negotiateFlowControl()}
+ * 8. Multiplex logical streams over the connection. {@link #setWriteStream(int)} & {@link #getReadStream()}
+ * 9. Record the messages into a {@link MessageJournal}, if one is set. {@link #setJournal(MessageJournal)}
+ * <p>
+ * Unlike the text handler, no scanning for line separators is needed and messages can contain new lines.
+ * The three highest bits of the length are flags. A compressed frame holds the length before compression and the deflated bytes.
+ * A frame of a stream starts with the 2 byte stream id, counted in the length. The rest is the same as for any other frame.
+ * Frames of stream 0, the whole connection, carry no id. So, players which use no streams see no change on the wire.
+ * A control frame holds its type, and a number for the credits. It is handled by the handler and never returned to the player.
+ * With flow control, the receiving side grants as many credits as it can hold unprocessed messages. A message is processed once
+ * it is replied to, and its credit goes out right behind the reply, in the same packet. A credit sent alone would wait behind
+ * the reply for its acknowledgement, with Nagle's algorithm. Messages which are not replied to are processed once the next one
+ * is read. Their credits are granted again in batches, and always before blocking on reading.
+ * So, the sending side never has more messages in flight than the receiving side can take.
+ * The file transfers are never compressed. With compression, the bulk writes are copied, so that they can be compressed.
+ * The journal holds the messages as the players see them: before compression and after inflating, without the control frames.
+ * NOTE: Not thread safe. One handler should be used by one player.
+ */
+public class BinaryMessageHandler extends MessageHandler {
+
+    public final static int HEADER_LENGTH = 4;
+    public final static int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+    public final static int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    /**
+     * Payloads of at least this size are better written by {@link #writeBulk(ByteBuffer, ByteBuffer)} than copied.
+     */
+    public final static int BULK_THRESHOLD = 64 * 1024;
+    /**
+     * Stream ids are from 1 to this, both included. 0 is the whole connection.
+     */
+    public final static int MAX_STREAM = 0xFFFF;
+
+    private final static ByteBuffer NO_SUFFIX = ByteBuffer.allocate(0);
+    private final static int COMPRESSED_FLAG = 1 << 30;
+    private final static int CONTROL_FLAG = 1 << 29;
+    private final static int STREAM_FLAG = 1 << 28;
+    private final static int FLAGS = COMPRESSED_FLAG | CONTROL_FLAG | STREAM_FLAG;
+    private final static int ORIGINAL_LENGTH = 4;
+    private final static int STREAM_ID_LENGTH = 2;
+    private final static byte COMPRESSION_OFFER = 1;
+    private final static byte COMPRESSION_ACCEPT = 2;
+    private final static byte COMPRESSION_DECLINE = 3;
+    private final static byte FLOW_CONTROL_REQUEST = 4;
+    private final static byte FLOW_CONTROL_DECLINE = 5;
+    private final static byte CREDIT = 6;
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private WritableByteChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + STREAM_ID_LENGTH);
+    private final ByteBuffer[] gather = new ByteBuffer[3];
+    private Compression compression;
+    private boolean compressing;
+    private int creditCapacity;
+    private boolean flowControlled;
+    private int credits;
+    private boolean granting;
+    private boolean holdingFrame;
+    private int owedCredits;
+    private int writeStream;
+    private int frameStream;
+    private int readStream;
+
+    private ByteBuffer readBuffer;
+    private ByteBuffer writeBuffer;
+    private int readPosition;
+    private int readLimit;
+    private int frameStart;
+
+    public BinaryMessageHandler(final InputStream inputStream, final OutputStream outputStream) {
+        this(inputStream, outputStream, FlushPolicy.immediate(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param inputStream
+     * @param outputStream
+     * @param flushPolicy  -   when the frames in the write buffer are written into the output stream.
+     * @param bufferSize   -   initial size of the read and write buffers. They grow for larger frames.
+     */
+    public BinaryMessageHandler(final InputStream inputStream, final OutputStream outputStream,
+                                final FlushPolicy flushPolicy, final int bufferSize) {
+        this(inputStream, outputStream, null, flushPolicy, bufferSize);
+    }
+
+    /**
+     * @param inputStream
+     * @param outputStream
+     * @param channel      -   channel on the same bytes as the output stream, for the bulk writes. Eg: {@link Transport#getWritableChannel()}
+     *                     If null, the bulk writes go through the output stream.
+     * @param flushPolicy  -   when the frames in the write buffer are written into the output stream.
+     * @param bufferSize   -   initial size of the read and write buffers. They grow for larger frames.
+     */
+    public BinaryMessageHandler(final InputStream inputStream, final OutputStream outputStream, final WritableByteChannel channel,
+                                final FlushPolicy flushPolicy, final int bufferSize) {
+        super(flushPolicy);
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.channel = channel;
+        this.readBuffer = ByteBuffer.allocate(bufferSize);
+        this.writeBuffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Makes the handler able to compress. Frames are compressed only once the other player agreed to.
+     * Should be called before any frame is written or read.
+     *
+     * @param compression
+     */
+    public void setCompression(final Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @return -   whether the frames are compressed. Eg: after {@link #negotiateCompression()} or after accepting the offer of the other player.
+     */
+    public boolean isCompressing() {
+        return compressing;
+    }
+
+    /**
+     * Offers the compression to the other player and waits for the answer.
+     * Called by the initiator once connected, before any message. The receiver answers while reading.
+     * Does nothing without a {@link Compression}
+     *
+     * @return -   whether the frames are compressed from now on, in both directions.
+     * @throws IOException -   thrown if the offer could not be written or the answer could not be read.
+     */
+    public boolean negotiateCompression() throws IOException {
+        if (compression == null) {
+            return false;
+        }
+        ByteBuffer frame = request(COMPRESSION_OFFER);
+        byte answer = frame.get(frame.position());
+        if (answer != COMPRESSION_ACCEPT && answer != COMPRESSION_DECLINE) {
+            throw new IOException("Unexpected answer to the compression offer: [" + answer + "]");
+        }
+        compressing = answer == COMPRESSION_ACCEPT;
+        return compressing;
+    }
+
+    /**
+     * @param stream -   stream of the frames written from now on. From 1 to {@link #MAX_STREAM}, or 0 for no stream.
+     */
+    public void setWriteStream(final int stream) {
+        if (stream < 0 || stream > MAX_STREAM) {
+            throw new IllegalArgumentException("Stream should be between 0 and " + MAX_STREAM + ": [" + stream + "]");
+        }
+        this.writeStream = stream;
+    }
+
+    /**
+     * @return -   stream of the frame returned by the last read. 0 if it belonged to no stream.
+     */
+    public int getReadStream() {
+        return readStream;
+    }
+
+    /**
+     * Makes the handler use credit based flow control, if the other player asks for it. Eg: for the receiver.
+     * For the initiator, makes the handler ask for it. {@link #negotiateFlowControl()}
+     * Should be called before any frame is written or read.
+     *
+     * @param capacity -   messages which the receiving side can hold unprocessed. The credits it grants up front.
+     */
+    public void setCreditCapacity(final int capacity) {
+        this.creditCapacity = capacity;
+    }
+
+    /**
+     * Asks the other player for flow control, and waits for its first credits.
+     * Called by the initiator once connected, before any message. The receiver answers while reading.
+     * Does nothing without a credit capacity.
+     *
+     * @return -   whether the messages are sent only with credits from now on. {@link #takeCredit()}
+     * @throws IOException -   thrown if the request could not be written or the answer could not be read.
+     */
+    public boolean negotiateFlowControl() throws IOException {
+        if (creditCapacity <= 0) {
+            return false;
+        }
+        ByteBuffer answer = request(FLOW_CONTROL_REQUEST);
+        byte type = answer.get(answer.position());
+        if (type == CREDIT && answer.remaining() == 1 + Integer.BYTES) {
+            credits = answer.getInt(answer.position() + 1);
+            flowControlled = true;
+        } else if (type != FLOW_CONTROL_DECLINE) {
+            throw new IOException("Unexpected answer to the flow control request: [" + type + "]");
+        }
+        return flowControlled;
+    }
+
+    public boolean isFlowControlled() {
+        return flowControlled;
+    }
+
+    /**
+     * Takes the credit to send one message. Without flow control, there is always one.
+     *
+     * @return -   false if there are no credits left. Then replies should be read, or {@link #awaitCredit()}
+     */
+    public boolean takeCredit() {
+        if (!flowControlled) {
+            return true;
+        }
+        if (credits == 0) {
+            return false;
+        }
+        credits--;
+        return true;
+    }
+
+    /**
+     * The frame returned by the last read was sent without a credit. Eg: a poison pill. So, no credit is granted for it.
+     */
+    public void creditExempt() {
+        holdingFrame = false;
+    }
+
+    /**
+     * Reads until credits are granted. Should be called only when no reply is awaited.
+     *
+     * @throws IOException -   thrown if the stream could not be read, or a message came instead.
+     */
+    public void awaitCredit() throws IOException {
+        while (flowControlled && credits == 0) {
+            int header = readRawFrame();
+            if ((header & CONTROL_FLAG) == 0) {
+                throw new IOException("Expected credits, instead of a message.");
+            }
+            onControl(readBuffer);
+        }
+    }
+
+    @Override
+    public void write(final String message) throws IOException {
+        write(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes the remaining bytes of the payload as one frame. The payload is consumed.
+     *
+     * @param payload
+     * @throws IOException -   thrown if the frame could not be written into the output stream.
+     */
+    public void write(final ByteBuffer payload) throws IOException {
+        startFrame(payload.remaining()).put(payload);
+        writeFrame();
+    }
+
+    /**
+     * Starts a new frame in the internal write buffer, so that the payload can be put without an intermediate copy.
+     * The frame is sent with {@link #writeFrame()}
+     *
+     * @param maxLength -   maximum number of payload bytes which will be put.
+     * @return -   the internal write buffer, positioned after the frame header.
+     * @throws IOException -   thrown if the pending frames had to be flushed to make room, and that failed.
+     */
+    public ByteBuffer startFrame(final int maxLength) throws IOException {
+        return startFrame(maxLength, writeStream);
+    }
+
+    private ByteBuffer startFrame(int maxLength, int stream) throws IOException {
+        int required = HEADER_LENGTH + streamIdLength(stream) + maxLength;
+        if (writeBuffer.remaining() < required && hasPending()) {
+            flush();
+        }
+        if (writeBuffer.capacity() < required) {
+            writeBuffer = ByteBuffer.allocate(required);
+        }
+        frameStart = writeBuffer.position();
+        frameStream = stream;
+        writeBuffer.position(frameStart + HEADER_LENGTH);
+        if (stream != 0) {
+            writeBuffer.putShort((short) stream);
+        }
+        return writeBuffer;
+    }
+
+    private static int streamIdLength(int stream) {
+        return stream == 0 ? 0 : STREAM_ID_LENGTH;
+    }
+
+    /**
+     * @return -   the header of a frame of the current write stream, with the given payload length. The stream id follows it.
+     */
+    private ByteBuffer header(int length) {
+        header.clear();
+        if (writeStream == 0) {
+            header.putInt(length);
+        } else {
+            header.putInt(STREAM_FLAG | (STREAM_ID_LENGTH + length)).putShort((short) writeStream);
+        }
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Completes the frame started by {@link #startFrame(int)} and flushes it, if the {@link FlushPolicy} says so.
+     *
+     * @throws IOException -   thrown if the frames could not be written into the output stream.
+     */
+    public void writeFrame() throws IOException {
+        int idLength = streamIdLength(frameStream);
+        int payloadStart = frameStart + HEADER_LENGTH + idLength;
+        int length = writeBuffer.position() - payloadStart;
+        int header = length;
+        if (journal != null) {
+            journal.append(MessageJournal.SENT, frameStream, System.nanoTime(), writeBuffer.array(), payloadStart, length);
+        }
+        if (compressing && length >= compression.getThreshold()) {
+            int compressed = compression.deflate(writeBuffer.array(), payloadStart, length, length - ORIGINAL_LENGTH);
+            if (compressed >= 0) {
+                writeBuffer.putInt(payloadStart, length);
+                System.arraycopy(compression.deflated(), 0, writeBuffer.array(), payloadStart + ORIGINAL_LENGTH, compressed);
+                writeBuffer.position(payloadStart + ORIGINAL_LENGTH + compressed);
+                header = COMPRESSED_FLAG | (ORIGINAL_LENGTH + compressed);
+            }
+        }
+        if (frameStream != 0) {
+            header = STREAM_FLAG | (header + idLength);
+        }
+        writeBuffer.putInt(frameStart, header);
+        addPending();
+        if (granting && holdingFrame) {
+            holdingFrame = false;
+            owedCredits++;
+            grantOwedCredits();
+        }
+        flushIfDue();
+    }
+
+    /**
+     * Writes the payload, followed by the suffix, as one frame straight from the given buffers.
+     * Nothing is copied into the write buffer. With a {@link GatheringByteChannel}, eg: a socket channel,
+     * the header, the payload and the suffix go out with one gathering write.
+     * Pending frames are flushed first, so that the order of the frames is kept. The buffers are consumed.
+     *
+     * @param payload
+     * @param suffix  -   eg: the count appended by the receiver. May be null.
+     * @throws IOException -   thrown if the frame could not be written.
+     */
+    public void writeBulk(final ByteBuffer payload, final ByteBuffer suffix) throws IOException {
+        ByteBuffer tail = suffix == null ? NO_SUFFIX : suffix;
+        int length = checkLength((long) payload.remaining() + tail.remaining());
+        if (compressing) {
+            startFrame(length).put(payload).put(tail);
+            writeFrame();
+            return;
+        }
+        if (hasPending()) {
+            flush();
+        }
+        if (journal != null) {
+            journal.append(MessageJournal.SENT, writeStream, System.nanoTime(), payload, tail);
+        }
+        ByteBuffer frameHeader = header(length);
+        if (channel instanceof GatheringByteChannel) {
+            gather[0] = frameHeader;
+            gather[1] = payload;
+            gather[2] = tail;
+            long remaining = frameHeader.remaining() + length;
+            while (remaining > 0) {
+                remaining -= ((GatheringByteChannel) channel).write(gather);
+            }
+            gather[1] = null;
+            gather[2] = null;
+            return;
+        }
+        writeFully(frameHeader);
+        writeFully(payload);
+        writeFully(tail);
+        outputStream.flush();
+    }
+
+    /**
+     * Sends a region of the file as one frame, with {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     * From a socket channel, the operating system sends the bytes straight from the file. Eg: sendfile on linux.
+     * Pending frames are flushed first, so that the order of the frames is kept.
+     *
+     * @param file
+     * @param position -   of the region in the file.
+     * @param length   -   of the region.
+     * @throws IOException -   thrown if the region is not in the file, or if the frame could not be written.
+     */
+    public void transferFrame(final FileChannel file, final long position, final int length) throws IOException {
+        checkLength(length);
+        if (position < 0 || position + length > file.size()) {
+            throw new IOException("Region is not in the file: position: [" + position + "], length: [" + length + "]");
+        }
+        if (hasPending()) {
+            flush();
+        }
+        if (journal != null) {
+            journal.append(MessageJournal.SENT, writeStream, System.nanoTime(), file, position, length);
+        }
+        WritableByteChannel target = channel();
+        ByteBuffer frameHeader = header(length);
+        while (frameHeader.hasRemaining()) {
+            target.write(frameHeader);
+        }
+        long transferred = 0;
+        while (transferred < length) {
+            transferred += file.transferTo(position + transferred, length - transferred, target);
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    protected void flushBuffer() throws IOException {
+        int length = writeBuffer.position();
+        writeBuffer.clear();
+        outputStream.write(writeBuffer.array(), 0, length);
+        outputStream.flush();
+    }
+
+    /**
+     * Writes a control frame and reads the answer of the other player.
+     *
+     * @return -   the read buffer, positioned on the answer.
+     */
+    private ByteBuffer request(byte type) throws IOException {
+        writeControl(type);
+        int header = readRawFrame();
+        if ((header & CONTROL_FLAG) == 0 || !readBuffer.hasRemaining()) {
+            throw new IOException("Expected the answer to the control frame [" + type + "], instead of a message.");
+        }
+        return readBuffer;
+    }
+
+    /**
+     * Control frames are flushed right away, as the other player waits for them.
+     */
+    private void writeControl(byte type) throws IOException {
+        startControl(type, 1);
+        flush();
+    }
+
+    private void startControl(byte type, int length) throws IOException {
+        if (outputStream == null) {
+            throw new IOException("Control frame could not be written, as the handler only reads.");
+        }
+        startFrame(length, 0).put(type);
+        writeBuffer.putInt(frameStart, CONTROL_FLAG | length);
+    }
+
+    /**
+     * Grants credits. Flushed with the replies, or right away for the first ones.
+     */
+    private void writeCredits(int granted, boolean flush) throws IOException {
+        startControl(CREDIT, 1 + Integer.BYTES);
+        writeBuffer.putInt(granted);
+        if (flush) {
+            flush();
+        } else {
+            addPending();
+        }
+    }
+
+    /**
+     * Answers the offers of the other player, and takes the credits it grants.
+     */
+    private void onControl(ByteBuffer frame) throws IOException {
+        byte type = frame.get(frame.position());
+        if (type == COMPRESSION_OFFER && frame.remaining() == 1) {
+            compressing = compression != null;
+            writeControl(compressing ? COMPRESSION_ACCEPT : COMPRESSION_DECLINE);
+        } else if (type == FLOW_CONTROL_REQUEST && frame.remaining() == 1) {
+            granting = creditCapacity > 0;
+            if (granting) {
+                writeCredits(creditCapacity, true);
+            } else {
+                writeControl(FLOW_CONTROL_DECLINE);
+            }
+        } else if (type == CREDIT && frame.remaining() == 1 + Integer.BYTES && flowControlled) {
+            credits += frame.getInt(frame.position() + 1);
+        } else {
+            throw new IOException("Unexpected control frame: [" + type + "]");
+        }
+    }
+
+    /**
+     * The message returned by the previous read is processed now. Its credit is granted again once a batch is owed.
+     */
+    private void onProcessed() throws IOException {
+        if (!granting || !holdingFrame) {
+            return;
+        }
+        holdingFrame = false;
+        if (++owedCredits >= Math.max(1, creditCapacity / 4)) {
+            grantOwedCredits();
+        }
+    }
+
+    private void grantOwedCredits() throws IOException {
+        if (owedCredits > 0) {
+            writeCredits(owedCredits, false);
+            owedCredits = 0;
+        }
+    }
+
+    private static int checkLength(long length) throws IOException {
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: [" + length + "]");
+        }
+        return (int) length;
+    }
+
+    private WritableByteChannel channel() {
+        if (channel == null) {
+            channel = Channels.newChannel(outputStream);
+        }
+        return channel;
+    }
+
+    /**
+     * Writes the buffer into the output stream. Straight from its array, or through the write buffer for a direct buffer.
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        int limit = buffer.limit();
+        while (buffer.hasRemaining()) {
+            writeBuffer.clear();
+            buffer.limit(buffer.position() + Math.min(buffer.remaining(), writeBuffer.capacity()));
+            writeBuffer.put(buffer);
+            buffer.limit(limit);
+            outputStream.write(writeBuffer.array(), 0, writeBuffer.position());
+        }
+        writeBuffer.clear();
+    }
+
+    @Override
+    public String read() throws IOException {
+        ByteBuffer frame = readFrame();
+        return new String(frame.array(), frame.position(), frame.remaining(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next frame without copying it.
+     *
+     * @return -   the internal read buffer, positioned on the payload of the frame.
+     * Valid only until the next read.
+     * @throws EOFException -   thrown if the stream ended. Either cleanly between frames or in the middle of one.
+     * @throws IOException  -   thrown if the stream could not be read or the frame length is invalid.
+     */
+    public ByteBuffer readFrame() throws IOException {
+        onProcessed();
+        while (true) {
+            int header = readRawFrame();
+            if ((header & CONTROL_FLAG) != 0) {
+                onControl(readBuffer);
+                continue;
+            }
+            holdingFrame = true;
+            readStream = 0;
+            if ((header & STREAM_FLAG) != 0) {
+                readStream = readBuffer.getShort(readBuffer.position()) & MAX_STREAM;
+                readBuffer.position(readBuffer.position() + STREAM_ID_LENGTH);
+            }
+            ByteBuffer frame = (header & COMPRESSED_FLAG) != 0 ? inflate(readBuffer) : readBuffer;
+            if (journal != null) {
+                journal.append(MessageJournal.RECEIVED, readStream, System.nanoTime(), frame);
+            }
+            return frame;
+        }
+    }
+
+    /**
+     * Reads the next frame as it is on the wire.
+     *
+     * @return -   the header of the frame. The read buffer is positioned on the payload.
+     */
+    private int readRawFrame() throws IOException {
+        readBuffer.clear();
+        fill(HEADER_LENGTH);
+        int header = readBuffer.getInt(readPosition);
+        int length = header & ~FLAGS;
+        int idLength = (header & STREAM_FLAG) != 0 ? STREAM_ID_LENGTH : 0;
+        boolean control = (header & CONTROL_FLAG) != 0;
+        if (header < 0 || length < idLength || length - idLength > MAX_FRAME_LENGTH || (control && (header & FLAGS) != CONTROL_FLAG)) {
+            throw new IOException("Invalid frame length: [" + header + "]");
+        }
+        fill(HEADER_LENGTH + length);
+        int start = readPosition + HEADER_LENGTH;
+        readPosition = start + length;
+        readBuffer.limit(readPosition).position(start);
+        return header;
+    }
+
+    private ByteBuffer inflate(ByteBuffer frame) throws IOException {
+        if (compression == null || frame.remaining() < ORIGINAL_LENGTH) {
+            throw new IOException("Unexpected compressed frame. Compression was not negotiated.");
+        }
+        int originalLength = frame.getInt(frame.position());
+        if (originalLength < 0 || originalLength > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: [" + originalLength + "]");
+        }
+        return compression.inflate(frame.array(), frame.position() + ORIGINAL_LENGTH, frame.remaining() - ORIGINAL_LENGTH, originalLength);
+    }
+
+    /**
+     * Makes sure that the read buffer holds at least the required number of unread bytes.
+     * Reads as much as the stream offers, so that several small frames are read with one call.
+     */
+    private void fill(int required) throws IOException {
+        int available = readLimit - readPosition;
+        if (available >= required) {
+            return;
+        }
+        if (readBuffer.capacity() < required) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(required, readBuffer.capacity() * 2));
+            System.arraycopy(readBuffer.array(), readPosition, grown.array(), 0, available);
+            readBuffer = grown;
+            readPosition = 0;
+            readLimit = available;
+        } else if (readBuffer.capacity() - readPosition < required) {
+            System.arraycopy(readBuffer.array(), readPosition, readBuffer.array(), 0, available);
+            readPosition = 0;
+            readLimit = available;
+        }
+        while (readLimit - readPosition < required) {
+            if (granting) {
+                grantOwedCredits();
+            }
+            if (hasPending()) {
+                flush();
+            }
+            int read = inputStream.read(readBuffer.array(), readLimit, readBuffer.capacity() - readLimit);
+            if (read < 0) {
+                throw new EOFException(readLimit == readPosition ? "End of stream." : "End of stream in the middle of a frame.");
+            }
+            readLimit += read;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.mk.task.transport;
+
+import com.mk.task.metrics.PlayerMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of the frames of a {@link BinaryMessageHandler}, once negotiated with the other player.
+ * Responsibilities:
+ * 1. Deflates the frames at least as large as the threshold. A frame which would not get smaller is sent as it is.
+ * 2. Inflates the compressed frames into a reusable buffer.
+ * 3. Counts the bytes before and after, and the time spent, in the {@link PlayerMetrics}
+ * <p>
+ * Deflaters and inflaters hold native memory and are costly to create. So, they are taken from a pool when
+ * the compression is created and given back on {@link #close()}. Eg: the connections of the virtual thread receiver reuse them.
+ * The scratch buffers grow to the largest frame and are kept. So, nothing is allocated per message.
+ * NOTE: Not thread safe. One compression should be used by one handler.
+ */
+public class Compression implements Closeable {
+
+    public final static int DEFAULT_THRESHOLD = 1024;
+    public final static int LEVEL = Deflater.BEST_SPEED;
+
+    private final static Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private final static Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    private final int threshold;
+    private final PlayerMetrics metrics = PlayerMetrics.current();
+    private Deflater deflater;
+    private Inflater inflater;
+    private byte[] deflated = new byte[0];
+    private ByteBuffer inflated = ByteBuffer.allocate(0);
+
+    /**
+     * @param threshold -   frames smaller than this many bytes are not compressed.
+     */
+    public Compression(final int threshold) {
+        this.threshold = threshold;
+        Deflater pooledDeflater = DEFLATERS.poll();
+        Inflater pooledInflater = INFLATERS.poll();
+        this.deflater = pooledDeflater != null ? pooledDeflater : new Deflater(LEVEL, true);
+        this.inflater = pooledInflater != null ? pooledInflater : new Inflater(true);
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Deflates the bytes into the scratch buffer. {@link #deflated()}
+     *
+     * @param source
+     * @param offset
+     * @param length -   at least the threshold.
+     * @param limit  -   the compressed bytes should be fewer than this. Otherwise, compressing is not worth it.
+     * @return -   the number of compressed bytes, or -1 if there would be too many of them.
+     */
+    int deflate(byte[] source, int offset, int length, int limit) {
+        long startNanos = System.nanoTime();
+        if (deflated.length < limit) {
+            deflated = new byte[limit];
+        }
+        deflater.reset();
+        deflater.setInput(source, offset, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished() && size < limit) {
+            size += deflater.deflate(deflated, size, limit - size);
+        }
+        boolean smaller = deflater.finished() && size < limit;
+        metrics.compressed(length, smaller ? size : length, System.nanoTime() - startNanos);
+        return smaller ? size : -1;
+    }
+
+    /**
+     * @return -   the scratch buffer, holding the bytes compressed by the last {@link #deflate(byte[], int, int, int)}
+     */
+    byte[] deflated() {
+        return deflated;
+    }
+
+    /**
+     * @param source
+     * @param offset
+     * @param length         -   of the compressed bytes.
+     * @param originalLength -   of the bytes before compression.
+     * @return -   the scratch buffer, positioned on the inflated bytes. Valid only until the next call.
+     * @throws IOException -   thrown if the compressed bytes are corrupt.
+     */
+    ByteBuffer inflate(byte[] source, int offset, int length, int originalLength) throws IOException {
+        long startNanos = System.nanoTime();
+        if (inflated.capacity() < originalLength) {
+            inflated = ByteBuffer.allocate(originalLength);
+        }
+        inflater.reset();
+        inflater.setInput(source, offset, length);
+        int size = 0;
+        try {
+            while (size < originalLength && !inflater.finished()) {
+                int inflatedNow = inflater.inflate(inflated.array(), size, originalLength - size);
+                if (inflatedNow == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += inflatedNow;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed frame.", e);
+        }
+        if (size != originalLength) {
+            throw new IOException("Compressed frame inflated to [" + size + "] bytes instead of [" + originalLength + "]");
+        }
+        metrics.decompressed(System.nanoTime() - startNanos);
+        inflated.limit(size).position(0);
+        return inflated;
+    }
+
+    /**
+     * Gives the deflater and the inflater back to the pool. The compression should not be used anymore.
+     */
+    @Override
+    public void close() {
+        if (deflater != null) {
+            deflater.reset();
+            DEFLATERS.offer(deflater);
+            deflater = null;
+        }
+        if (inflater != null) {
+            inflater.reset();
+            INFLATERS.offer(inflater);
+            inflater = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "deflate level " + LEVEL + ", threshold: " + threshold + " bytes";
+    }
+
+}
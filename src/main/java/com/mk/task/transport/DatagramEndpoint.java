@@ -0,0 +1,219 @@
+package com.mk.task.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * One end of a UDP conversation between the two players, over a {@link DatagramChannel}.
+ * Responsibilities:
+ * 1. The receiver binds a port with {@link #bind(int, SocketOptions)}. The initiator connects to it with {@link #connect(InetSocketAddress, SocketOptions)}
+ * 2. Every datagram carries an explicit sequence number and a type, ahead of the payload. So, the initiator can tell
+ * lost, duplicated and reordered datagrams apart. There are no streams and no frames, as every datagram is a message.
+ * 3. Receives with a timeout, as a lost datagram would block the reader forever otherwise. {@link #receive(long)}
+ * 4. Echoes the last datagram received back to its sender. {@link #echo()}
+ * <p>
+ * Layout of a datagram: sequence (long), type (byte), payload.
+ * Both buffers are direct and allocated once, so the kernel copies straight into them and nothing is created per datagram.
+ * The channel is non blocking and waits on a {@link Selector} of its own, which is how the timeout is implemented.
+ * NOTE: Datagrams are kept within {@link #MAX_DATAGRAM_SIZE}, so that they are never fragmented on an Ethernet LAN.
+ * There are no retransmissions. Lost datagrams stay lost.
+ */
+public class DatagramEndpoint implements Closeable {
+
+    private final static Logger logger = Logger.getLogger(DatagramEndpoint.class.getName());
+
+    /**
+     * Ethernet MTU, less the IPv4 and UDP headers.
+     */
+    public final static int MAX_DATAGRAM_SIZE = 1472;
+    public final static int HEADER_LENGTH = Long.BYTES + 1;
+    public final static byte MESSAGE_TYPE = 0;
+    public final static byte POISON_PILL_TYPE = 1;
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final boolean connected;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+    private SocketAddress sender;
+    private long sequence;
+    private byte type;
+
+    private DatagramEndpoint(final DatagramChannel channel, final boolean connected) throws IOException {
+        this.channel = channel;
+        this.connected = connected;
+        this.selector = Selector.open();
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    /**
+     * For the receiver. Datagrams from any sender are read, and echoed back to it.
+     *
+     * @param port
+     * @param socketOptions -   only the buffer sizes apply to UDP.
+     * @return
+     * @throws IOException -   thrown if the port could not be bound.
+     */
+    public static DatagramEndpoint bind(final int port, final SocketOptions socketOptions) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        socketOptions.apply(channel);
+        channel.bind(new InetSocketAddress(port));
+        logger.info("Receiver datagram channel start on [" + port + "]. Waiting for initiator to send.");
+        return new DatagramEndpoint(channel, false);
+    }
+
+    /**
+     * For the initiator. A connected channel reads only what the receiver sends, and reports when nobody listens on its port.
+     *
+     * @param receiver
+     * @param socketOptions -   only the buffer sizes apply to UDP.
+     * @return
+     * @throws IOException -   thrown if the channel could not be opened.
+     */
+    public static DatagramEndpoint connect(final InetSocketAddress receiver, final SocketOptions socketOptions) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        socketOptions.apply(channel);
+        channel.connect(receiver);
+        logger.info("Datagram channel connected to [" + receiver + "].");
+        return new DatagramEndpoint(channel, true);
+    }
+
+    /**
+     * @param sequence
+     * @param type     -   eg: {@link #MESSAGE_TYPE}
+     * @param payload  -   should fit in {@link #MAX_DATAGRAM_SIZE} with the header.
+     * @return -   bytes of the datagram.
+     * @throws IOException -   thrown if the datagram could not be sent. Eg: nobody listens on the port of the receiver.
+     */
+    public int send(final long sequence, final byte type, final byte[] payload) throws IOException {
+        sendBuffer.clear();
+        sendBuffer.putLong(sequence).put(type).put(payload);
+        sendBuffer.flip();
+        return write(sendBuffer, sender);
+    }
+
+    /**
+     * Waits for the next datagram, however long it takes. Datagrams shorter than the header are skipped.
+     *
+     * @return -   always true. Its sequence and type can be got.
+     * @throws IOException -   thrown if the channel is closed, or nobody listens on the port of the receiver.
+     */
+    public boolean receive() throws IOException {
+        return receive(0, true);
+    }
+
+    /**
+     * Waits for the next datagram. Datagrams shorter than the header are skipped.
+     *
+     * @param timeoutNanos -   how long to wait. Zero or negative to only take a datagram which already came.
+     * @return -   false if no datagram came in time. Otherwise, its sequence and type can be got.
+     * @throws IOException -   thrown if the channel is closed, or nobody listens on the port of the receiver.
+     */
+    public boolean receive(final long timeoutNanos) throws IOException {
+        return receive(timeoutNanos, false);
+    }
+
+    private boolean receive(final long timeoutNanos, final boolean forever) throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            while (true) {
+                receiveBuffer.clear();
+                SocketAddress from = read();
+                if (from != null && receiveBuffer.flip().remaining() >= HEADER_LENGTH) {
+                    sender = from;
+                    sequence = receiveBuffer.getLong(0);
+                    type = receiveBuffer.get(Long.BYTES);
+                    return true;
+                }
+                if (from != null) {
+                    continue;
+                }
+                if (forever) {
+                    selector.select();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (ClosedSelectorException e) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Sends the last datagram received back to its sender, as it is.
+     *
+     * @return -   bytes of the datagram.
+     * @throws IOException -   thrown if the datagram could not be sent.
+     */
+    public int echo() throws IOException {
+        receiveBuffer.rewind();
+        return write(receiveBuffer, sender);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * @return -   eg: the port bound, when bound to 0.
+     */
+    public int getLocalPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    /**
+     * @return -   bytes of the last datagram received, header included.
+     */
+    public int getLength() {
+        return receiveBuffer.limit();
+    }
+
+    /**
+     * Also wakes up a thread waiting in {@link #receive(long)}, which then fails.
+     */
+    @Override
+    public void close() throws IOException {
+        selector.close();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "datagram channel " + (connected ? "to " + channel.socket().getRemoteSocketAddress() : "on " + channel.socket().getLocalSocketAddress());
+    }
+
+    private SocketAddress read() throws IOException {
+        if (connected) {
+            return channel.read(receiveBuffer) > 0 ? channel.getRemoteAddress() : null;
+        }
+        return channel.receive(receiveBuffer);
+    }
+
+    private int write(ByteBuffer buffer, SocketAddress to) throws IOException {
+        if (connected) {
+            return channel.write(buffer);
+        }
+        return channel.send(buffer, to);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.mk.task.transport;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Memory fences for the data shared with another thread or process through plain buffer reads and writes.
+ * Java 8 has no public API for them, so they are taken from {@code sun.misc.Unsafe}.
+ * It is looked up by name, so the build has no proprietary API warnings. The method handles are constants,
+ * so the JIT inlines them as the fence instructions, same as direct calls.
+ */
+final class Fences {
+
+    private final static MethodHandle LOAD_FENCE;
+    private final static MethodHandle STORE_FENCE;
+    private final static MethodHandle FULL_FENCE;
+
+    static {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType fence = MethodType.methodType(void.class);
+            LOAD_FENCE = lookup.findVirtual(unsafeClass, "loadFence", fence).bindTo(unsafe);
+            STORE_FENCE = lookup.findVirtual(unsafeClass, "storeFence", fence).bindTo(unsafe);
+            FULL_FENCE = lookup.findVirtual(unsafeClass, "fullFence", fence).bindTo(unsafe);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Fences() {
+    }
+
+    /**
+     * Loads before the fence are not reordered with loads and stores after it.
+     * Eg: read the published position, fence, then read the data.
+     */
+    static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stores before the fence are not reordered with loads and stores after it.
+     * Eg: write the data, fence, then publish the position.
+     */
+    static void storeFence() {
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Neither loads nor stores are reordered across the fence.
+     * Eg: publish a position, fence, then check whether the other side waits for it.
+     */
+    static void fullFence() {
+        try {
+            FULL_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.mk.task.transport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the messages written into the buffer of a {@link MessageHandler} are flushed into the socket.
+ * Each flush usually costs one system call and one TCP segment, so flushing less often trades latency for throughput.
+ * 1. {@link #immediate()}: after every message. Lowest latency.
+ * 2. {@link #everyMessages(int)}: after every N messages.
+ * 3. {@link #afterMicros(long)}: once the oldest pending message has waited for T microseconds.
+ * Checked on the next write. A writer which waits between its messages without reading checks it meanwhile,
+ * with {@link MessageHandler#flushIfDue()}. Otherwise, the bound holds only while the messages keep coming.
+ * 4. {@link #whenBufferFull()}: only when the buffer is full.
+ * <p>
+ * Whatever the policy, pending messages are always flushed before the handler blocks on reading.
+ * Otherwise, both players could wait for a message which is still in a buffer.
+ */
+public abstract class FlushPolicy {
+
+    public final static String IMMEDIATE = "immediate";
+    public final static String EVERY_MESSAGES = "every";
+    public final static String AFTER_MICROS = "micros";
+    public final static String WHEN_BUFFER_FULL = "full";
+
+    private final static FlushPolicy IMMEDIATE_POLICY = new FlushPolicy() {
+        @Override
+        public boolean shouldFlush(int pendingMessages, long pendingSinceNanos) {
+            return true;
+        }
+    };
+
+    private final static FlushPolicy WHEN_BUFFER_FULL_POLICY = new FlushPolicy() {
+        @Override
+        public boolean shouldFlush(int pendingMessages, long pendingSinceNanos) {
+            return false;
+        }
+    };
+
+    /**
+     * @param pendingMessages   -   number of messages written since the last flush, including the last one.
+     * @param pendingSinceNanos -   {@link System#nanoTime()} when the oldest of them was written.
+     * @return -   true if the buffer should be flushed now.
+     */
+    public abstract boolean shouldFlush(int pendingMessages, long pendingSinceNanos);
+
+    /**
+     * @param pendingSinceNanos -   {@link System#nanoTime()} when the oldest pending message was written.
+     * @return -   when the pending messages should be flushed, even if no message is written until then.
+     * {@link Long#MAX_VALUE} if only the next writes decide.
+     */
+    public long flushDueNanos(long pendingSinceNanos) {
+        return Long.MAX_VALUE;
+    }
+
+    public static FlushPolicy immediate() {
+        return IMMEDIATE_POLICY;
+    }
+
+    public static FlushPolicy everyMessages(final int messages) {
+        return new FlushPolicy() {
+            @Override
+            public boolean shouldFlush(int pendingMessages, long pendingSinceNanos) {
+                return pendingMessages >= messages;
+            }
+        };
+    }
+
+    public static FlushPolicy afterMicros(final long micros) {
+        final long nanos = TimeUnit.MICROSECONDS.toNanos(micros);
+        return new FlushPolicy() {
+            @Override
+            public boolean shouldFlush(int pendingMessages, long pendingSinceNanos) {
+                return System.nanoTime() - pendingSinceNanos >= nanos;
+            }
+
+            @Override
+            public long flushDueNanos(long pendingSinceNanos) {
+                return pendingSinceNanos + nanos;
+            }
+        };
+    }
+
+    public static FlushPolicy whenBufferFull() {
+        return WHEN_BUFFER_FULL_POLICY;
+    }
+
+    /**
+     * @param value -   one of: immediate, every:N, micros:T, full
+     * @return -   the policy described by the value.
+     * @throws IllegalArgumentException -   thrown if the value does not describe a policy.
+     */
+    public static FlushPolicy parse(final String value) {
+        int separator = value.indexOf(':');
+        String name = separator < 0 ? value : value.substring(0, separator);
+        if (IMMEDIATE.equals(name) && separator < 0) {
+            return immediate();
+        }
+        if (WHEN_BUFFER_FULL.equals(name) && separator < 0) {
+            return whenBufferFull();
+        }
+        if ((EVERY_MESSAGES.equals(name) || AFTER_MICROS.equals(name)) && separator > 0) {
+            int amount;
+            try {
+                amount = Integer.parseInt(value.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number in flush policy: [" + value + "]", e);
+            }
+            if (amount <= 0) {
+                throw new IllegalArgumentException("Should be positive in flush policy: [" + value + "]");
+            }
+            return EVERY_MESSAGES.equals(name) ? everyMessages(amount) : afterMicros(amount);
+        }
+        throw new IllegalArgumentException("Unknown flush policy: [" + value + "]");
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.mk.task.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * {@link Transport} for two players running as threads of the same JVM. Eg: for embedding or for benchmarks.
+ * Responsibilities:
+ * 1. Two bounded single producer / single consumer byte rings. One for each direction.
+ * 2. Writing copies the bytes into the ring and publishes the new producer position. No lock is taken.
+ * 3. A thread which has to wait, for bytes or for free space, waits as per the {@link WaitStrategy}.
+ * 4. Closing an end marks its rings as closed. The peer then reads the end of stream, or fails writing.
+ * <p>
+ * One end is created with the constructor. The other one is {@link #getPeer()}.
+ * Either codec of {@link MessageHandler} can sit on it, as it offers plain streams.
+ * NOTE: Each end should be used by one thread. The positions are {@link PaddedSequence}s, so that the two threads do not share a cache line.
+ */
+public class InProcessTransport implements Transport {
+
+    public final static int DEFAULT_RING_CAPACITY = 64 * 1024;
+
+    private final RingInputStream inputStream;
+    private final RingOutputStream outputStream;
+    private final InProcessTransport peer;
+
+    /**
+     * @param ringCapacity -   bytes in each ring. Should be a power of two.
+     * @param waitStrategy -   shared by both ends.
+     */
+    public InProcessTransport(final int ringCapacity, final WaitStrategy waitStrategy) {
+        if (ringCapacity <= 0 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity should be a power of two: [" + ringCapacity + "]");
+        }
+        Ring outbound = new Ring(ringCapacity, waitStrategy);
+        Ring inbound = new Ring(ringCapacity, waitStrategy);
+        this.inputStream = new RingInputStream(inbound);
+        this.outputStream = new RingOutputStream(outbound);
+        this.peer = new InProcessTransport(this, outbound, inbound);
+    }
+
+    private InProcessTransport(final InProcessTransport peer, final Ring inbound, final Ring outbound) {
+        this.inputStream = new RingInputStream(inbound);
+        this.outputStream = new RingOutputStream(outbound);
+        this.peer = peer;
+    }
+
+    /**
+     * @return -   the other end, which reads what this end writes and the other way round.
+     */
+    public InProcessTransport getPeer() {
+        return peer;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public void close() {
+        inputStream.close();
+        outputStream.close();
+    }
+
+    @Override
+    public String toString() {
+        return "in process rings";
+    }
+
+    @SuppressWarnings("unused")
+    private static class Ring {
+        private long p1, p2, p3, p4, p5, p6, p7;
+        private final byte[] data;
+        private final int mask;
+        private final WaitStrategy waitStrategy;
+        private final PaddedSequence producer = new PaddedSequence();
+        private final PaddedSequence consumer = new PaddedSequence();
+        private volatile boolean producerClosed;
+        private volatile boolean consumerClosed;
+
+        private Ring(int capacity, WaitStrategy waitStrategy) {
+            this.data = new byte[capacity];
+            this.mask = capacity - 1;
+            this.waitStrategy = waitStrategy;
+        }
+    }
+
+    /**
+     * Consumer side of a ring. Ready once there are bytes to read, or either side is closed.
+     * So, as with a socket, closing it ends a read blocked on another thread.
+     */
+    private static class RingInputStream extends InputStream implements WaitStrategy.Ready {
+
+        private final Ring ring;
+        private final byte[] single = new byte[1];
+        private long consumer;
+        private long producer;
+        private volatile boolean closed;
+
+        private RingInputStream(Ring ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public boolean isReady() {
+            return ring.producer.get() != consumer || ring.producerClosed || closed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (closed) {
+                throw new EOFException("Transport is closed.");
+            }
+            if (length == 0) {
+                return 0;
+            }
+            if (producer == consumer) {
+                producer = ring.producer.get();
+                if (producer == consumer) {
+                    ring.waitStrategy.await(this);
+                    producer = ring.producer.get();
+                    if (producer == consumer) {
+                        return -1;
+                    }
+                }
+            }
+            int index = (int) consumer & ring.mask;
+            int chunk = (int) Math.min(Math.min(length, producer - consumer), ring.data.length - index);
+            System.arraycopy(ring.data, index, bytes, offset, chunk);
+            consumer += chunk;
+            ring.consumer.lazySet(consumer);
+            ring.waitStrategy.signal();
+            return chunk;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, ring.producer.get() - consumer);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                ring.consumerClosed = true;
+                ring.waitStrategy.signal();
+            }
+        }
+    }
+
+    /**
+     * Producer side of a ring. Ready once there is free space, or the consumer is closed.
+     * Bytes are published as soon as they are written, so there is nothing to flush.
+     */
+    private static class RingOutputStream extends OutputStream implements WaitStrategy.Ready {
+
+        private final Ring ring;
+        private final byte[] single = new byte[1];
+        private long producer;
+        private long consumer;
+        private boolean closed;
+
+        private RingOutputStream(Ring ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public boolean isReady() {
+            return producer - ring.consumer.get() < ring.data.length || ring.consumerClosed;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Transport is closed.");
+            }
+            while (length > 0) {
+                long free = ring.data.length - (producer - consumer);
+                if (free == 0) {
+                    consumer = ring.consumer.get();
+                    if (producer - consumer == ring.data.length) {
+                        ring.waitStrategy.await(this);
+                        if (ring.consumerClosed) {
+                            throw new IOException("Peer closed the transport.");
+                        }
+                        consumer = ring.consumer.get();
+                    }
+                    continue;
+                }
+                int index = (int) producer & ring.mask;
+                int chunk = (int) Math.min(Math.min(length, free), ring.data.length - index);
+                System.arraycopy(bytes, offset, ring.data, index, chunk);
+                producer += chunk;
+                offset += chunk;
+                length -= chunk;
+                ring.producer.lazySet(producer);
+                ring.waitStrategy.signal();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                ring.producerClosed = true;
+                ring.waitStrategy.signal();
+            }
+        }
+    }
+
+}
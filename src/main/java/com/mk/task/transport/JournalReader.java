@@ -0,0 +1,119 @@
+package com.mk.task.transport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads back the records of a {@link MessageJournal}, in the order they were appended.
+ * Responsibilities:
+ * 1. Maps the segments of the journal one after the other, read only.
+ * 2. Moves to the next segment where a segment says that the records go on there.
+ * 3. Stops where the records end, or where the next segment is missing.
+ * <p>
+ * The payload of a record is a view on the mapped segment. So, nothing is copied, and nothing is created per record.
+ * NOTE: For a journal which is closed. The records appended meanwhile may not be seen.
+ */
+public class JournalReader implements Closeable {
+
+    private final File directory;
+    private MappedByteBuffer segment;
+    private ByteBuffer payload;
+    private int segmentIndex;
+    private byte direction;
+    private int stream;
+    private long nanos;
+
+    /**
+     * @param directory -   of the journal.
+     * @throws IOException -   thrown if the journal has no first segment, or it could not be mapped.
+     */
+    public JournalReader(final File directory) throws IOException {
+        this.directory = directory;
+        File first = MessageJournal.segmentFile(directory, 0);
+        if (!first.isFile()) {
+            throw new IOException("No message journal at [" + directory + "]");
+        }
+        map(first);
+    }
+
+    /**
+     * @return -   false if there are no more records. Otherwise, the record can be got.
+     * @throws IOException -   thrown if the next segment could not be mapped, or a record is broken.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment.remaining() < Integer.BYTES) {
+                return false;
+            }
+            int lengthPlusOne = segment.getInt();
+            if (lengthPlusOne == 0) {
+                segment.position(segment.position() - Integer.BYTES);
+                return false;
+            }
+            if (lengthPlusOne == MessageJournal.END_OF_SEGMENT) {
+                File file = MessageJournal.segmentFile(directory, segmentIndex + 1);
+                if (!file.isFile()) {
+                    return false;
+                }
+                segmentIndex++;
+                map(file);
+                continue;
+            }
+            int length = lengthPlusOne - 1;
+            if (length < 0 || segment.remaining() < MessageJournal.RECORD_HEADER_LENGTH - Integer.BYTES + length) {
+                throw new IOException("Broken record in the segment [" + segmentIndex + "] of the message journal at [" + directory + "]");
+            }
+            direction = segment.get();
+            stream = segment.getShort() & BinaryMessageHandler.MAX_STREAM;
+            nanos = segment.getLong();
+            int start = segment.position();
+            payload.limit(start + length).position(start);
+            segment.position(start + length);
+            return true;
+        }
+    }
+
+    /**
+     * @return -   {@link MessageJournal#SENT} or {@link MessageJournal#RECEIVED}
+     */
+    public byte getDirection() {
+        return direction;
+    }
+
+    public int getStream() {
+        return stream;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return -   view on the payload of the record. Valid only until the next record.
+     */
+    public ByteBuffer getPayload() {
+        return payload;
+    }
+
+    /**
+     * Nothing to release. The segments are unmapped only when garbage collected.
+     */
+    @Override
+    public void close() {
+        segment = null;
+        payload = null;
+    }
+
+    private void map(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        }
+        payload = segment.duplicate();
+    }
+
+}
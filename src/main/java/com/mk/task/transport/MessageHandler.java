@@ -1,34 +1,93 @@
 package com.mk.task.transport;
 
 import java.io.IOException;
-import java.io.Writer;
-import java.util.Scanner;
 
 /**
+ * Base of the codecs which write and read the messages of a player.
  * Responsibilities:
- * 1. Write the messages into the output write
- * 2. Read messages from input scanner.
+ * 1. Keep track of the messages written into the buffer and not flushed yet.
+ * 2. Flush them as decided by the {@link FlushPolicy}. Either on a write, or when due without one. {@link #flushIfDue()}
+ * <p>
+ * The framing is up to the codec. Eg: new lines with {@link TextMessageHandler}, a length prefix with {@link BinaryMessageHandler}
+ * A codec counts every message it buffers with {@link #addPending()}, and always flushes before blocking on reading.
+ * Optionally, every message sent and received is recorded into a {@link MessageJournal}. {@link #setJournal(MessageJournal)}
  */
-public class MessageHandler {
+public abstract class MessageHandler {
 
-    private final Writer writer;
-    private final Scanner readScanner;
+    private final FlushPolicy flushPolicy;
+    private int pendingMessages;
+    private long pendingSinceNanos;
+    protected MessageJournal journal;
 
-    public MessageHandler(final Writer writer, final Scanner readScanner) {
-        this.writer = writer;
-        this.readScanner = readScanner;
+    protected MessageHandler(final FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
     }
 
-    public void write(final String message) throws IOException {
-        writer.write(message + "\n");
-        writer.flush();
+    /**
+     * Records the messages from now on. Eg: for a replay. {@link com.mk.task.player.ReplayInitiator}
+     *
+     * @param journal -   null to stop recording.
+     */
+    public void setJournal(final MessageJournal journal) {
+        this.journal = journal;
     }
 
-    public String read(){
-        if(readScanner.hasNextLine()) {
-            return readScanner.nextLine();
+    public abstract void write(final String message) throws IOException;
+
+    /**
+     * @return -   the next message.
+     * @throws IOException -   thrown if the message could not be read. Some codecs also use it to signal the end of stream.
+     */
+    public abstract String read() throws IOException;
+
+    /**
+     * Flushes the messages which are still in the buffer.
+     *
+     * @throws IOException -   thrown if the messages could not be written.
+     */
+    public void flush() throws IOException {
+        pendingMessages = 0;
+        flushBuffer();
+    }
+
+    /**
+     * Flushes the pending messages if the {@link FlushPolicy} says so, without a new message.
+     * For a writer which waits between its messages without reading. Eg: a paced load.
+     *
+     * @throws IOException -   thrown if the messages could not be written.
+     */
+    public void flushIfDue() throws IOException {
+        if (pendingMessages > 0 && flushPolicy.shouldFlush(pendingMessages, pendingSinceNanos)) {
+            flush();
+        }
+    }
+
+    /**
+     * @return -   {@link System#nanoTime()} at which {@link #flushIfDue()} flushes the pending messages.
+     * {@link Long#MAX_VALUE} if there are none, or if only the next writes flush them.
+     */
+    public long getFlushDueNanos() {
+        return pendingMessages == 0 ? Long.MAX_VALUE : flushPolicy.flushDueNanos(pendingSinceNanos);
+    }
+
+    /**
+     * Counts one more message in the buffer. The codec should call {@link #flushIfDue()} once done with it.
+     */
+    protected final void addPending() {
+        if (pendingMessages++ == 0) {
+            pendingSinceNanos = System.nanoTime();
         }
-        return "Unknown";
     }
 
+    protected final boolean hasPending() {
+        return pendingMessages > 0;
+    }
+
+    /**
+     * Writes the buffer into the stream underneath. The pending messages are already cleared.
+     *
+     * @throws IOException -   thrown if the messages could not be written.
+     */
+    protected abstract void flushBuffer() throws IOException;
+
 }
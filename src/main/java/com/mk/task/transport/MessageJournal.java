@@ -0,0 +1,324 @@
+package com.mk.task.transport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records every message which a {@link MessageHandler} sends and receives, into memory mapped files.
+ * Responsibilities:
+ * 1. Appends a record per message: its direction, stream, a {@link System#nanoTime()} timestamp and its payload.
+ * 2. Splits the journal into segments of a fixed size. Eg: journal-00000.dat, journal-00001.dat ...
+ * 3. Maps the next segment ahead of time on a thread of its own, and touches its pages, so that they are resident.
+ * 4. Never blocks the player. A record which finds no segment ready is dropped, and counted. {@link #getDropped()}
+ * <p>
+ * Layout of a record: length + 1 (int), direction (byte), stream (short), nanos (long), payload.
+ * A length of 0 is where the records end. A length of -1 means the records go on in the next segment.
+ * The payload is copied straight into the mapped segment. Strings are encoded as UTF-8 there too. So, nothing is created
+ * per message, and no system call is made. The operating system writes the pages back to the file in the background.
+ * A region of a file is copied from a mapping of that file, which is kept for the next regions of the same file.
+ * So, only the first region of a file costs a system call. Eg: a file payload sent again and again.
+ * For reading the records back: {@link JournalReader}
+ * NOTE: Not thread safe. One journal should be used by one handler. The segments are unmapped only when garbage collected.
+ */
+public class MessageJournal implements Closeable {
+
+    private final static Logger logger = Logger.getLogger(MessageJournal.class.getName());
+
+    public final static int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public final static int RECORD_HEADER_LENGTH = Integer.BYTES + 1 + Short.BYTES + Long.BYTES;
+    public final static byte SENT = 0;
+    public final static byte RECEIVED = 1;
+
+    final static int END_OF_SEGMENT = -1;
+    final static String SEGMENT_PREFIX = "journal-";
+    final static String SEGMENT_SUFFIX = ".dat";
+
+    private final static int PAGE_SIZE = 4096;
+
+    private final File directory;
+    private final int segmentSize;
+    private final Thread roller;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private volatile MappedByteBuffer nextSegment;
+    private FileChannel sourceFile;
+    private MappedByteBuffer sourceMapping;
+    private long sourcePosition;
+    private volatile boolean closed;
+    private long records;
+    private long dropped;
+
+    private MessageJournal(final File directory, final int segmentSize, final MappedByteBuffer first) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segment = first;
+        this.roller = new Thread(this::roll, "journal-roller");
+        roller.setDaemon(true);
+        roller.start();
+    }
+
+    /**
+     * Creates the journal in the directory. The segments of any previous journal in it are replaced.
+     *
+     * @param directory
+     * @param segmentSize -   bytes of every segment. A message which does not fit in one is dropped.
+     * @return -   journal with its first segment mapped. The next one is mapped in the background.
+     * @throws IOException -   thrown if the directory or the first segment could not be created.
+     */
+    public static MessageJournal create(final File directory, final int segmentSize) throws IOException {
+        if (segmentSize <= RECORD_HEADER_LENGTH + Integer.BYTES) {
+            throw new IllegalArgumentException("Segment size should be more than " + (RECORD_HEADER_LENGTH + Integer.BYTES) + ": [" + segmentSize + "]");
+        }
+        Files.createDirectories(directory.toPath());
+        File[] previous = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (previous != null) {
+            for (File file : previous) {
+                Files.delete(file.toPath());
+            }
+        }
+        MessageJournal journal = new MessageJournal(directory, segmentSize, map(segmentFile(directory, 0), segmentSize));
+        logger.info("Message journal created at [" + directory + "] with segments of [" + segmentSize + "] bytes.");
+        return journal;
+    }
+
+    /**
+     * @param direction -   {@link #SENT} or {@link #RECEIVED}
+     * @param stream    -   0 for the whole connection.
+     * @param nanos     -   eg: {@link System#nanoTime()}
+     * @param payload   -   bytes between the position and the limit. The buffer is not changed.
+     */
+    public void append(final byte direction, final int stream, final long nanos, final ByteBuffer payload) {
+        int length = payload.remaining();
+        if (startRecord(direction, stream, nanos, length)) {
+            int position = payload.position();
+            segment.put(payload);
+            payload.position(position);
+        }
+    }
+
+    /**
+     * @param payload -   array holding the payload.
+     * @param offset  -   of the payload in the array.
+     * @param length  -   of the payload.
+     */
+    public void append(final byte direction, final int stream, final long nanos, final byte[] payload, final int offset, final int length) {
+        if (startRecord(direction, stream, nanos, length)) {
+            segment.put(payload, offset, length);
+        }
+    }
+
+    /**
+     * One record for a payload made of two parts. Eg: a bulk write with its suffix. The buffers are not changed.
+     */
+    public void append(final byte direction, final int stream, final long nanos, final ByteBuffer payload, final ByteBuffer suffix) {
+        if (startRecord(direction, stream, nanos, payload.remaining() + suffix.remaining())) {
+            int payloadPosition = payload.position();
+            int suffixPosition = suffix.position();
+            segment.put(payload).put(suffix);
+            payload.position(payloadPosition);
+            suffix.position(suffixPosition);
+        }
+    }
+
+    /**
+     * A region of a file. Eg: a file transfer. Copied from the mapping of the file straight into the segment.
+     * The file is mapped from the position to its end, only if the region is not in the mapping of the previous append.
+     *
+     * @throws IOException -   thrown if the region is not in the file, or the file could not be mapped.
+     */
+    public void append(final byte direction, final int stream, final long nanos, final FileChannel file,
+                       final long position, final int length) throws IOException {
+        ByteBuffer source = length == 0 ? null : sourceRegion(file, position, length);
+        if (startRecord(direction, stream, nanos, length) && source != null) {
+            segment.put(source);
+        }
+    }
+
+    /**
+     * Text codec. The characters are encoded as UTF-8, straight into the segment.
+     */
+    public void append(final byte direction, final int stream, final long nanos, final CharSequence message) {
+        if (startRecord(direction, stream, nanos, utf8Length(message))) {
+            putUtf8(message);
+        }
+    }
+
+    /**
+     * @return -   records appended so far.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return -   records which could not be appended, as no segment was ready or they do not fit in one.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Stops the mapping of segments, and deletes the one mapped ahead which was never used.
+     * The written pages are forced to the file, so that the journal can be replayed right after.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        sourceFile = null;
+        sourceMapping = null;
+        LockSupport.unpark(roller);
+        try {
+            roller.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.force();
+        if (nextSegment != null) {
+            nextSegment = null;
+            Files.deleteIfExists(segmentFile(directory, segmentIndex + 1).toPath());
+        }
+        logger.info(String.format(Locale.ROOT, "Message journal at [%s] closed with [%d] records in [%d] segments, dropped: [%d]",
+                directory, records, segmentIndex + 1, dropped));
+    }
+
+    @Override
+    public String toString() {
+        return "message journal " + directory;
+    }
+
+    /**
+     * Writes the record header, moving to the next segment if the record does not fit in this one.
+     * The end of the records is always followed by room for an int, so that the marker of the end can be written.
+     *
+     * @return -   false if the record is dropped.
+     */
+    private boolean startRecord(byte direction, int stream, long nanos, int length) {
+        int required = RECORD_HEADER_LENGTH + length + Integer.BYTES;
+        if (closed || required > segmentSize) {
+            dropped++;
+            return false;
+        }
+        if (segment.remaining() < required) {
+            MappedByteBuffer next = nextSegment;
+            if (next == null) {
+                dropped++;
+                return false;
+            }
+            segment.putInt(segment.position(), END_OF_SEGMENT);
+            segment = next;
+            segmentIndex++;
+            nextSegment = null;
+            LockSupport.unpark(roller);
+        }
+        segment.putInt(length + 1).put(direction).putShort((short) stream).putLong(nanos);
+        records++;
+        return true;
+    }
+
+    /**
+     * @return -   the mapping of the file, with the region between its position and its limit.
+     */
+    private ByteBuffer sourceRegion(FileChannel file, long position, int length) throws IOException {
+        if (file != sourceFile || position < sourcePosition || position + length > sourcePosition + sourceMapping.capacity()) {
+            long size = file.size();
+            if (position < 0 || position + length > size) {
+                throw new IOException("Region is not in the file: position: [" + position + "], length: [" + length + "]");
+            }
+            sourceMapping = file.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Integer.MAX_VALUE));
+            sourceFile = file;
+            sourcePosition = position;
+        }
+        int start = (int) (position - sourcePosition);
+        sourceMapping.limit(start + length).position(start);
+        return sourceMapping;
+    }
+
+    /**
+     * Keeps the next segment mapped, until the journal is closed.
+     */
+    private void roll() {
+        while (!closed) {
+            if (nextSegment == null) {
+                File file = segmentFile(directory, segmentIndex + 1);
+                try {
+                    MappedByteBuffer next = map(file, segmentSize);
+                    for (int page = 0; page < segmentSize; page += PAGE_SIZE) {
+                        next.put(page, (byte) 0);
+                    }
+                    nextSegment = next;
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Exception while mapping the journal segment [" + file + "]. Records will be dropped once this one is full.", e);
+                    return;
+                }
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(size);
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    static File segmentFile(File directory, int index) {
+        return new File(directory, String.format(Locale.ROOT, "%s%05d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static int utf8Length(CharSequence message) {
+        int length = 0;
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < message.length() && Character.isLowSurrogate(message.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Same bytes as {@link String#getBytes(java.nio.charset.Charset)} with UTF-8. A lone surrogate becomes '?', as there.
+     */
+    private void putUtf8(CharSequence message) {
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c < 0x80) {
+                segment.put((byte) c);
+            } else if (c < 0x800) {
+                segment.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < message.length() && Character.isLowSurrogate(message.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, message.charAt(++i));
+                segment.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                segment.put((byte) '?');
+            } else {
+                segment.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.mk.task.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Position written by one thread and read by the others. Eg: the producer and the consumer of a ring, or the stages of a pipeline.
+ * The value is followed by 7 longs of padding, so that the objects allocated after it are not on its cache line.
+ * NOTE: Only the trailing side is padded. The value is the first field, so only the object header is before it,
+ * and the end of the object allocated just before can still share its line.
+ */
+@SuppressWarnings("unused")
+public class PaddedSequence extends AtomicLong {
+    private long p1, p2, p3, p4, p5, p6, p7;
+}
@@ -0,0 +1,83 @@
+package com.mk.task.transport;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the sequence number which the receiver appends to every message.
+ * Works on primitives and the given buffers only, so that no objects are created per message.
+ */
+public final class Sequences {
+
+    public final static int MAX_DIGITS = 10;
+
+    private Sequences() {
+    }
+
+    /**
+     * Puts the decimal digits of the sequence at the position of the buffer.
+     *
+     * @param buffer
+     * @param sequence -   should not be negative.
+     */
+    public static void putDecimal(final ByteBuffer buffer, final int sequence) {
+        if (sequence < 0) {
+            throw new IllegalArgumentException("Sequence should not be negative: [" + sequence + "]");
+        }
+        int digits = 1;
+        for (int remaining = sequence / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        int position = buffer.position();
+        int value = sequence;
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(position + digits);
+    }
+
+    /**
+     * @param buffer -   read between its position and limit. Position is not changed.
+     * @return -   the number formed by the trailing digits, or -1 if there are none or too many of them.
+     */
+    public static int parseTrailing(final ByteBuffer buffer) {
+        int start = buffer.limit();
+        while (start > buffer.position() && isDigit(buffer.get(start - 1))) {
+            start--;
+        }
+        int digits = buffer.limit() - start;
+        if (digits == 0 || digits > MAX_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < buffer.limit(); i++) {
+            value = value * 10 + (buffer.get(i) - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    /**
+     * @param message
+     * @return -   the number formed by the trailing digits, or -1 if there are none or too many of them.
+     */
+    public static int parseTrailing(final CharSequence message) {
+        int start = message.length();
+        while (start > 0 && isDigit(message.charAt(start - 1))) {
+            start--;
+        }
+        int digits = message.length() - start;
+        if (digits == 0 || digits > MAX_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < message.length(); i++) {
+            value = value * 10 + (message.charAt(i) - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+}
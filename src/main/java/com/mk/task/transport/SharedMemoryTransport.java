@@ -0,0 +1,394 @@
+package com.mk.task.transport;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * {@link Transport} for two players running on the same host, through a memory mapped file.
+ * Eg: a file in /dev/shm, so that it is never written to a disk.
+ * Responsibilities:
+ * 1. The receiver creates the file with {@link #create(File, int)}. The initiator maps the same file with {@link #open(File, long)}.
+ * 2. The file holds two single producer / single consumer rings. One for each direction.
+ * 3. Writing copies the bytes into the ring and publishes the new producer position.
+ * Reading spins until the producer position moves, so that no system call is made on the hot path.
+ * After a while, it yields and then parks, so that a quiet peer does not keep a core busy.
+ * 4. Closing marks the rings of this side as closed. The peer then reads the end of stream, or fails writing.
+ * 5. Each side holds a lock on its own byte of the file, which the OS releases when the process dies.
+ * So, a parked side which can take the lock of an attached peer knows that it is gone, and fails instead of waiting forever.
+ * <p>
+ * Layout of the file. Positions and flags are on separate cache lines, so that the two sides do not share a line:
+ * header line: magic, ring capacity, initiator attached flag.
+ * per ring: producer position line, consumer position line, closed flags line, data.
+ * NOTE: The magic is written last by the receiver, so the initiator starts only on a fully initialized file.
+ * A file left behind by a receiver which did not close cannot be told apart from a live one.
+ */
+public class SharedMemoryTransport implements Transport {
+
+    private final static Logger logger = Logger.getLogger(SharedMemoryTransport.class.getName());
+
+    public final static int DEFAULT_RING_CAPACITY = 1 << 20;
+    public final static int MAX_RING_CAPACITY = 1 << 29;
+
+    private final static int MAGIC = 0x54534b31;
+    private final static int LINE = 128;
+    private final static int MAGIC_OFFSET = 0;
+    private final static int CAPACITY_OFFSET = 8;
+    final static int ATTACHED_OFFSET = 16;
+    private final static int RINGS_OFFSET = LINE;
+    private final static int PRODUCER_OFFSET = 0;
+    private final static int CONSUMER_OFFSET = LINE;
+    private final static int PRODUCER_CLOSED_OFFSET = 2 * LINE;
+    private final static int CONSUMER_CLOSED_OFFSET = 2 * LINE + 8;
+    private final static int DATA_OFFSET = 3 * LINE;
+
+    private final static int RECEIVER_LOCK = 0;
+    private final static int INITIATOR_LOCK = 1;
+
+    private final static int BUSY_SPINS = 10_000;
+    private final static int YIELDS = 1_000;
+    private final static long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private final static int LIVENESS_CHECK_PARKS = 1_000;
+    private final static long OPEN_POLL_MILLIS = 10;
+
+    private final File file;
+    private final boolean owner;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final RingInputStream inputStream;
+    private final RingOutputStream outputStream;
+
+    private SharedMemoryTransport(final File file, final boolean owner, final FileChannel channel, final MappedByteBuffer buffer,
+                                  final int capacity, final int inboundRing, final int outboundRing) {
+        this.file = file;
+        this.owner = owner;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.inputStream = new RingInputStream(ringBase(inboundRing, capacity), capacity);
+        this.outputStream = new RingOutputStream(ringBase(outboundRing, capacity), capacity);
+    }
+
+    /**
+     * Creates the file for the receiver side. Any previous file is replaced.
+     *
+     * @param file
+     * @param ringCapacity -   bytes in each ring. Should be a power of two.
+     * @return -   transport which reads from the initiator ring and writes into the receiver ring.
+     * @throws IOException -   thrown if the file could not be created or mapped.
+     */
+    public static SharedMemoryTransport create(final File file, final int ringCapacity) throws IOException {
+        if (ringCapacity <= 0 || ringCapacity > MAX_RING_CAPACITY || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity should be a power of two up to " + MAX_RING_CAPACITY + ": [" + ringCapacity + "]");
+        }
+        Files.deleteIfExists(file.toPath());
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        MappedByteBuffer buffer;
+        try {
+            int size = ringBase(2, ringCapacity);
+            randomAccessFile.setLength(size);
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            lock(randomAccessFile.getChannel(), RECEIVER_LOCK, file);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        buffer.putInt(CAPACITY_OFFSET, ringCapacity);
+        Fences.storeFence();
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        logger.info("Shared memory created at [" + file + "] with rings of [" + ringCapacity + "] bytes.");
+        return new SharedMemoryTransport(file, true, randomAccessFile.getChannel(), buffer, ringCapacity, 0, 1);
+    }
+
+    /**
+     * Maps the file created by the receiver. Waits for it to be created.
+     *
+     * @param file
+     * @param timeoutMillis -   how long to wait for the receiver.
+     * @return -   transport which writes into the initiator ring and reads from the receiver ring.
+     * @throws IOException -   thrown if the file is not ready in time or could not be mapped.
+     */
+    public static SharedMemoryTransport open(final File file, final long timeoutMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (file.length() < RINGS_OFFSET) {
+            waitUntil(deadline, file);
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        int capacity;
+        MappedByteBuffer buffer;
+        try {
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+            while (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                waitUntil(deadline, file);
+            }
+            Fences.loadFence();
+            capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (capacity <= 0 || capacity > MAX_RING_CAPACITY || buffer.capacity() < ringBase(2, capacity)) {
+                throw new IOException("Shared memory at [" + file + "] is smaller than its rings.");
+            }
+            lock(randomAccessFile.getChannel(), INITIATOR_LOCK, file);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+        Fences.storeFence();
+        buffer.putInt(ATTACHED_OFFSET, 1);
+        logger.info("Shared memory opened at [" + file + "] with rings of [" + capacity + "] bytes.");
+        return new SharedMemoryTransport(file, false, randomAccessFile.getChannel(), buffer, capacity, 1, 0);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Marks both rings of this side as closed and releases the lock of this side. The receiver also deletes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+        outputStream.close();
+        channel.close();
+        if (owner) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "shared memory " + file;
+    }
+
+    private static int ringBase(int ring, int capacity) {
+        return RINGS_OFFSET + ring * (DATA_OFFSET + capacity);
+    }
+
+    private static void waitUntil(long deadline, File file) throws IOException {
+        if (System.currentTimeMillis() > deadline) {
+            throw new IOException("Shared memory at [" + file + "] is not ready. Is the receiver started?");
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(OPEN_POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the shared memory.", e);
+        }
+    }
+
+    private static void lock(FileChannel channel, int position, File file) throws IOException {
+        if (channel.tryLock(position, 1, false) == null) {
+            throw new IOException("Shared memory at [" + file + "] is already in use.");
+        }
+    }
+
+    /**
+     * Busy spins first, as the peer usually answers within microseconds. Then gives way to the other threads.
+     * Then parks, and checks every {@link #LIVENESS_CHECK_PARKS} parks whether the peer is still there.
+     *
+     * @throws IOException -   thrown if the peer is gone without closing, or the thread is interrupted.
+     */
+    private void idle(int idleCount) throws IOException {
+        if (idleCount < BUSY_SPINS) {
+            return;
+        }
+        if (idleCount < BUSY_SPINS + YIELDS) {
+            Thread.yield();
+            return;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting for the peer of the shared memory.");
+        }
+        if ((idleCount - BUSY_SPINS - YIELDS) % LIVENESS_CHECK_PARKS == LIVENESS_CHECK_PARKS - 1 && !isPeerAlive()) {
+            throw new IOException("Peer of the shared memory at [" + file + "] is gone without closing it.");
+        }
+    }
+
+    /**
+     * The initiator is not there yet until it attaches. A lock held in this process is one of a peer in this process.
+     */
+    private boolean isPeerAlive() throws IOException {
+        if (owner && buffer.getInt(ATTACHED_OFFSET) == 0) {
+            return true;
+        }
+        FileLock peerLock;
+        try {
+            peerLock = channel.tryLock(owner ? INITIATOR_LOCK : RECEIVER_LOCK, 1, false);
+        } catch (OverlappingFileLockException e) {
+            return true;
+        }
+        if (peerLock == null) {
+            return true;
+        }
+        peerLock.release();
+        return false;
+    }
+
+    private ByteBuffer data(int base, int capacity) {
+        ByteBuffer data = buffer.duplicate();
+        data.position(base + DATA_OFFSET).limit(base + DATA_OFFSET + capacity);
+        return data.slice();
+    }
+
+    private long getLong(int offset) {
+        long value = buffer.getLong(offset);
+        Fences.loadFence();
+        return value;
+    }
+
+    private void putLong(int offset, long value) {
+        Fences.storeFence();
+        buffer.putLong(offset, value);
+    }
+
+    /**
+     * Consumer side of a ring.
+     */
+    private class RingInputStream extends InputStream {
+
+        private final int base;
+        private final int capacity;
+        private final ByteBuffer data;
+        private final byte[] single = new byte[1];
+        private long consumer;
+        private long producer;
+        private boolean closed;
+
+        private RingInputStream(int base, int capacity) {
+            this.base = base;
+            this.capacity = capacity;
+            this.data = data(base, capacity);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (closed) {
+                throw new EOFException("Shared memory is closed.");
+            }
+            if (length == 0) {
+                return 0;
+            }
+            int idleCount = 0;
+            while (producer == consumer) {
+                producer = getLong(base + PRODUCER_OFFSET);
+                if (producer == consumer) {
+                    if (getLong(base + PRODUCER_CLOSED_OFFSET) != 0) {
+                        producer = getLong(base + PRODUCER_OFFSET);
+                        if (producer == consumer) {
+                            return -1;
+                        }
+                    }
+                    idle(idleCount++);
+                }
+            }
+            int index = (int) consumer & (capacity - 1);
+            int chunk = (int) Math.min(Math.min(length, producer - consumer), capacity - index);
+            data.position(index);
+            data.get(bytes, offset, chunk);
+            consumer += chunk;
+            putLong(base + CONSUMER_OFFSET, consumer);
+            return chunk;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, getLong(base + PRODUCER_OFFSET) - consumer);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                putLong(base + CONSUMER_CLOSED_OFFSET, 1);
+            }
+        }
+    }
+
+    /**
+     * Producer side of a ring. Bytes are published as soon as they are written, so there is nothing to flush.
+     */
+    private class RingOutputStream extends OutputStream {
+
+        private final int base;
+        private final int capacity;
+        private final ByteBuffer data;
+        private final byte[] single = new byte[1];
+        private long producer;
+        private long consumer;
+        private boolean closed;
+
+        private RingOutputStream(int base, int capacity) {
+            this.base = base;
+            this.capacity = capacity;
+            this.data = data(base, capacity);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Shared memory is closed.");
+            }
+            int idleCount = 0;
+            while (length > 0) {
+                long free = capacity - (producer - consumer);
+                if (free == 0) {
+                    consumer = getLong(base + CONSUMER_OFFSET);
+                    if (producer - consumer == capacity) {
+                        if (getLong(base + CONSUMER_CLOSED_OFFSET) != 0) {
+                            throw new IOException("Peer closed the shared memory.");
+                        }
+                        idle(idleCount++);
+                    }
+                    continue;
+                }
+                idleCount = 0;
+                int index = (int) producer & (capacity - 1);
+                int chunk = (int) Math.min(Math.min(length, free), capacity - index);
+                data.position(index);
+                data.put(bytes, offset, chunk);
+                producer += chunk;
+                offset += chunk;
+                length -= chunk;
+                putLong(base + PRODUCER_OFFSET, producer);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                putLong(base + PRODUCER_CLOSED_OFFSET, 1);
+            }
+        }
+    }
+
+}
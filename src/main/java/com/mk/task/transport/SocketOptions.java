@@ -0,0 +1,84 @@
+package com.mk.task.transport;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Socket options to tune a deployment for latency or for throughput.
+ * Any option left as null keeps the default of the operating system.
+ */
+public class SocketOptions {
+
+    private Boolean tcpNoDelay;
+    private Integer sendBufferSize;
+    private Integer receiveBufferSize;
+    private Boolean keepAlive;
+
+    public void setTcpNoDelay(Boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public void setSendBufferSize(Integer sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public void setReceiveBufferSize(Integer receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public void setKeepAlive(Boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public Integer getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Applies the options which are set.
+     * NOTE: Receive buffers above 64 KB should be set before connecting, so that TCP can scale the window.
+     *
+     * @param socket
+     * @throws SocketException -   thrown if an option could not be set.
+     */
+    public void apply(final Socket socket) throws SocketException {
+        if (tcpNoDelay != null) {
+            socket.setTcpNoDelay(tcpNoDelay);
+        }
+        if (sendBufferSize != null) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize != null) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        if (keepAlive != null) {
+            socket.setKeepAlive(keepAlive);
+        }
+    }
+
+    /**
+     * Applies the buffer sizes which are set. The other options are for TCP only.
+     * NOTE: The receive buffer bounds the datagrams which can wait to be read. The ones beyond are dropped by the kernel.
+     *
+     * @param channel
+     * @throws IOException -   thrown if an option could not be set.
+     */
+    public void apply(final DatagramChannel channel) throws IOException {
+        if (sendBufferSize != null) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        }
+        if (receiveBufferSize != null) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "tcpNoDelay: [" + tcpNoDelay + "], sendBufferSize: [" + sendBufferSize
+                + "], receiveBufferSize: [" + receiveBufferSize + "], keepAlive: [" + keepAlive + "]";
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.mk.task.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * {@link Transport} over a connected TCP socket.
+ * If the socket was opened as a {@link java.nio.channels.SocketChannel}, its channel is written directly.
+ * Then gathering writes and file transfers do not copy the bytes through the JVM heap.
+ */
+public class SocketTransport implements Transport {
+
+    private final Socket socket;
+
+    public SocketTransport(final Socket socket) {
+        this.socket = socket;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public WritableByteChannel getWritableChannel() throws IOException {
+        return socket.getChannel() != null ? socket.getChannel() : Transport.super.getWritableChannel();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    @Override
+    public String toString() {
+        return "socket " + socket.getRemoteSocketAddress();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.mk.task.transport;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Scanner;
+
+/**
+ * Responsibilities:
+ * 1. Write the messages into the output write
+ * 2. Read messages from input scanner.
+ * <p>
+ * Messages are separated by new lines. For the length prefixed alternative: {@link BinaryMessageHandler}
+ * The writer is flushed as decided by the {@link FlushPolicy}, and always before reading.
+ */
+public class TextMessageHandler extends MessageHandler {
+
+    private final Writer writer;
+    private final Scanner readScanner;
+
+    public TextMessageHandler(final Writer writer, final Scanner readScanner) {
+        this(writer, readScanner, FlushPolicy.immediate());
+    }
+
+    public TextMessageHandler(final Writer writer, final Scanner readScanner, final FlushPolicy flushPolicy) {
+        super(flushPolicy);
+        this.writer = writer;
+        this.readScanner = readScanner;
+    }
+
+    @Override
+    public void write(final String message) throws IOException {
+        if (journal != null) {
+            journal.append(MessageJournal.SENT, 0, System.nanoTime(), message);
+        }
+        writer.write(message + "\n");
+        addPending();
+        flushIfDue();
+    }
+
+    /**
+     * @return -   the next line, or "Unknown" if the scanner has no more lines.
+     * @throws IOException -   not thrown by the text handler.
+     */
+    @Override
+    public String read() throws IOException {
+        if (hasPending()) {
+            flush();
+        }
+        if(readScanner.hasNextLine()) {
+            String message = readScanner.nextLine();
+            if (journal != null) {
+                journal.append(MessageJournal.RECEIVED, 0, System.nanoTime(), message);
+            }
+            return message;
+        }
+        return "Unknown";
+    }
+
+    @Override
+    protected void flushBuffer() throws IOException {
+        writer.flush();
+    }
+
+}
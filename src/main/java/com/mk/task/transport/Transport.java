@@ -0,0 +1,29 @@
+package com.mk.task.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Byte streams between the two players, on which a {@link MessageHandler} sits.
+ * Eg: {@link SocketTransport} and {@link SharedMemoryTransport}
+ */
+public interface Transport extends Closeable {
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * @return -   channel on the same bytes as {@link #getOutputStream()}, for gathering writes and file transfers.
+     * By default, a channel over the output stream. So, the bytes are copied as with the stream.
+     * @throws IOException -   thrown if the output stream could not be got.
+     */
+    default WritableByteChannel getWritableChannel() throws IOException {
+        return Channels.newChannel(getOutputStream());
+    }
+
+}
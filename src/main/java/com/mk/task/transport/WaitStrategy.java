@@ -0,0 +1,171 @@
+package com.mk.task.transport;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides how a thread waits on the {@link InProcessTransport} for the other player. Eg: for a message or for free space.
+ * Trades the latency of waking up against the CPU burnt while waiting.
+ * 1. {@link #blocking()}: sleeps on a lock until signalled. No CPU is used, but waking up costs microseconds.
+ * 2. {@link #spin()}: checks again and again. Lowest latency, but occupies a whole core.
+ * 3. {@link #yielding()}: spins for a while, then lets the other threads run between the checks.
+ * 4. {@link #parking()}: spins for a while, then parks for a short time between the checks.
+ * <p>
+ * NOTE: Only the blocking strategy needs {@link #signal()}. The others find out on their own.
+ * Spinning makes sense only when each player has a core of its own.
+ */
+public abstract class WaitStrategy {
+
+    public final static String BLOCKING = "blocking";
+    public final static String SPIN = "spin";
+    public final static String YIELD = "yield";
+    public final static String PARK = "park";
+
+    private final static int SPINS_BEFORE_BACKING_OFF = 100;
+    private final static long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    /**
+     * What is waited for. Implemented by the waiting side itself, so that waiting creates no object.
+     */
+    public interface Ready {
+        boolean isReady();
+    }
+
+    /**
+     * Returns once the ready check passes.
+     *
+     * @param ready
+     * @throws InterruptedIOException -   thrown if the thread is interrupted while waiting.
+     */
+    public abstract void await(Ready ready) throws InterruptedIOException;
+
+    /**
+     * Called after the state which another thread may wait for has changed.
+     */
+    public void signal() {
+    }
+
+    /**
+     * A new instance every time, as the waiting threads share its lock.
+     */
+    public static WaitStrategy blocking() {
+        return new BlockingWaitStrategy();
+    }
+
+    public static WaitStrategy spin() {
+        return new WaitStrategy() {
+            @Override
+            public void await(Ready ready) {
+                while (!ready.isReady()) {
+                    // busy spin
+                }
+            }
+        };
+    }
+
+    public static WaitStrategy yielding() {
+        return new WaitStrategy() {
+            @Override
+            public void await(Ready ready) throws InterruptedIOException {
+                for (int spins = 0; !ready.isReady(); spins++) {
+                    if (spins > SPINS_BEFORE_BACKING_OFF) {
+                        Thread.yield();
+                        checkInterrupted();
+                    }
+                }
+            }
+        };
+    }
+
+    public static WaitStrategy parking() {
+        return new WaitStrategy() {
+            @Override
+            public void await(Ready ready) throws InterruptedIOException {
+                for (int spins = 0; !ready.isReady(); spins++) {
+                    if (spins > SPINS_BEFORE_BACKING_OFF) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                        checkInterrupted();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @param value -   one of: blocking, spin, yield, park
+     * @return -   the strategy named by the value.
+     * @throws IllegalArgumentException -   thrown if the value does not name a strategy.
+     */
+    public static WaitStrategy parse(final String value) {
+        if (BLOCKING.equals(value)) {
+            return blocking();
+        }
+        if (SPIN.equals(value)) {
+            return spin();
+        }
+        if (YIELD.equals(value)) {
+            return yielding();
+        }
+        if (PARK.equals(value)) {
+            return parking();
+        }
+        throw new IllegalArgumentException("Unknown wait strategy: [" + value + "]");
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting.");
+        }
+    }
+
+    /**
+     * The waiter announces itself before checking again under the lock.
+     * So, a signal is either seen by the waiter or the change is seen by the check. No wake up is lost.
+     * The change may have been published lazily. So, the signaller fences before looking for waiters.
+     * Signalling takes the lock only if somebody waits.
+     */
+    private static class BlockingWaitStrategy extends WaitStrategy {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public void await(Ready ready) throws InterruptedIOException {
+            if (ready.isReady()) {
+                return;
+            }
+            waiters.incrementAndGet();
+            lock.lock();
+            try {
+                while (!ready.isReady()) {
+                    changed.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting.");
+            } finally {
+                lock.unlock();
+                waiters.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void signal() {
+            Fences.fullFence();
+            if (waiters.get() > 0) {
+                lock.lock();
+                try {
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.mk.task.logging;
+
+import com.mk.task.util.LogHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link HotLoopLogger} and {@link AsyncLogDispatcher}
+ */
+public class HotLoopLoggerTest {
+
+    private Logger logger;
+    private List<String> logList;
+
+    @Before
+    public void setUp() {
+        logger = Logger.getLogger(HotLoopLoggerTest.class.getName());
+        logger.setUseParentHandlers(false);
+        logList = Collections.synchronizedList(new ArrayList<>());
+        logger.addHandler(new LogHandler(logList));
+    }
+
+    @After
+    public void tearDown() {
+        HotLoopLogger.useSync();
+    }
+
+    @Test
+    public void syncTest() {
+        HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+        hotLoopLogger.log(Level.INFO, "Received message: [{0}]", "message");
+        hotLoopLogger.log(Level.INFO, "Sent message with count: [{0,number,#}]", 12345L);
+        hotLoopLogger.log(Level.FINEST, "Not logged: [{0}]", "message");
+        assertEquals(2, logList.size());
+        assertEquals("INFO - Received message: [message]", logList.get(0));
+        assertEquals("INFO - Sent message with count: [12345]", logList.get(1));
+    }
+
+    @Test
+    public void asyncFlushedOnCloseTest() {
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(1024);
+        HotLoopLogger.useAsync(dispatcher, 1);
+        HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+        for (int i = 0; i < 500; i++) {
+            hotLoopLogger.log(Level.INFO, "Sent message with count: [{0,number,#}]", i);
+        }
+        dispatcher.close();
+        assertEquals(500, logList.size());
+        assertEquals("INFO - Sent message with count: [0]", logList.get(0));
+        assertEquals("INFO - Sent message with count: [499]", logList.get(499));
+    }
+
+    /**
+     * A hot loop which still logs after the dispatcher is closed. Eg: a connection closed after the shutdown.
+     */
+    @Test
+    public void asyncAfterCloseNotLostTest() {
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(1024);
+        HotLoopLogger.useAsync(dispatcher, 1);
+        HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+        hotLoopLogger.log(Level.INFO, "Sent message with count: [{0,number,#}]", 1);
+        dispatcher.close();
+        hotLoopLogger.log(Level.INFO, "Sent message with count: [{0,number,#}]", 2);
+        assertEquals(2, logList.size());
+        assertEquals("INFO - Sent message with count: [2]", logList.get(1));
+    }
+
+    @Test
+    public void asyncSampledTest() {
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(1024);
+        HotLoopLogger.useAsync(dispatcher, 10);
+        HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+        for (int i = 0; i < 100; i++) {
+            hotLoopLogger.log(Level.INFO, "Sent message with count: [{0,number,#}]", i);
+        }
+        hotLoopLogger.log(Level.WARNING, "Did not find the proper count in the message: [{0}]", "Unknown");
+        dispatcher.close();
+        assertEquals(11, logList.size());
+        assertEquals("INFO - Sent message with count: [10]", logList.get(1));
+        assertEquals("WARNING - Did not find the proper count in the message: [Unknown]", logList.get(10));
+    }
+
+    @Test
+    public void warningsNotLostWhenFullTest() throws InterruptedException {
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(2);
+        HotLoopLogger.useAsync(dispatcher, 1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                HotLoopLogger hotLoopLogger = new HotLoopLogger(logger);
+                for (int i = 0; i < 1000; i++) {
+                    hotLoopLogger.log(Level.INFO, "Info: [{0,number,#}]", i);
+                    hotLoopLogger.log(Level.WARNING, "Warning: [{0,number,#}]", i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        dispatcher.close();
+        long warnings = logList.stream().filter(log -> log.startsWith("WARNING")).count();
+        long infos = logList.stream().filter(log -> log.startsWith("INFO")).count();
+        assertEquals(4000, warnings);
+        assertEquals(4000, infos + dispatcher.getDropped());
+    }
+}
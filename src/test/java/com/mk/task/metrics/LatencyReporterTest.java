@@ -0,0 +1,102 @@
+package com.mk.task.metrics;
+
+import com.mk.task.util.LogHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LatencyReporter}
+ */
+public class LatencyReporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> logList;
+
+    @Before
+    public void setUp() {
+        logList = new ArrayList<>();
+        Logger.getLogger(LatencyReporter.class.getName()).addHandler(new LogHandler(logList));
+    }
+
+    @Test
+    public void totalReportTest() {
+        LatencyReporter reporter = new LatencyReporter();
+        reporter.start(0);
+        reporter.record(1_000_000_000, 2_000);
+        reporter.record(2_000_000_000, 4_000);
+        reporter.finish(2_000_000_000);
+        assertEquals(1, logList.size());
+        assertEquals("INFO - Latency [total]: messages: [2], messages/sec: [1.0], min: [2.0 us], mean: [3.0 us], "
+                + "p50: [2.0 us], p99: [4.0 us], p99.9: [4.0 us], max: [4.0 us]", logList.get(0));
+    }
+
+    @Test
+    public void intervalReportToFileTest() throws IOException {
+        File file = new File(folder.getRoot(), "latency.csv");
+        LatencyReporter reporter = new LatencyReporter(1_000_000_000, file.getPath());
+        reporter.start(0);
+        reporter.record(500_000_000, 1_000);
+        reporter.record(1_000_000_000, 1_000);
+        reporter.record(1_500_000_000, 3_000);
+        reporter.finish(1_500_000_000);
+        assertEquals(2, logList.size());
+        assertTrue(logList.get(0).startsWith("INFO - Latency [interval]: messages: [2]"));
+        assertTrue(logList.get(1).startsWith("INFO - Latency [total]: messages: [3]"));
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(3, lines.size());
+        assertEquals(LatencyReporter.CSV_HEADER, lines.get(0));
+        assertTrue(lines.get(1).endsWith(",interval,2,2.0,1.000,1.000,1.000,1.000,1.000,1.000"));
+        assertTrue(lines.get(2).endsWith(",total,3,2.0,1.000,1.667,1.007,3.000,3.000,3.000"));
+    }
+
+    /**
+     * The interval report is formatted and written by the reporter thread, not by the player which records.
+     */
+    @Test
+    public void intervalReportInBackgroundTest() throws IOException {
+        List<String> threads = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                threads.add(Thread.currentThread().getName());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger.getLogger(LatencyReporter.class.getName()).addHandler(handler);
+        try {
+            File file = new File(folder.getRoot(), "latency.csv");
+            LatencyReporter reporter = new LatencyReporter(1_000_000_000, file.getPath());
+            reporter.start(0);
+            reporter.record(1_000_000_000, 1_000);
+            reporter.finish(1_000_000_000);
+            assertEquals("latency-reporter", threads.get(0));
+            assertEquals(Thread.currentThread().getName(), threads.get(1));
+            assertEquals(3, Files.readAllLines(file.toPath()).size());
+        } finally {
+            Logger.getLogger(LatencyReporter.class.getName()).removeHandler(handler);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.mk.task.metrics;
+
+import com.mk.task.util.LogHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PlayerMetrics}
+ */
+public class PlayerMetricsTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private List<String> logList;
+    private ObjectName objectName;
+
+    @Before
+    public void setUp() throws Exception {
+        logList = new ArrayList<>();
+        Logger.getLogger(PlayerMetrics.class.getName()).addHandler(new LogHandler(logList));
+        objectName = new ObjectName(PlayerMetrics.DOMAIN + ":type=Player,name=" + ObjectName.quote("test"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    @Test
+    public void countersTest() {
+        PlayerMetrics metrics = new PlayerMetrics();
+        metrics.messageSent(10);
+        metrics.messageSent(12);
+        metrics.messageReceived(14);
+        metrics.writeFailed();
+        metrics.readFailed();
+        metrics.readFailed();
+        metrics.poisonPill();
+        assertEquals(2, metrics.getMessagesSent());
+        assertEquals(22, metrics.getBytesOut());
+        assertEquals(1, metrics.getMessagesReceived());
+        assertEquals(14, metrics.getBytesIn());
+        assertEquals(1, metrics.getWriteFailures());
+        assertEquals(2, metrics.getReadFailures());
+        assertEquals(1, metrics.getPoisonPills());
+    }
+
+    @Test
+    public void latencySummaryTest() {
+        PlayerMetrics metrics = new PlayerMetrics();
+        assertEquals(0, metrics.getLatencyMeanMicros(), 0);
+        assertEquals(0, metrics.getLatencyMinMicros(), 0);
+        metrics.latency(2_000);
+        metrics.latency(6_000);
+        metrics.latency(4_000);
+        assertEquals(3, metrics.getLatencyCount());
+        assertEquals(4.0, metrics.getLatencyMeanMicros(), 0);
+        assertEquals(2.0, metrics.getLatencyMinMicros(), 0);
+        assertEquals(6.0, metrics.getLatencyMaxMicros(), 0);
+    }
+
+    @Test
+    public void compressionTest() {
+        PlayerMetrics metrics = new PlayerMetrics();
+        metrics.compressed(1_000, 250, 2_000_000);
+        metrics.compressed(1_000, 1_000, 1_000_000);
+        metrics.decompressed(500_000);
+        assertEquals(1, metrics.getCompressedMessages());
+        assertEquals(4.0, metrics.getCompressionRatio(), 0);
+        assertEquals(3.0, metrics.getCompressionMillis(), 0);
+        assertEquals(0.5, metrics.getDecompressionMillis(), 0);
+        assertEquals("messages: [1], bytes: [1000] -> [250], ratio: [4.00], compress time: [3.0 ms], inflate time: [0.5 ms]",
+                metrics.compressionSummary());
+    }
+
+    @Test
+    public void creditStallTest() {
+        PlayerMetrics metrics = new PlayerMetrics();
+        metrics.creditStall(1_500_000);
+        metrics.creditStall(500_000);
+        assertEquals(2, metrics.getCreditStalls());
+        assertEquals(2.0, metrics.getCreditStallMillis(), 0);
+    }
+
+    @Test
+    public void datagramsTest() {
+        PlayerMetrics metrics = new PlayerMetrics();
+        metrics.datagramLost();
+        metrics.datagramLost();
+        metrics.datagramDuplicated();
+        metrics.datagramReordered();
+        assertEquals(2, metrics.getDatagramsLost());
+        assertEquals(1, metrics.getDatagramsDuplicated());
+        assertEquals(1, metrics.getDatagramsReordered());
+    }
+
+    @Test
+    public void latencyPercentilesTest() throws InterruptedException {
+        PlayerMetrics metrics = new PlayerMetrics();
+        assertEquals(0, metrics.getLatencyP99Micros(), 0);
+        for (int i = 1; i <= 990; i++) {
+            metrics.latency(1_000);
+        }
+        Thread other = new Thread(() -> {
+            for (int i = 1; i <= 10; i++) {
+                metrics.latency(1_000_000);
+            }
+        });
+        other.start();
+        other.join();
+        assertEquals(1.0, metrics.getLatencyP50Micros(), 1.0 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(1.0, metrics.getLatencyP99Micros(), 1.0 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(1000.0, metrics.getLatencyP999Micros(), 1000.0 / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void currentRateTest() {
+        PlayerMetrics metrics = new PlayerMetrics();
+        long start = System.nanoTime();
+        metrics.sampleRate(start);
+        for (int i = 0; i < 100; i++) {
+            metrics.messageReceived(1);
+        }
+        assertEquals(0, metrics.getCurrentRate(), 0);
+        metrics.sampleRate(start + PlayerMetrics.RATE_WINDOW_NANOS / 2);
+        assertEquals(200, metrics.getCurrentRate(), 0);
+        assertEquals(200, metrics.getCurrentRate(), 0);
+        metrics.sampleRate(start + PlayerMetrics.RATE_WINDOW_NANOS);
+        assertEquals(0, metrics.getCurrentRate(), 0);
+    }
+
+    @Test
+    public void useTest() {
+        PlayerMetrics previous = PlayerMetrics.current();
+        PlayerMetrics metrics = new PlayerMetrics();
+        try {
+            PlayerMetrics.use(metrics);
+            assertSame(metrics, PlayerMetrics.current());
+        } finally {
+            PlayerMetrics.use(previous);
+        }
+    }
+
+    @Test
+    public void registerTest() throws Exception {
+        PlayerMetrics metrics = new PlayerMetrics();
+        metrics.register("test");
+        metrics.messageSent(5);
+        metrics.latency(3_000);
+        assertTrue(server.isRegistered(objectName));
+        assertEquals(1L, server.getAttribute(objectName, "MessagesSent"));
+        assertEquals(5L, server.getAttribute(objectName, "BytesOut"));
+        assertEquals(3.0, (Double) server.getAttribute(objectName, "LatencyMeanMicros"), 0);
+        assertEquals(3.0, (Double) server.getAttribute(objectName, "LatencyP99Micros"), 3.0 / LatencyHistogram.SUB_BUCKETS);
+        assertTrue(Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals("player-metrics-sampler")));
+        assertEquals("INFO - Player metrics are registered as [" + objectName + "]", logList.get(0));
+    }
+
+    @Test
+    public void registerTwiceTest() {
+        new PlayerMetrics().register("test");
+        new PlayerMetrics().register("test");
+        assertEquals(2, logList.size());
+        assertTrue(logList.get(1).startsWith("SEVERE - Exception while registering the player metrics."));
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.mk.task.player;
+
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.transport.DatagramEndpoint;
+import com.mk.task.transport.SocketOptions;
+import com.mk.task.util.LogHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link DatagramInitiator}
+ */
+public class DatagramInitiatorTest {
+
+    private final List<Closeable> opened = new ArrayList<>();
+    private List<String> logList;
+    private Handler handler;
+
+    @Before
+    public void setUp() {
+        logList = Collections.synchronizedList(new ArrayList<>());
+        handler = new LogHandler(logList);
+        Logger.getLogger(DatagramInitiator.class.getName()).addHandler(handler);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Logger.getLogger(DatagramInitiator.class.getName()).removeHandler(handler);
+        for (Closeable resource : opened) {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void withReceiverTest() throws Exception {
+        DatagramEndpoint receiverEndpoint = open(DatagramEndpoint.bind(0, new SocketOptions()));
+        Thread receiverThread = new Thread(new DatagramReceiver(receiverEndpoint)::start);
+        receiverThread.start();
+        DatagramInitiator initiator = initiator(receiverEndpoint.getLocalPort(), 1000, 8, 1000);
+        initiator.start();
+        receiverThread.join(5000);
+        assertEquals(1000, initiator.getAcknowledged());
+        assertEquals(0, initiator.getLost());
+        assertTrue(logList.contains("INFO - Datagrams: sent: [1000], acknowledged: [1000], lost: [0], loss rate: [0.000 %], duplicated: [0], reordered: [0], late: [0]"));
+        assertTrue(logList.contains("INFO - Poison pill is now sent and acknowledged."));
+    }
+
+    @Test
+    public void lossTest() throws Exception {
+        ScriptedEcho echo = open(new ScriptedEcho());
+        echo.drop.add(3L);
+        echo.drop.add(7L);
+        DatagramInitiator initiator = initiator(echo.start(), 20, 4, 20);
+        initiator.start();
+        assertEquals(18, initiator.getAcknowledged());
+        assertEquals(2, initiator.getLost());
+        assertTrue(logList.contains("INFO - Datagrams: sent: [20], acknowledged: [18], lost: [2], loss rate: [10.000 %], duplicated: [0], reordered: [0], late: [0]"));
+    }
+
+    @Test
+    public void duplicateTest() throws Exception {
+        ScriptedEcho echo = open(new ScriptedEcho());
+        echo.duplicate.add(5L);
+        DatagramInitiator initiator = initiator(echo.start(), 10, 1, 1000);
+        initiator.start();
+        assertEquals(10, initiator.getAcknowledged());
+        assertEquals(1, initiator.getDuplicated());
+        assertEquals(0, initiator.getReordered());
+    }
+
+    @Test
+    public void reorderTest() throws Exception {
+        ScriptedEcho echo = open(new ScriptedEcho());
+        echo.holdUntil.put(5L, 4L);
+        DatagramInitiator initiator = initiator(echo.start(), 10, 2, 1000);
+        initiator.start();
+        assertEquals(10, initiator.getAcknowledged());
+        assertEquals(1, initiator.getReordered());
+        assertEquals(0, initiator.getLost());
+    }
+
+    /**
+     * With one message in flight, the held one times out before the next ones are even sent.
+     */
+    @Test
+    public void lateTest() throws Exception {
+        ScriptedEcho echo = open(new ScriptedEcho());
+        echo.holdUntil.put(6L, 3L);
+        DatagramInitiator initiator = initiator(echo.start(), 10, 1, 20);
+        initiator.start();
+        assertEquals(9, initiator.getAcknowledged());
+        assertEquals(1, initiator.getLost());
+        assertEquals(1, initiator.getLate());
+        assertEquals(1, initiator.getReordered());
+    }
+
+    /**
+     * The pill and every attempt after it are lost. The initiator gives up, after waiting a reply timeout for each.
+     */
+    @Test(timeout = 5000)
+    public void lostPoisonPillTest() throws Exception {
+        ScriptedEcho echo = open(new ScriptedEcho());
+        echo.drop.add(6L);
+        DatagramInitiator initiator = initiator(echo.start(), 5, 1, 20);
+        initiator.start();
+        assertEquals(5, initiator.getAcknowledged());
+        assertTrue(logList.contains("WARNING - Receiver did not acknowledge the poison pill after [3] attempts."));
+    }
+
+    @Test
+    public void receiverNotStartedTest() throws IOException {
+        int port;
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            port = channel.bind(new InetSocketAddress("localhost", 0)).socket().getLocalPort();
+        }
+        DatagramInitiator initiator = initiator(port, 10, 1, 1000);
+        initiator.start();
+        assertEquals(0, initiator.getAcknowledged());
+        assertTrue(logList.contains("SEVERE - Exception while reading the datagram. Is the receiver started?"));
+    }
+
+    private DatagramInitiator initiator(int port, int messages, int window, long replyTimeoutMillis) throws IOException {
+        DatagramEndpoint endpoint = open(DatagramEndpoint.connect(new InetSocketAddress("localhost", port), new SocketOptions()));
+        return new DatagramInitiator(endpoint, messages, window, new LatencyReporter(), replyTimeoutMillis);
+    }
+
+    private <T extends Closeable> T open(T resource) {
+        opened.add(resource);
+        return resource;
+    }
+
+    /**
+     * Echoes the datagrams, except for the ones it is told to drop, duplicate or hold back.
+     */
+    private static class ScriptedEcho implements Closeable {
+
+        private final DatagramChannel channel = DatagramChannel.open();
+        private final Set<Long> drop = new HashSet<>();
+        private final Set<Long> duplicate = new HashSet<>();
+        /**
+         * Sequence after which the echo of a held back sequence is sent, by the held back one.
+         */
+        private final Map<Long, Long> holdUntil = new HashMap<>();
+
+        private ScriptedEcho() throws IOException {
+        }
+
+        /**
+         * @return -   the port bound.
+         */
+        private int start() throws IOException {
+            channel.bind(new InetSocketAddress("localhost", 0));
+            Thread thread = new Thread(this::serve);
+            thread.setDaemon(true);
+            thread.start();
+            return channel.socket().getLocalPort();
+        }
+
+        private void serve() {
+            Map<Long, ByteBuffer> held = new HashMap<>();
+            try {
+                while (true) {
+                    ByteBuffer datagram = ByteBuffer.allocate(DatagramEndpoint.MAX_DATAGRAM_SIZE);
+                    SocketAddress sender = channel.receive(datagram);
+                    datagram.flip();
+                    long sequence = datagram.getLong(0);
+                    if (drop.contains(sequence)) {
+                        continue;
+                    }
+                    if (holdUntil.containsValue(sequence)) {
+                        held.put(sequence, datagram);
+                        continue;
+                    }
+                    channel.send(datagram.duplicate(), sender);
+                    if (duplicate.contains(sequence)) {
+                        channel.send(datagram.duplicate(), sender);
+                    }
+                    Long release = holdUntil.get(sequence);
+                    if (release != null && held.containsKey(release)) {
+                        channel.send(held.remove(release), sender);
+                    }
+                    if (datagram.get(Long.BYTES) == DatagramEndpoint.POISON_PILL_TYPE) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // closed by the test
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
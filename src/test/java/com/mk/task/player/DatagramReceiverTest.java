@@ -0,0 +1,90 @@
+package com.mk.task.player;
+
+import com.mk.task.transport.DatagramEndpoint;
+import com.mk.task.transport.SocketOptions;
+import com.mk.task.util.LogHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static com.mk.task.Application.MESSAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link DatagramReceiver}
+ */
+public class DatagramReceiverTest {
+
+    private final static byte[] MESSAGE_BYTES = MESSAGE.getBytes(StandardCharsets.UTF_8);
+
+    private DatagramEndpoint receiverEndpoint;
+    private DatagramEndpoint initiatorEndpoint;
+    private Thread receiverThread;
+    private List<String> logList;
+    private Handler handler;
+
+    @Before
+    public void setUp() throws IOException {
+        logList = Collections.synchronizedList(new ArrayList<>());
+        handler = new LogHandler(logList);
+        Logger.getLogger(DatagramReceiver.class.getName()).addHandler(handler);
+        receiverEndpoint = DatagramEndpoint.bind(0, new SocketOptions());
+        initiatorEndpoint = DatagramEndpoint.connect(new InetSocketAddress("localhost", receiverEndpoint.getLocalPort()), new SocketOptions());
+        receiverThread = new Thread(new DatagramReceiver(receiverEndpoint)::start);
+        receiverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Logger.getLogger(DatagramReceiver.class.getName()).removeHandler(handler);
+        initiatorEndpoint.close();
+        receiverEndpoint.close();
+        receiverThread.join(5000);
+    }
+
+    @Test
+    public void echoUntilPoisonPillTest() throws Exception {
+        for (long sequence = 1; sequence <= 2; sequence++) {
+            initiatorEndpoint.send(sequence, DatagramEndpoint.MESSAGE_TYPE, MESSAGE_BYTES);
+            assertTrue(initiatorEndpoint.receive(TimeUnit.SECONDS.toNanos(5)));
+            assertEquals(sequence, initiatorEndpoint.getSequence());
+            assertEquals(DatagramEndpoint.HEADER_LENGTH + MESSAGE_BYTES.length, initiatorEndpoint.getLength());
+        }
+        initiatorEndpoint.send(3, DatagramEndpoint.POISON_PILL_TYPE, new byte[0]);
+        assertTrue(initiatorEndpoint.receive(TimeUnit.SECONDS.toNanos(5)));
+        assertEquals(DatagramEndpoint.POISON_PILL_TYPE, initiatorEndpoint.getType());
+        receiverThread.join(5000);
+        assertFalse(receiverThread.isAlive());
+        assertTrue(logList.contains("INFO - Received poison pill after [2] datagrams. So, exiting."));
+    }
+
+    @Test
+    public void sequenceEchoedAsItIsTest() throws Exception {
+        initiatorEndpoint.send(42, DatagramEndpoint.MESSAGE_TYPE, MESSAGE_BYTES);
+        initiatorEndpoint.send(41, DatagramEndpoint.MESSAGE_TYPE, MESSAGE_BYTES);
+        assertTrue(initiatorEndpoint.receive(TimeUnit.SECONDS.toNanos(5)));
+        assertEquals(42, initiatorEndpoint.getSequence());
+        assertTrue(initiatorEndpoint.receive(TimeUnit.SECONDS.toNanos(5)));
+        assertEquals(41, initiatorEndpoint.getSequence());
+    }
+
+    @Test
+    public void closeStopsReceiverTest() throws Exception {
+        receiverEndpoint.close();
+        receiverThread.join(5000);
+        assertFalse(receiverThread.isAlive());
+        assertTrue(logList.stream().anyMatch(log -> log.startsWith("SEVERE - Exception while reading datagram")));
+    }
+}
@@ -0,0 +1,250 @@
+package com.mk.task.player;
+
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.Sequences;
+import com.mk.task.util.LogHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static com.mk.task.Application.POISON_PILL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FanOutInitiator}
+ */
+public class FanOutInitiatorTest {
+
+    private final List<EchoReceiver> echoReceivers = new ArrayList<>();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private List<String> logList;
+    private Handler handler;
+
+    @Before
+    public void setUp() {
+        logList = Collections.synchronizedList(new ArrayList<>());
+        handler = new LogHandler(logList);
+        Logger.getLogger(FanOutInitiator.class.getName()).addHandler(handler);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Logger.getLogger(FanOutInitiator.class.getName()).removeHandler(handler);
+        for (EchoReceiver echoReceiver : echoReceivers) {
+            echoReceiver.close();
+        }
+    }
+
+    @Test
+    public void roundRobinTest() throws Exception {
+        FanOutInitiator initiator = fanOut(30, 2, FanOutInitiator.Balancing.ROUND_ROBIN,
+                receiver(0, -1), receiver(0, -1), receiver(0, -1));
+        initiator.start();
+        assertEquals(30, initiator.getAcknowledged());
+        assertEquals(Arrays.asList(10, 10, 10), initiator.getAcknowledgedPerReceiver());
+        for (EchoReceiver echoReceiver : echoReceivers) {
+            assertTrue(echoReceiver.poisonPill.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void leastOutstandingFavorsFastReceiverTest() throws IOException {
+        FanOutInitiator initiator = fanOut(100, 1, FanOutInitiator.Balancing.LEAST_OUTSTANDING,
+                receiver(10, -1), receiver(0, -1));
+        initiator.start();
+        assertEquals(100, initiator.getAcknowledged());
+        List<Integer> perReceiver = initiator.getAcknowledgedPerReceiver();
+        assertTrue("Per receiver: " + perReceiver, perReceiver.get(1) > 3 * perReceiver.get(0));
+    }
+
+    @Test
+    public void reconnectResendsUnacknowledgedTest() throws IOException {
+        FanOutInitiator initiator = fanOut(20, 4, FanOutInitiator.Balancing.ROUND_ROBIN, receiver(1, 3));
+        initiator.start();
+        assertEquals(20, initiator.getAcknowledged());
+        assertEquals(2, echoReceivers.get(0).connections);
+        assertEquals(20, echoReceivers.get(0).replies);
+        assertTrue(logList.stream().anyMatch(log -> log.startsWith("INFO - Re-sent [")));
+    }
+
+    @Test
+    public void failoverToOtherReceiverTest() throws IOException {
+        EchoReceiver failing = receiver(1, 2);
+        failing.acceptOnce = true;
+        FanOutInitiator initiator = fanOut(20, 2, FanOutInitiator.Balancing.ROUND_ROBIN, failing, receiver(0, -1));
+        initiator.start();
+        assertEquals(20, initiator.getAcknowledged());
+        assertEquals(Arrays.asList(2, 18), initiator.getAcknowledgedPerReceiver());
+        assertTrue(logList.stream().anyMatch(log -> log.startsWith("SEVERE - Gave up the receiver:")));
+    }
+
+    @Test
+    public void allReceiversGivenUpTest() throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0);
+        int port = serverSocket.getLocalPort();
+        serverSocket.close();
+        FanOutInitiator initiator = new FanOutInitiator(Collections.singletonList(new InetSocketAddress("localhost", port)),
+                FanOutInitiatorTest::connect, 10, 1, FanOutInitiator.Balancing.ROUND_ROBIN, new LatencyReporter(), 2, 1);
+        initiator.start();
+        assertEquals(0, initiator.getAcknowledged());
+        assertTrue(logList.contains("SEVERE - All the receivers were given up, with [10] messages not acknowledged."));
+    }
+
+    /**
+     * The replies of all the connections go into the same interval reports.
+     */
+    @Test
+    public void intervalReportsTest() throws IOException {
+        List<String> reports = Collections.synchronizedList(new ArrayList<>());
+        Handler reportHandler = new LogHandler(reports);
+        Logger.getLogger(LatencyReporter.class.getName()).addHandler(reportHandler);
+        try {
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            for (EchoReceiver receiver : Arrays.asList(receiver(1, -1), receiver(1, -1))) {
+                addresses.add(new InetSocketAddress("localhost", receiver.serverSocket.getLocalPort()));
+            }
+            FanOutInitiator initiator = new FanOutInitiator(addresses, FanOutInitiatorTest::connect, 20, 1,
+                    FanOutInitiator.Balancing.ROUND_ROBIN, new LatencyReporter(TimeUnit.MILLISECONDS.toNanos(1), null), 3, 5);
+            initiator.start();
+            assertEquals(20, initiator.getAcknowledged());
+        } finally {
+            Logger.getLogger(LatencyReporter.class.getName()).removeHandler(reportHandler);
+        }
+        assertTrue(reports.stream().anyMatch(log -> log.startsWith("INFO - Latency [interval]: messages: [")));
+        assertTrue(reports.get(reports.size() - 1).startsWith("INFO - Latency [total]: messages: [20]"));
+    }
+
+    /**
+     * Receivers which take a while per message are the bottleneck. So, more of them should serve proportionally more.
+     * The time the receivers spend serving, summed over all of them, over the time of the run is how many serve at once
+     * on average. With one receiver it is at most 1.
+     */
+    @Test
+    public void throughputScalesWithReceiversTest() throws IOException {
+        FanOutInitiator initiator = fanOut(400, 1, FanOutInitiator.Balancing.LEAST_OUTSTANDING,
+                receiver(5, -1), receiver(5, -1), receiver(5, -1), receiver(5, -1));
+        long start = System.nanoTime();
+        initiator.start();
+        long elapsed = System.nanoTime() - start;
+        assertEquals(400, initiator.getAcknowledged());
+        // The receivers are busy 4 at a time on average, so the run takes about a quarter of the service time.
+        double concurrency = (double) busyNanos.get() / elapsed;
+        assertTrue("Concurrency: " + concurrency, concurrency >= 3);
+        List<Integer> perReceiver = initiator.getAcknowledgedPerReceiver();
+        for (int acknowledged : perReceiver) {
+            assertTrue("Per receiver: " + perReceiver, acknowledged * 32 <= 400 * 10);
+        }
+    }
+
+    private FanOutInitiator fanOut(int messages, int window, FanOutInitiator.Balancing balancing, EchoReceiver... receivers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (EchoReceiver receiver : receivers) {
+            addresses.add(new InetSocketAddress("localhost", receiver.serverSocket.getLocalPort()));
+        }
+        return new FanOutInitiator(addresses, FanOutInitiatorTest::connect, messages, window, balancing, new LatencyReporter(), 3, 5);
+    }
+
+    private EchoReceiver receiver(int serviceMillis, int dropAfter) throws IOException {
+        EchoReceiver echoReceiver = new EchoReceiver(serviceMillis, dropAfter);
+        echoReceivers.add(echoReceiver);
+        return echoReceiver;
+    }
+
+    private static BinaryMessageHandler connect(InetSocketAddress receiver, List<Closeable> opened) throws IOException {
+        Socket socket = new Socket(receiver.getHostString(), receiver.getPort());
+        opened.add(socket);
+        return new BinaryMessageHandler(socket.getInputStream(), socket.getOutputStream());
+    }
+
+    /**
+     * Serves one connection after the other, like the receiver daemon. Echoes the frames with the count of the connection.
+     */
+    private class EchoReceiver implements Closeable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final int serviceMillis;
+        private final int dropAfter;
+        private final Thread thread;
+        private volatile boolean acceptOnce;
+        private volatile int connections;
+        private volatile int replies;
+        private final CountDownLatch poisonPill = new CountDownLatch(1);
+
+        /**
+         * @param serviceMillis -   time taken per message.
+         * @param dropAfter     -   replies after which the first connection is dropped. -1 to never drop it.
+         */
+        private EchoReceiver(int serviceMillis, int dropAfter) throws IOException {
+            this.serviceMillis = serviceMillis;
+            this.dropAfter = dropAfter;
+            this.thread = new Thread(this::serve);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void serve() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    connections++;
+                    echo(new BinaryMessageHandler(socket.getInputStream(), socket.getOutputStream()), connections == 1 ? dropAfter : -1);
+                    if (acceptOnce) {
+                        serverSocket.close();
+                    }
+                } catch (IOException | InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void echo(BinaryMessageHandler handler, int drop) throws IOException, InterruptedException {
+            int count = 0;
+            while (count != drop) {
+                ByteBuffer frame;
+                try {
+                    frame = handler.readFrame();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (frame.remaining() == POISON_PILL.length()) {
+                    poisonPill.countDown();
+                    return;
+                }
+                if (serviceMillis > 0) {
+                    long start = System.nanoTime();
+                    Thread.sleep(serviceMillis);
+                    busyNanos.addAndGet(System.nanoTime() - start);
+                }
+                count++;
+                ByteBuffer reply = handler.startFrame(frame.remaining() + 1 + Sequences.MAX_DIGITS);
+                reply.put(frame).put((byte) ' ');
+                Sequences.putDecimal(reply, count);
+                handler.writeFrame();
+                replies++;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package com.mk.task.player;
 
 import com.mk.task.Application;
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.transport.BinaryMessageHandler;
 import com.mk.task.transport.MessageHandler;
+import com.mk.task.util.Allocations;
 import com.mk.task.util.LogHandler;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Handler;
@@ -17,6 +26,7 @@ import java.util.stream.Collectors;
 import static com.mk.task.Application.MESSAGE;
 import static com.mk.task.Application.POISON_PILL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class InitiatorTest {
@@ -66,6 +76,153 @@ public class InitiatorTest {
         assertEquals("WARNING - Did not find the proper count in the message: [Unknown]", nonInfoLogs.get(0));
     }
 
+    @Test
+    public void startWithWindowTest() throws IOException {
+        doReturn(MESSAGE + "1", MESSAGE + "2", MESSAGE + "3", MESSAGE + "4", MESSAGE + "5").when(messageHandler).read();
+        new Initiator(messageHandler, 5, 3).start();
+        InOrder inOrder = inOrder(messageHandler);
+        inOrder.verify(messageHandler, times(3)).write(MESSAGE);
+        inOrder.verify(messageHandler, times(1)).read();
+        inOrder.verify(messageHandler, times(1)).write(MESSAGE);
+        inOrder.verify(messageHandler, times(1)).read();
+        inOrder.verify(messageHandler, times(1)).write(MESSAGE);
+        inOrder.verify(messageHandler, times(3)).read();
+        inOrder.verify(messageHandler, times(1)).write(POISON_PILL);
+        List<String> nonInfoLogs = logList.stream().filter(log -> !log.contains(Level.INFO.getName())).collect(Collectors.toList());
+        assertEquals(0, nonInfoLogs.size());
+    }
+
+    @Test
+    public void startWithWindowLargerThanMessagesTest() throws IOException {
+        doReturn(MESSAGE + "1", MESSAGE + "2").when(messageHandler).read();
+        new Initiator(messageHandler, 2, 10).start();
+        InOrder inOrder = inOrder(messageHandler);
+        inOrder.verify(messageHandler, times(2)).write(MESSAGE);
+        inOrder.verify(messageHandler, times(2)).read();
+        inOrder.verify(messageHandler, times(1)).write(POISON_PILL);
+        List<String> nonInfoLogs = logList.stream().filter(log -> !log.contains(Level.INFO.getName())).collect(Collectors.toList());
+        assertEquals(0, nonInfoLogs.size());
+    }
+
+    @Test
+    public void startWithCountContainedInWrongCountTest() throws IOException {
+        doReturn(MESSAGE + "11").when(messageHandler).read();
+        new Initiator(messageHandler, 1).start();
+        List<String> nonInfoLogs = logList.stream().filter(log -> !log.contains(Level.INFO.getName())).collect(Collectors.toList());
+        assertEquals(1, nonInfoLogs.size());
+        assertEquals("WARNING - Did not find the proper count in the message: [" + MESSAGE + "11]", nonInfoLogs.get(0));
+    }
+
+    @Test
+    public void startBinaryTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Initiator(new BinaryMessageHandler(new ByteArrayInputStream(replies(1, 2, 4)), out), 3, 2).start();
+        BinaryMessageHandler sent = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals(MESSAGE, sent.read());
+        assertEquals(MESSAGE, sent.read());
+        assertEquals(MESSAGE, sent.read());
+        assertEquals(POISON_PILL, sent.read());
+        List<String> nonInfoLogs = logList.stream().filter(log -> !log.contains(Level.INFO.getName())).collect(Collectors.toList());
+        assertEquals(1, nonInfoLogs.size());
+        assertEquals("WARNING - Did not find the proper count in the message: count: [4], expected: [3], stream: [0], length: ["
+                + (MESSAGE.length() + 2) + "]", nonInfoLogs.get(0));
+    }
+
+    @Test
+    public void startBinaryWithPayloadTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Initiator(new BinaryMessageHandler(new ByteArrayInputStream(replies(1, 2)), out), 2, 1,
+                new LatencyReporter(), Payload.sized(100_000, 100_000, true)).start();
+        BinaryMessageHandler sent = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals(100_000, sent.readFrame().remaining());
+        assertEquals(100_000, sent.readFrame().remaining());
+        assertEquals(POISON_PILL, sent.read());
+    }
+
+    @Test
+    public void startBinaryWithCreditStallsTest() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(credit(1));
+        in.write(replies(new int[]{1}));
+        in.write(credit(1));
+        in.write(replies(new int[]{2}));
+        in.write(credit(1));
+        in.write(replies(new int[]{3}));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler binaryHandler = new BinaryMessageHandler(new ByteArrayInputStream(in.toByteArray()), out);
+        binaryHandler.setCreditCapacity(1);
+        new Initiator(binaryHandler, 3, 3).start();
+        ByteBuffer request = ByteBuffer.wrap(out.toByteArray(), 0, BinaryMessageHandler.HEADER_LENGTH + 1);
+        assertEquals(1 << 29 | 1, request.getInt());
+        assertEquals(4, request.get());
+        BinaryMessageHandler sent = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray(),
+                request.position(), out.size() - request.position()), null);
+        assertEquals(MESSAGE, sent.read());
+        assertEquals(MESSAGE, sent.read());
+        assertEquals(MESSAGE, sent.read());
+        assertEquals(POISON_PILL, sent.read());
+        assertTrue(logList.stream().anyMatch(log -> log.startsWith("INFO - Credit stalls: [2]")));
+    }
+
+    @Test
+    public void startBinaryWithStreamsTest() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        BinaryMessageHandler writer = new BinaryMessageHandler(null, in);
+        for (int count = 1; count <= 2; count++) {
+            for (int stream = 1; stream <= 3; stream++) {
+                writer.setWriteStream(stream);
+                writer.write(MESSAGE + " " + (stream == 3 && count == 2 ? 5 : count));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Initiator(new BinaryMessageHandler(new ByteArrayInputStream(in.toByteArray()), out), 2, 4,
+                new LatencyReporter(), Payload.message(), 3).start();
+        BinaryMessageHandler sent = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(MESSAGE, sent.read());
+            assertEquals(i % 3 + 1, sent.getReadStream());
+        }
+        for (int stream = 1; stream <= 3; stream++) {
+            assertEquals(POISON_PILL, sent.read());
+            assertEquals(stream, sent.getReadStream());
+        }
+        List<String> nonInfoLogs = logList.stream().filter(log -> !log.contains(Level.INFO.getName())).collect(Collectors.toList());
+        assertEquals(1, nonInfoLogs.size());
+        assertEquals("WARNING - Did not find the proper count in the message: count: [5], expected: [2], stream: [3], length: ["
+                + (MESSAGE.length() + 2) + "]", nonInfoLogs.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void streamsWithTextCodecTest() {
+        new Initiator(messageHandler, 1, 1, new LatencyReporter(), Payload.message(), 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void payloadWithTextCodecTest() {
+        new Initiator(messageHandler, 1, 1, new LatencyReporter(), Payload.sized(10, 10, false));
+    }
+
+    @Test
+    public void startBinaryWithoutAllocationTest() throws IOException {
+        byte[] fewReplies = replies(1_000);
+        byte[] manyReplies = replies(101_000);
+        OutputStream discarding = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        long fewAllocated = Allocations.allocatedBytes(() ->
+                new Initiator(new BinaryMessageHandler(new ByteArrayInputStream(fewReplies), discarding), 1_000, 10).start());
+        long manyAllocated = Allocations.allocatedBytes(() ->
+                new Initiator(new BinaryMessageHandler(new ByteArrayInputStream(manyReplies), discarding), 101_000, 10).start());
+        assertTrue("Allocated per message: " + (manyAllocated - fewAllocated) / 100_000.0,
+                manyAllocated - fewAllocated < 100_000);
+    }
+
     @Test
     public void exceptionWhileWritingMessage() throws IOException {
         doThrow(new IOException()).when(messageHandler).write(Application.MESSAGE);
@@ -76,6 +233,18 @@ public class InitiatorTest {
         assertEquals("SEVERE - Exception while writing the message", nonInfoLogs.get(0));
     }
 
+    @Test
+    public void exceptionWhileReadingMessage() throws IOException {
+        doReturn(MESSAGE + "1").doThrow(new EOFException()).when(messageHandler).read();
+        new Initiator(messageHandler, 3).start();
+        verify(messageHandler, times(2)).read();
+        verify(messageHandler, times(2)).write(MESSAGE);
+        verify(messageHandler, times(0)).write(POISON_PILL);
+        List<String> nonInfoLogs = logList.stream().filter(log -> !log.contains(Level.INFO.getName())).collect(Collectors.toList());
+        assertEquals(1, nonInfoLogs.size());
+        assertEquals("SEVERE - Exception while reading the message", nonInfoLogs.get(0));
+    }
+
     @Test
     public void exceptionWhileWritingPoisonPillTest() throws IOException {
         doReturn(MESSAGE + "1").when(messageHandler).read();
@@ -89,4 +258,25 @@ public class InitiatorTest {
         assertEquals("SEVERE - Exception while sending poison pill to stop receiver.", nonInfoLogs.get(0));
     }
 
-}
\ No newline at end of file
+    private byte[] credit(int credits) {
+        return ByteBuffer.allocate(9).putInt(1 << 29 | 5).put((byte) 6).putInt(credits).array();
+    }
+
+    private byte[] replies(int... counts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler writer = new BinaryMessageHandler(null, out);
+        for (int count : counts) {
+            writer.write(MESSAGE + " " + count);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] replies(int messages) throws IOException {
+        int[] counts = new int[messages];
+        for (int i = 0; i < messages; i++) {
+            counts[i] = i + 1;
+        }
+        return replies(counts);
+    }
+
+}
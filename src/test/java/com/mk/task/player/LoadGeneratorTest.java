@@ -0,0 +1,166 @@
+package com.mk.task.player;
+
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.FlushPolicy;
+import com.mk.task.transport.InProcessTransport;
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.TextMessageHandler;
+import com.mk.task.transport.WaitStrategy;
+import com.mk.task.util.LogHandler;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static com.mk.task.Application.MESSAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link LoadGenerator}
+ */
+public class LoadGeneratorTest {
+
+    @Test
+    public void binaryConnectionsTest() throws Exception {
+        List<LoadGenerator.Connection> connections = new ArrayList<>();
+        List<Thread> receivers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            InProcessTransport transport = new InProcessTransport(4096, WaitStrategy.blocking());
+            InProcessTransport peer = transport.getPeer();
+            connections.add(new LoadGenerator.Connection(new BinaryMessageHandler(null, transport.getOutputStream()),
+                    new BinaryMessageHandler(transport.getInputStream(), null)));
+            receivers.add(startReceiver(new BinaryMessageHandler(peer.getInputStream(), peer.getOutputStream())));
+        }
+        LatencyReporter latencyReporter = new LatencyReporter();
+        LoadGenerator loadGenerator = new LoadGenerator(connections, 100, 3000, latencyReporter);
+        long start = System.nanoTime();
+        loadGenerator.start();
+        long elapsed = System.nanoTime() - start;
+        for (Thread receiver : receivers) {
+            receiver.join(5000);
+        }
+        assertEquals(300, loadGenerator.getSent());
+        assertEquals(300, loadGenerator.getReceived());
+        assertEquals(0, loadGenerator.getErrors());
+        assertEquals(300, latencyReporter.getTotal().getCount());
+        assertTrue("Finished ahead of the schedule: " + elapsed, elapsed >= TimeUnit.MILLISECONDS.toNanos(99));
+    }
+
+    /**
+     * The replies of all the connections go into the same interval reports, while the load runs.
+     */
+    @Test
+    public void intervalReportsTest() throws Exception {
+        List<String> reports = Collections.synchronizedList(new ArrayList<>());
+        Handler reportHandler = new LogHandler(reports);
+        Logger.getLogger(LatencyReporter.class.getName()).addHandler(reportHandler);
+        try {
+            List<LoadGenerator.Connection> connections = new ArrayList<>();
+            List<Thread> receivers = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                InProcessTransport transport = new InProcessTransport(4096, WaitStrategy.blocking());
+                InProcessTransport peer = transport.getPeer();
+                connections.add(new LoadGenerator.Connection(new BinaryMessageHandler(null, transport.getOutputStream()),
+                        new BinaryMessageHandler(transport.getInputStream(), null)));
+                receivers.add(startReceiver(new BinaryMessageHandler(peer.getInputStream(), peer.getOutputStream())));
+            }
+            LoadGenerator loadGenerator = new LoadGenerator(connections, 50, 1000,
+                    new LatencyReporter(TimeUnit.MILLISECONDS.toNanos(20), null));
+            loadGenerator.start();
+            for (Thread receiver : receivers) {
+                receiver.join(5000);
+            }
+            assertEquals(100, loadGenerator.getReceived());
+        } finally {
+            Logger.getLogger(LatencyReporter.class.getName()).removeHandler(reportHandler);
+        }
+        assertTrue(reports.stream().anyMatch(log -> log.startsWith("INFO - Latency [interval]: messages: [")));
+        assertTrue(reports.get(reports.size() - 1).startsWith("INFO - Latency [total]: messages: [100]"));
+    }
+
+    @Test
+    public void textConnectionTest() throws Exception {
+        InProcessTransport transport = new InProcessTransport(4096, WaitStrategy.blocking());
+        InProcessTransport peer = transport.getPeer();
+        LoadGenerator.Connection connection = new LoadGenerator.Connection(
+                new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(transport.getOutputStream())), null),
+                new TextMessageHandler(null, new Scanner(transport.getInputStream())));
+        Thread receiver = startReceiver(new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(peer.getOutputStream())),
+                new Scanner(peer.getInputStream())));
+        LoadGenerator loadGenerator = new LoadGenerator(Collections.singletonList(connection), 50, 10000, new LatencyReporter());
+        loadGenerator.start();
+        receiver.join(5000);
+        assertEquals(50, loadGenerator.getReceived());
+        assertEquals(0, loadGenerator.getErrors());
+    }
+
+    @Test
+    public void wrongCountIsAnErrorTest() throws IOException {
+        MessageHandler writer = mock(MessageHandler.class);
+        MessageHandler reader = mock(MessageHandler.class);
+        doReturn(MESSAGE + " 1", MESSAGE + " 5", MESSAGE + " 3").when(reader).read();
+        LoadGenerator loadGenerator = new LoadGenerator(Collections.singletonList(new LoadGenerator.Connection(writer, reader)),
+                3, 10000, new LatencyReporter());
+        loadGenerator.start();
+        verify(writer, times(3)).write(MESSAGE);
+        assertEquals(3, loadGenerator.getSent());
+        assertEquals(3, loadGenerator.getReceived());
+        assertEquals(1, loadGenerator.getErrors());
+    }
+
+    /**
+     * A message left pending by the flush policy is flushed once due, not only with the next message, 200 ms later.
+     */
+    @Test
+    public void pendingFlushedWhileWaitingTest() throws Exception {
+        InProcessTransport transport = new InProcessTransport(4096, WaitStrategy.blocking());
+        InProcessTransport peer = transport.getPeer();
+        LoadGenerator.Connection connection = new LoadGenerator.Connection(
+                new BinaryMessageHandler(null, transport.getOutputStream(), FlushPolicy.afterMicros(1000), BinaryMessageHandler.DEFAULT_BUFFER_SIZE),
+                new BinaryMessageHandler(transport.getInputStream(), null));
+        Thread receiver = startReceiver(new BinaryMessageHandler(peer.getInputStream(), peer.getOutputStream()));
+        LatencyReporter latencyReporter = new LatencyReporter();
+        LoadGenerator loadGenerator = new LoadGenerator(Collections.singletonList(connection), 3, 5, latencyReporter);
+        loadGenerator.start();
+        receiver.join(5000);
+        assertEquals(3, loadGenerator.getReceived());
+        long maxLatency = latencyReporter.getTotal().getMax();
+        assertTrue("Max latency: " + maxLatency, maxLatency < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    /**
+     * The reading side is closed and waited for, before its results are taken.
+     */
+    @Test(timeout = 5000)
+    public void failedWriteIsAnErrorTest() throws IOException {
+        OutputStream out = mock(OutputStream.class);
+        doThrow(new IOException()).when(out).write(any(byte[].class), anyInt(), anyInt());
+        InProcessTransport transport = new InProcessTransport(4096, WaitStrategy.blocking());
+        LoadGenerator loadGenerator = new LoadGenerator(Collections.singletonList(new LoadGenerator.Connection(
+                new BinaryMessageHandler(null, out), new BinaryMessageHandler(transport.getInputStream(), null), transport)),
+                10, 10000, new LatencyReporter());
+        loadGenerator.start();
+        assertEquals(0, loadGenerator.getSent());
+        assertEquals(10, loadGenerator.getErrors());
+        assertTrue("Reader left running", Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().equals("load-0-reader")));
+    }
+
+    private Thread startReceiver(MessageHandler messageHandler) {
+        Thread thread = new Thread(new Receiver(messageHandler)::start);
+        thread.start();
+        return thread;
+    }
+}
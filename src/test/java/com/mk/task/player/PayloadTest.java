@@ -0,0 +1,114 @@
+package com.mk.task.player;
+
+import com.mk.task.transport.BinaryMessageHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.mk.task.Application.MESSAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link Payload}
+ */
+public class PayloadTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void messageTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(MESSAGE.length(), Payload.message().write(new BinaryMessageHandler(null, out)));
+        assertEquals(MESSAGE, reader(out).read());
+        assertSame(Payload.message(), Payload.message());
+    }
+
+    @Test
+    public void sizedTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler handler = new BinaryMessageHandler(null, out);
+        Payload payload = Payload.sized(60, 60, false);
+        assertEquals(60, payload.write(handler));
+        assertEquals(60, payload.write(handler));
+        BinaryMessageHandler reader = reader(out);
+        for (int i = 0; i < 2; i++) {
+            String message = reader.read();
+            assertEquals(60, message.length());
+            assertTrue(message.startsWith(MESSAGE + MESSAGE));
+        }
+    }
+
+    @Test
+    public void randomSizesTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler handler = new BinaryMessageHandler(null, out);
+        Payload payload = Payload.sized(10, 20, false);
+        Set<Integer> sizes = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            sizes.add(payload.write(handler));
+        }
+        BinaryMessageHandler reader = reader(out);
+        for (int i = 0; i < 200; i++) {
+            int size = reader.readFrame().remaining();
+            assertTrue("Size: " + size, size >= 10 && size <= 20);
+        }
+        assertTrue(sizes.size() > 1);
+    }
+
+    @Test
+    public void bulkTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler handler = new BinaryMessageHandler(null, out);
+        Payload payload = Payload.sized(200_000, 200_000, true);
+        payload.write(handler);
+        payload.write(handler);
+        BinaryMessageHandler reader = reader(out);
+        for (int i = 0; i < 2; i++) {
+            ByteBuffer frame = reader.readFrame();
+            assertEquals(200_000, frame.remaining());
+            assertEquals(MESSAGE.charAt(0), frame.get(frame.position()));
+        }
+    }
+
+    @Test
+    public void fileTest() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "content of the file".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler handler = new BinaryMessageHandler(null, out);
+        try (Payload payload = Payload.file(file)) {
+            assertEquals(19, payload.write(handler));
+            payload.write(handler);
+        }
+        BinaryMessageHandler reader = reader(out);
+        assertEquals("content of the file", reader.read());
+        assertEquals("content of the file", reader.read());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeAboveMaxTest() {
+        Payload.sized(0, Payload.MAX_SIZE + 1, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minAboveMaxTest() {
+        Payload.sized(20, 10, false);
+    }
+
+    private BinaryMessageHandler reader(ByteArrayOutputStream out) {
+        return new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+    }
+}
@@ -0,0 +1,129 @@
+package com.mk.task.player;
+
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.FlushPolicy;
+import com.mk.task.transport.InProcessTransport;
+import com.mk.task.transport.TextMessageHandler;
+import com.mk.task.transport.WaitStrategy;
+import com.mk.task.util.LogHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import static com.mk.task.Application.MESSAGE;
+import static com.mk.task.Application.POISON_PILL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link PipelinedReceiver}
+ */
+public class PipelinedReceiverTest {
+
+    private List<String> logList;
+
+    @Before
+    public void setUp() {
+        logList = new ArrayList<>();
+        java.util.logging.Logger.getLogger(PipelinedReceiver.class.getName()).addHandler(new LogHandler(logList));
+    }
+
+    @Test
+    public void binaryRoundTripTest() throws Exception {
+        for (String waitStrategy : new String[]{"blocking", "yield"}) {
+            InProcessTransport transport = new InProcessTransport(1 << 16, WaitStrategy.blocking());
+            InProcessTransport peer = transport.getPeer();
+            PipelinedReceiver receiver = new PipelinedReceiver(new BinaryMessageHandler(peer.getInputStream(), null),
+                    new BinaryMessageHandler(null, peer.getOutputStream(), FlushPolicy.whenBufferFull(), 8192), 16,
+                    WaitStrategy.parse(waitStrategy));
+            Thread receiverThread = new Thread(receiver::start);
+            receiverThread.start();
+            LatencyReporter latencyReporter = new LatencyReporter();
+            new Initiator(new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream()), 2000, 32, latencyReporter).start();
+            receiverThread.join(5000);
+            assertEquals(2000, latencyReporter.getTotal().getCount());
+            assertTrue(receiver.getWritingDepth().getBatches() > 0);
+            assertTrue(receiver.getProcessingDepth().getMax() <= 16);
+        }
+    }
+
+    @Test
+    public void textOrderTest() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            input.append(MESSAGE).append(i).append('\n');
+        }
+        input.append(POISON_PILL).append('\n');
+        new PipelinedReceiver(new TextMessageHandler(null, new Scanner(new ByteArrayInputStream(input.toString().getBytes()))),
+                new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(out)), null, FlushPolicy.whenBufferFull()), 4,
+                WaitStrategy.blocking()).start();
+        Scanner replies = new Scanner(new ByteArrayInputStream(out.toByteArray()));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(MESSAGE + i + " " + (i + 1), replies.nextLine());
+        }
+        assertTrue(!replies.hasNextLine());
+        assertTrue(logList.contains("INFO - Received poison pill. So, exiting."));
+    }
+
+    @Test
+    public void endOfStreamTest() throws Exception {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        new BinaryMessageHandler(null, frames).write(MESSAGE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PipelinedReceiver(new BinaryMessageHandler(new ByteArrayInputStream(frames.toByteArray()), null),
+                new BinaryMessageHandler(null, out), 4, WaitStrategy.blocking()).start();
+        assertEquals(MESSAGE + " 1", new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null).read());
+        assertTrue(logList.contains("INFO - Initiator closed the connection. So, exiting."));
+    }
+
+    @Test
+    public void exceptionWhileWritingStopsTest() throws Exception {
+        OutputStream failing = mock(OutputStream.class);
+        doThrow(new IOException()).when(failing).write(any(byte[].class), anyInt(), anyInt());
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        BinaryMessageHandler framer = new BinaryMessageHandler(null, frames);
+        for (int i = 0; i < 100; i++) {
+            framer.write(MESSAGE);
+        }
+        new PipelinedReceiver(new BinaryMessageHandler(new ByteArrayInputStream(frames.toByteArray()), null),
+                new BinaryMessageHandler(null, failing), 4, WaitStrategy.blocking()).start();
+        assertTrue(logList.stream().anyMatch(log -> log.startsWith("SEVERE - Exception while sending message")));
+    }
+
+    /**
+     * The initiator neither sends more nor closes. So, only closing the connection ends the reader stage.
+     */
+    @Test
+    public void exceptionWhileWritingClosesConnectionTest() throws Exception {
+        OutputStream failing = mock(OutputStream.class);
+        doThrow(new IOException()).when(failing).write(any(byte[].class), anyInt(), anyInt());
+        InProcessTransport transport = new InProcessTransport(4096, WaitStrategy.blocking());
+        InProcessTransport peer = transport.getPeer();
+        PipelinedReceiver receiver = new PipelinedReceiver(new BinaryMessageHandler(peer.getInputStream(), null),
+                new BinaryMessageHandler(null, failing), 4, WaitStrategy.blocking(), peer);
+        Thread receiverThread = new Thread(receiver::start);
+        receiverThread.start();
+        new BinaryMessageHandler(null, transport.getOutputStream()).write(MESSAGE);
+        receiverThread.join(5000);
+        assertTrue(!receiverThread.isAlive());
+        assertTrue(logList.stream().anyMatch(log -> log.startsWith("SEVERE - Exception while sending message")));
+        assertTrue(!logList.contains("INFO - Initiator closed the connection. So, exiting."));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ringSizeNotPowerOfTwoTest() {
+        new PipelinedReceiver(null, null, 10, WaitStrategy.blocking());
+    }
+}
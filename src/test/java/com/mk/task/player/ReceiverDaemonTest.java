@@ -0,0 +1,126 @@
+package com.mk.task.player;
+
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.TextMessageHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Scanner;
+
+import static com.mk.task.Application.MESSAGE;
+import static com.mk.task.Application.POISON_PILL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ReceiverDaemon}
+ */
+public class ReceiverDaemonTest {
+
+    private ReceiverDaemon daemon;
+    private Thread daemonThread;
+    private int port;
+    private int adminPort;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress("localhost", 0));
+        port = serverSocket.getLocalPort();
+        ServerSocket adminSocket = ReceiverDaemon.bindAdminSocket(0);
+        adminPort = adminSocket.getLocalPort();
+        daemon = new ReceiverDaemon(serverSocket, adminSocket, (socket, opened) -> messageHandler(socket));
+        daemonThread = new Thread(daemon::start);
+        daemonThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        daemon.close();
+        daemonThread.join(5000);
+    }
+
+    @Test
+    public void sequentialSessionsTest() throws IOException {
+        for (int session = 1; session <= 3; session++) {
+            try (Socket socket = new Socket("localhost", port)) {
+                MessageHandler messageHandler = messageHandler(socket);
+                messageHandler.write(MESSAGE);
+                assertEquals(MESSAGE + " 1", messageHandler.read());
+                messageHandler.write(MESSAGE);
+                assertEquals(MESSAGE + " 2", messageHandler.read());
+                messageHandler.write(POISON_PILL);
+                messageHandler.flush();
+                assertEquals("Unknown", messageHandler.read());
+            }
+        }
+        assertEquals(3, daemon.getSessions());
+        assertTrue(daemonThread.isAlive());
+    }
+
+    @Test
+    public void sessionClosedByInitiatorTest() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            MessageHandler messageHandler = messageHandler(socket);
+            messageHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", messageHandler.read());
+        }
+        try (Socket socket = new Socket("localhost", port)) {
+            MessageHandler messageHandler = messageHandler(socket);
+            messageHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", messageHandler.read());
+        }
+        assertEquals(2, daemon.getSessions());
+    }
+
+    @Test
+    public void shutdownCommandTest() throws Exception {
+        assertEquals("Shutting down after [0] sessions.", ReceiverDaemon.sendAdminCommand(adminPort, ReceiverDaemon.SHUTDOWN));
+        daemonThread.join(5000);
+        assertFalse(daemonThread.isAlive());
+    }
+
+    @Test
+    public void shutdownStopsSessionInProgressTest() throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            MessageHandler messageHandler = messageHandler(socket);
+            messageHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", messageHandler.read());
+            assertEquals("Sessions: [1], in progress: [true]", ReceiverDaemon.sendAdminCommand(adminPort, ReceiverDaemon.STATUS));
+            ReceiverDaemon.sendAdminCommand(adminPort, ReceiverDaemon.SHUTDOWN);
+            daemonThread.join(5000);
+            assertFalse(daemonThread.isAlive());
+            assertEquals("Unknown", messageHandler.read());
+        }
+    }
+
+    /**
+     * An admin connection which sends nothing is closed after the read timeout. Then, the next command is answered.
+     */
+    @Test(timeout = 10_000)
+    public void silentAdminConnectionTest() throws IOException {
+        try (Socket silent = new Socket("localhost", adminPort)) {
+            assertEquals(-1, silent.getInputStream().read());
+            assertEquals("Sessions: [0], in progress: [false]", ReceiverDaemon.sendAdminCommand(adminPort, ReceiverDaemon.STATUS));
+        }
+    }
+
+    @Test
+    public void unknownCommandTest() throws IOException {
+        assertEquals("Unknown command. Allowed: shutdown / status", ReceiverDaemon.sendAdminCommand(adminPort, "restart"));
+        assertTrue(daemonThread.isAlive());
+    }
+
+    private static MessageHandler messageHandler(Socket socket) throws IOException {
+        return new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())),
+                new Scanner(socket.getInputStream()));
+    }
+}
@@ -1,12 +1,22 @@
 package com.mk.task.player;
 
+import com.mk.task.metrics.PlayerMetrics;
+import com.mk.task.transport.BinaryMessageHandler;
 import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.Sequences;
+import com.mk.task.util.Allocations;
 import com.mk.task.util.LogHandler;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -16,6 +26,7 @@ import java.util.stream.Collectors;
 import static com.mk.task.Application.MESSAGE;
 import static com.mk.task.Application.POISON_PILL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -56,4 +67,129 @@ public class ReceiverTest {
         assertEquals(1, nonInfoLogs.size());
         assertEquals("SEVERE - Exception while sending message: count: [1]", nonInfoLogs.get(0));
     }
+
+    @Test
+    public void startWithEndOfStreamTest() throws IOException {
+        doReturn(MESSAGE).doThrow(new EOFException()).when(messageHandler).read();
+        receiver.start();
+        verify(messageHandler, times(2)).read();
+        verify(messageHandler, times(1)).write(anyString());
+        List<String> nonInfoLogs = logList.stream().filter(log -> !log.contains(Level.INFO.getName())).collect(Collectors.toList());
+        assertEquals(0, nonInfoLogs.size());
+    }
+
+    @Test
+    public void startBinaryTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Receiver(new BinaryMessageHandler(new ByteArrayInputStream(frames(2)), out)).start();
+        BinaryMessageHandler replies = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals(MESSAGE + " 1", replies.read());
+        assertEquals(MESSAGE + " 2", replies.read());
+        List<String> nonInfoLogs = logList.stream().filter(log -> !log.contains(Level.INFO.getName())).collect(Collectors.toList());
+        assertEquals(0, nonInfoLogs.size());
+    }
+
+    @Test
+    public void startBinaryStreamsTest() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        BinaryMessageHandler writer = new BinaryMessageHandler(null, in);
+        writer.setWriteStream(1);
+        writer.write(MESSAGE);
+        writer.setWriteStream(2);
+        writer.write(MESSAGE);
+        writer.setWriteStream(1);
+        writer.write(MESSAGE);
+        writer.write(POISON_PILL);
+        writer.write(MESSAGE);
+        writer.setWriteStream(2);
+        writer.write(MESSAGE);
+        writer.setWriteStream(0);
+        writer.write(MESSAGE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Receiver(new BinaryMessageHandler(new ByteArrayInputStream(in.toByteArray()), out)).start();
+        BinaryMessageHandler replies = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertReply(replies, 1, MESSAGE + " 1");
+        assertReply(replies, 2, MESSAGE + " 1");
+        assertReply(replies, 1, MESSAGE + " 2");
+        assertReply(replies, 1, MESSAGE + " 1");
+        assertReply(replies, 2, MESSAGE + " 2");
+        assertReply(replies, 0, MESSAGE + " 1");
+        assertTrue(logList.contains("INFO - Received poison pill on stream: [1], after [2] messages. So, closing the stream."));
+        assertTrue(logList.contains("INFO - Initiator closed the connection. So, exiting."));
+    }
+
+    @Test
+    public void startBinaryLargeFrameTest() throws IOException {
+        byte[] payload = new byte[BinaryMessageHandler.BULK_THRESHOLD * 2];
+        Arrays.fill(payload, (byte) 'x');
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        BinaryMessageHandler writer = new BinaryMessageHandler(null, in);
+        writer.write(ByteBuffer.wrap(payload));
+        writer.write(MESSAGE);
+        writer.write(POISON_PILL);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Receiver(new BinaryMessageHandler(new ByteArrayInputStream(in.toByteArray()), out)).start();
+        BinaryMessageHandler replies = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        ByteBuffer reply = replies.readFrame();
+        assertEquals(payload.length + 2, reply.remaining());
+        assertEquals('x', reply.get(reply.position()));
+        assertEquals(1, Sequences.parseTrailing(reply));
+        assertEquals(MESSAGE + " 2", replies.read());
+    }
+
+    @Test
+    public void startBinaryMetricsTest() throws IOException {
+        PlayerMetrics previous = PlayerMetrics.current();
+        PlayerMetrics metrics = new PlayerMetrics();
+        PlayerMetrics.use(metrics);
+        try {
+            new Receiver(new BinaryMessageHandler(new ByteArrayInputStream(frames(2)), new ByteArrayOutputStream())).start();
+        } finally {
+            PlayerMetrics.use(previous);
+        }
+        int messageBytes = BinaryMessageHandler.HEADER_LENGTH + MESSAGE.length();
+        int pillBytes = BinaryMessageHandler.HEADER_LENGTH + POISON_PILL.length();
+        assertEquals(3, metrics.getMessagesReceived());
+        assertEquals(2 * messageBytes + pillBytes, metrics.getBytesIn());
+        assertEquals(2, metrics.getMessagesSent());
+        assertEquals(2 * messageBytes + 2 * " 1".length(), metrics.getBytesOut());
+        assertEquals(1, metrics.getPoisonPills());
+        assertEquals(0, metrics.getWriteFailures());
+    }
+
+    @Test
+    public void startBinaryWithoutAllocationTest() throws IOException {
+        byte[] fewFrames = frames(1_000);
+        byte[] manyFrames = frames(101_000);
+        OutputStream discarding = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+        long fewAllocated = Allocations.allocatedBytes(() ->
+                new Receiver(new BinaryMessageHandler(new ByteArrayInputStream(fewFrames), discarding)).start());
+        long manyAllocated = Allocations.allocatedBytes(() ->
+                new Receiver(new BinaryMessageHandler(new ByteArrayInputStream(manyFrames), discarding)).start());
+        assertTrue("Allocated per message: " + (manyAllocated - fewAllocated) / 100_000.0,
+                manyAllocated - fewAllocated < 100_000);
+    }
+
+    private byte[] frames(int messages) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler writer = new BinaryMessageHandler(null, out);
+        for (int i = 0; i < messages; i++) {
+            writer.write(MESSAGE);
+        }
+        writer.write(POISON_PILL);
+        return out.toByteArray();
+    }
+
+    private void assertReply(BinaryMessageHandler replies, int stream, String message) throws IOException {
+        assertEquals(message, replies.read());
+        assertEquals(stream, replies.getReadStream());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+package com.mk.task.player;
+
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.transport.BinaryMessageHandler;
+import com.mk.task.transport.InProcessTransport;
+import com.mk.task.transport.JournalReader;
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.MessageJournal;
+import com.mk.task.transport.TextMessageHandler;
+import com.mk.task.transport.WaitStrategy;
+import com.mk.task.util.LogHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static com.mk.task.Application.MESSAGE;
+import static com.mk.task.Application.POISON_PILL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ReplayInitiator}
+ */
+public class ReplayInitiatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> logList;
+    private Handler handler;
+
+    @Before
+    public void setUp() {
+        logList = Collections.synchronizedList(new ArrayList<>());
+        handler = new LogHandler(logList);
+        Logger.getLogger(ReplayInitiator.class.getName()).addHandler(handler);
+    }
+
+    @After
+    public void tearDown() {
+        Logger.getLogger(ReplayInitiator.class.getName()).removeHandler(handler);
+    }
+
+    /**
+     * The received messages and the recorded poison pill are not sent again. The streams are kept.
+     */
+    @Test
+    public void replayBinaryTest() throws Exception {
+        File directory = folder.newFolder("journal");
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(MessageJournal.SENT, i, i, MESSAGE);
+                journal.append(MessageJournal.RECEIVED, i, i, MESSAGE + " 1");
+            }
+            journal.append(MessageJournal.SENT, 0, 4, POISON_PILL);
+        }
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        BinaryMessageHandler initiatorHandler = new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream());
+        File replayed = folder.newFolder("replayed");
+        MessageJournal replayedJournal = MessageJournal.create(replayed, 4096);
+        initiatorHandler.setJournal(replayedJournal);
+        Thread receiver = new Thread(new Receiver(new BinaryMessageHandler(transport.getPeer().getInputStream(), transport.getPeer().getOutputStream()))::start);
+        receiver.start();
+        ReplayInitiator initiator = replay(initiatorHandler, directory, 10, ReplayInitiator.AS_FAST_AS_POSSIBLE, 2);
+        initiator.start();
+        receiver.join(5000);
+        replayedJournal.close();
+        assertFalse(receiver.isAlive());
+        assertEquals(3, initiator.getSent());
+        assertEquals(3, initiator.getReceived());
+        assertTrue(logList.contains("INFO - Poison pill is now sent, after [3] replayed messages."));
+        List<String> sent = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(replayed)) {
+            while (reader.next()) {
+                if (reader.getDirection() == MessageJournal.SENT) {
+                    sent.add(reader.getStream() + ":" + StandardCharsets.UTF_8.decode(reader.getPayload()));
+                }
+            }
+        }
+        assertEquals(String.join(",", "1:" + MESSAGE, "2:" + MESSAGE, "3:" + MESSAGE, "0:" + POISON_PILL), String.join(",", sent));
+    }
+
+    @Test
+    public void replayTextTest() throws Exception {
+        File directory = folder.newFolder("journal");
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            journal.append(MessageJournal.SENT, 0, 1, MESSAGE);
+            journal.append(MessageJournal.SENT, 0, 2, MESSAGE);
+        }
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        Thread receiver = new Thread(new Receiver(textHandler(transport.getPeer().getInputStream(), transport.getPeer().getOutputStream()))::start);
+        receiver.start();
+        ReplayInitiator initiator = replay(textHandler(transport.getInputStream(), transport.getOutputStream()), directory, 10, ReplayInitiator.AS_FAST_AS_POSSIBLE, 1);
+        initiator.start();
+        receiver.join(5000);
+        assertFalse(receiver.isAlive());
+        assertEquals(2, initiator.getReceived());
+    }
+
+    /**
+     * The messages recorded 100 ms apart are replayed with the same gap. Or half of it, twice as fast.
+     */
+    @Test
+    public void recordedPaceTest() throws Exception {
+        File directory = folder.newFolder("journal");
+        long gap = TimeUnit.MILLISECONDS.toNanos(100);
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(MessageJournal.SENT, 0, 1_000 + i * gap, MESSAGE);
+            }
+        }
+        assertTrue(replayNanos(directory, 1) >= 2 * gap);
+        long twiceAsFast = replayNanos(directory, 2);
+        assertTrue(twiceAsFast >= gap && twiceAsFast < 2 * gap);
+        assertTrue(logList.stream().anyMatch(log -> log.startsWith("INFO - Replayed: [3] messages, speed: [2x]")));
+    }
+
+    @Test
+    public void maxMessagesTest() throws Exception {
+        File directory = folder.newFolder("journal");
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(MessageJournal.SENT, 0, i, MESSAGE);
+            }
+        }
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        Thread receiver = new Thread(new Receiver(new BinaryMessageHandler(transport.getPeer().getInputStream(), transport.getPeer().getOutputStream()))::start);
+        receiver.start();
+        ReplayInitiator initiator = replay(new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream()),
+                directory, 2, ReplayInitiator.AS_FAST_AS_POSSIBLE, 1);
+        initiator.start();
+        receiver.join(5000);
+        assertFalse(receiver.isAlive());
+        assertEquals(2, initiator.getSent());
+    }
+
+    @Test
+    public void receiverGoneTest() throws Exception {
+        File directory = folder.newFolder("journal");
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            journal.append(MessageJournal.SENT, 0, 1, MESSAGE);
+        }
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        transport.getPeer().close();
+        ReplayInitiator initiator = replay(new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream()),
+                directory, 10, ReplayInitiator.AS_FAST_AS_POSSIBLE, 1);
+        initiator.start();
+        assertEquals(0, initiator.getReceived());
+        assertTrue(logList.stream().anyMatch(log -> log.startsWith("SEVERE - Exception while replaying the message journal, after [")));
+        assertFalse(logList.stream().anyMatch(log -> log.startsWith("INFO - Poison pill is now sent")));
+    }
+
+    private long replayNanos(File directory, int speed) throws Exception {
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        Thread receiver = new Thread(new Receiver(new BinaryMessageHandler(transport.getPeer().getInputStream(), transport.getPeer().getOutputStream()))::start);
+        receiver.start();
+        ReplayInitiator initiator = replay(new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream()),
+                directory, 10, speed, 1);
+        long start = System.nanoTime();
+        initiator.start();
+        long elapsed = System.nanoTime() - start;
+        receiver.join(5000);
+        assertEquals(3, initiator.getReceived());
+        return elapsed;
+    }
+
+    private ReplayInitiator replay(MessageHandler messageHandler, File directory, int maxMessages, int speed, int window) throws IOException {
+        return new ReplayInitiator(messageHandler, new JournalReader(directory), maxMessages, speed, window, new LatencyReporter());
+    }
+
+    private MessageHandler textHandler(InputStream in, OutputStream out) {
+        return new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), new Scanner(in, "UTF-8"));
+    }
+}
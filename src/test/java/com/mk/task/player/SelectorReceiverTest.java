@@ -0,0 +1,156 @@
+package com.mk.task.player;
+
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.TextMessageHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.mk.task.Application.MESSAGE;
+import static com.mk.task.Application.POISON_PILL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SelectorReceiver}
+ */
+public class SelectorReceiverTest {
+
+    private SelectorReceiver receiver;
+    private Thread receiverThread;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("localhost", 0));
+        port = serverChannel.socket().getLocalPort();
+        receiver = new SelectorReceiver(serverChannel);
+        receiverThread = new Thread(receiver::start);
+        receiverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        receiver.close();
+        receiverThread.join(5000);
+    }
+
+    @Test
+    public void countPerConnectionTest() throws IOException {
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            MessageHandler firstHandler = messageHandler(first);
+            MessageHandler secondHandler = messageHandler(second);
+            firstHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", firstHandler.read());
+            firstHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 2", firstHandler.read());
+            secondHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", secondHandler.read());
+            firstHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 3", firstHandler.read());
+        }
+    }
+
+    @Test
+    public void pipelinedMessagesTest() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            MessageHandler messageHandler = messageHandler(socket);
+            for (int i = 0; i < 100; i++) {
+                messageHandler.write(MESSAGE);
+            }
+            for (int i = 1; i <= 100; i++) {
+                assertEquals(MESSAGE + " " + i, messageHandler.read());
+            }
+        }
+    }
+
+    @Test
+    public void poisonPillClosesOnlyItsConnectionTest() throws IOException {
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            MessageHandler firstHandler = messageHandler(first);
+            MessageHandler secondHandler = messageHandler(second);
+            firstHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", firstHandler.read());
+            firstHandler.write(POISON_PILL);
+            assertEquals("Unknown", firstHandler.read());
+            secondHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", secondHandler.read());
+        }
+    }
+
+    @Test
+    public void tooLongLineClosesConnectionTest() throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            MessageHandler messageHandler = messageHandler(socket);
+            char[] line = new char[SelectorReceiver.MAX_LINE_LENGTH + 1];
+            Arrays.fill(line, 'x');
+            messageHandler.write(new String(line));
+            assertEquals("Unknown", messageHandler.read());
+        }
+    }
+
+    /**
+     * The initiator which never reads is no longer read either, once its replies fill the socket. So, its writes stop.
+     * The others are served.
+     */
+    @Test
+    public void notReadingInitiatorHeldBackTest() throws Exception {
+        Logger logger = Logger.getLogger(SelectorReceiver.class.getName());
+        Level level = logger.getLevel();
+        logger.setLevel(Level.WARNING);
+        try (Socket blocked = new Socket("localhost", port); Socket other = new Socket("localhost", port)) {
+            OutputStream out = blocked.getOutputStream();
+            byte[] messages = repeat(MESSAGE + "\n", 10_000).getBytes(StandardCharsets.UTF_8);
+            AtomicLong written = new AtomicLong();
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 1_000; i++) {
+                        out.write(messages);
+                        written.addAndGet(messages.length);
+                    }
+                } catch (IOException e) {
+                    // closed by the test, while blocked
+                }
+            });
+            writer.setDaemon(true);
+            writer.start();
+            writer.join(1500);
+            long held = written.get();
+            writer.join(1500);
+            assertTrue("Written: " + held + ", then: " + written.get(), writer.isAlive() && written.get() == held);
+            MessageHandler otherHandler = messageHandler(other);
+            otherHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", otherHandler.read());
+        } finally {
+            logger.setLevel(level);
+        }
+    }
+
+    private String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+
+    private MessageHandler messageHandler(Socket socket) throws IOException {
+        return new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())),
+                new Scanner(socket.getInputStream()));
+    }
+}
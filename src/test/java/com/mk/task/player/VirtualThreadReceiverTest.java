@@ -0,0 +1,139 @@
+package com.mk.task.player;
+
+import com.mk.task.transport.MessageHandler;
+import com.mk.task.transport.TextMessageHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import static com.mk.task.Application.MESSAGE;
+import static com.mk.task.Application.POISON_PILL;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link VirtualThreadReceiver}
+ */
+public class VirtualThreadReceiverTest {
+
+    private VirtualThreadReceiver receiver;
+    private Thread receiverThread;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress("localhost", 0));
+        port = serverSocket.getLocalPort();
+        receiver = new VirtualThreadReceiver(serverSocket, VirtualThreadReceiverTest::messageHandler);
+        receiverThread = new Thread(receiver::start);
+        receiverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        receiver.close();
+        receiverThread.join(5000);
+    }
+
+    @Test
+    public void countPerConnectionTest() throws IOException {
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            MessageHandler firstHandler = messageHandler(first);
+            MessageHandler secondHandler = messageHandler(second);
+            firstHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", firstHandler.read());
+            firstHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 2", firstHandler.read());
+            secondHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", secondHandler.read());
+        }
+    }
+
+    @Test
+    public void poisonPillClosesOnlyItsConnectionTest() throws IOException {
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            MessageHandler firstHandler = messageHandler(first);
+            MessageHandler secondHandler = messageHandler(second);
+            firstHandler.write(POISON_PILL);
+            assertEquals("Unknown", firstHandler.read());
+            secondHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", secondHandler.read());
+        }
+    }
+
+    @Test
+    public void manyIdleConnectionsTest() throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                sockets.add(new Socket("localhost", port));
+            }
+            MessageHandler lastHandler = messageHandler(sockets.get(sockets.size() - 1));
+            lastHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", lastHandler.read());
+            assertEquals(200, receiver.getAccepted());
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void closeStopsConnectionsTest() throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            MessageHandler messageHandler = messageHandler(socket);
+            messageHandler.write(MESSAGE);
+            assertEquals(MESSAGE + " 1", messageHandler.read());
+            receiver.close();
+            receiverThread.join(5000);
+            assertEquals("Unknown", messageHandler.read());
+        }
+    }
+
+    /**
+     * The receiver is closed by another thread right as a connection is accepted. The connection is closed too.
+     */
+    @Test(timeout = 5000)
+    public void closedWhileAcceptingTest() throws Exception {
+        VirtualThreadReceiver[] closing = new VirtualThreadReceiver[1];
+        ServerSocket serverSocket = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = super.accept();
+                closing[0].close();
+                return socket;
+            }
+        };
+        serverSocket.bind(new InetSocketAddress("localhost", 0));
+        closing[0] = new VirtualThreadReceiver(serverSocket, VirtualThreadReceiverTest::messageHandler);
+        Thread thread = new Thread(closing[0]::start);
+        thread.start();
+        try (Socket socket = new Socket("localhost", serverSocket.getLocalPort())) {
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        thread.join();
+        assertEquals(0, closing[0].getAccepted());
+        assertEquals(0, closing[0].getOpenConnections());
+    }
+
+    private static MessageHandler messageHandler(Socket socket, List<Closeable> opened) throws IOException {
+        return messageHandler(socket);
+    }
+
+    private static MessageHandler messageHandler(Socket socket) throws IOException {
+        return new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())),
+                new Scanner(socket.getInputStream()));
+    }
+}
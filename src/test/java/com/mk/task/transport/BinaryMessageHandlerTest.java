@@ -0,0 +1,555 @@
+package com.mk.task.transport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link BinaryMessageHandler}
+ */
+public class BinaryMessageHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void WriteTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out);
+        messageHandler.write("Test message");
+        ByteBuffer frame = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(12, frame.getInt());
+        assertEquals("Test message", new String(frame.array(), 4, 12, StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IOException.class)
+    public void ExceptionInOutputStreamTest() throws IOException {
+        OutputStream out = mock(OutputStream.class);
+        doThrow(new IOException()).when(out).write(any(byte[].class), anyInt(), anyInt());
+        new BinaryMessageHandler(null, out).write("Test message");
+    }
+
+    @Test
+    public void ReadTest() throws IOException {
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(frames("First message", "Second\nmessage", ""), null);
+        assertEquals("First message", messageHandler.read());
+        assertEquals("Second\nmessage", messageHandler.read());
+        assertEquals("", messageHandler.read());
+    }
+
+    @Test
+    public void ReadFrameLargerThanBufferTest() throws IOException {
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            message.append(i);
+        }
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(frames("small", message.toString(), "small"), null);
+        assertEquals("small", messageHandler.read());
+        assertEquals(message.toString(), messageHandler.read());
+        assertEquals("small", messageHandler.read());
+    }
+
+    @Test
+    public void ReadFrameTest() throws IOException {
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(frames("abc"), null);
+        ByteBuffer frame = messageHandler.readFrame();
+        assertEquals(3, frame.remaining());
+        assertEquals('a', frame.get());
+    }
+
+    @Test(expected = EOFException.class)
+    public void ReadWithNoMessageTest() throws IOException {
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(frames("Test message"), null);
+        messageHandler.read();
+        messageHandler.read();
+    }
+
+    @Test(expected = EOFException.class)
+    public void ReadTruncatedFrameTest() throws IOException {
+        byte[] frame = bytes("Test message");
+        InputStream in = new ByteArrayInputStream(frame, 0, frame.length - 1);
+        new BinaryMessageHandler(in, null).read();
+    }
+
+    @Test(expected = IOException.class)
+    public void ReadInvalidLengthTest() throws IOException {
+        InputStream in = new ByteArrayInputStream(ByteBuffer.allocate(4).putInt(-1).array());
+        new BinaryMessageHandler(in, null).read();
+    }
+
+    @Test
+    public void WriteCoalescedTest() throws IOException {
+        ByteArrayOutputStream out = spy(new ByteArrayOutputStream());
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out, FlushPolicy.everyMessages(3), 64);
+        messageHandler.write("first");
+        messageHandler.write("second");
+        verify(out, never()).write(any(byte[].class), anyInt(), anyInt());
+        messageHandler.write("third");
+        verify(out, times(1)).write(any(byte[].class), anyInt(), anyInt());
+        assertEquals(3 * 4 + 16, out.size());
+    }
+
+    @Test
+    public void WriteWhenBufferFullTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out, FlushPolicy.whenBufferFull(), 16);
+        messageHandler.write("12345678");
+        assertEquals(0, out.size());
+        messageHandler.write("abcdefgh");
+        assertEquals(12, out.size());
+        messageHandler.write("a message larger than the buffer");
+        assertEquals(24, out.size());
+        messageHandler.flush();
+        BinaryMessageHandler reader = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals("12345678", reader.read());
+        assertEquals("abcdefgh", reader.read());
+        assertEquals("a message larger than the buffer", reader.read());
+    }
+
+    @Test
+    public void FlushBeforeReadTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(frames("reply"), out, FlushPolicy.whenBufferFull(), 64);
+        messageHandler.write("request");
+        assertEquals(0, out.size());
+        assertEquals("reply", messageHandler.read());
+        assertEquals(11, out.size());
+    }
+
+    @Test
+    public void WriteBulkAfterPendingFramesTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out, FlushPolicy.whenBufferFull(), 64);
+        messageHandler.write("pending");
+        ByteBuffer payload = ByteBuffer.wrap(bytes("payload"));
+        payload.position(BinaryMessageHandler.HEADER_LENGTH);
+        messageHandler.writeBulk(payload, ascii(" 2"));
+        BinaryMessageHandler reader = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals("pending", reader.read());
+        assertEquals("payload 2", reader.read());
+    }
+
+    @Test
+    public void WriteBulkDirectLargerThanBufferTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out, FlushPolicy.immediate(), 16);
+        ByteBuffer payload = ByteBuffer.allocateDirect(100);
+        while (payload.hasRemaining()) {
+            payload.put((byte) ('a' + payload.position() % 26));
+        }
+        payload.flip();
+        messageHandler.writeBulk(payload, null);
+        assertEquals(0, payload.remaining());
+        ByteBuffer frame = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null).readFrame();
+        assertEquals(100, frame.remaining());
+        assertEquals('a', frame.get(frame.position()));
+        assertEquals('v', frame.get(frame.limit() - 1));
+    }
+
+    @Test
+    public void WriteBulkGatheringTest() throws IOException {
+        ChunkedChannel channel = new ChunkedChannel(5);
+        OutputStream out = mock(OutputStream.class);
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out, channel, FlushPolicy.immediate(), 16);
+        messageHandler.writeBulk(ascii("a bulk payload"), ascii(" 7"));
+        verify(out, never()).write(any(byte[].class), anyInt(), anyInt());
+        assertEquals("a bulk payload 7", new BinaryMessageHandler(new ByteArrayInputStream(channel.written.toByteArray()), null).read());
+    }
+
+    @Test
+    public void TransferFrameTest() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "header|file payload".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out, FlushPolicy.whenBufferFull(), 64);
+        messageHandler.write("pending");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            messageHandler.transferFrame(channel, 7, 12);
+        }
+        BinaryMessageHandler reader = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals("pending", reader.read());
+        assertEquals("file payload", reader.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void TransferFrameOutsideFileTest() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "short".getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            new BinaryMessageHandler(null, new ByteArrayOutputStream()).transferFrame(channel, 0, 6);
+        }
+    }
+
+    @Test
+    public void NegotiatedCompressionTest() throws Exception {
+        String message = repeat("compressible ", 1_000);
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        BinaryMessageHandler initiator = handler(transport, new Compression(100));
+        BinaryMessageHandler receiver = handler(transport.getPeer(), new Compression(100));
+        Thread echo = new Thread(() -> {
+            try {
+                receiver.write(receiver.read() + " 1");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        echo.start();
+        assertTrue(initiator.negotiateCompression());
+        initiator.write(message);
+        assertEquals(message + " 1", initiator.read());
+        echo.join(5000);
+        assertTrue(receiver.isCompressing());
+    }
+
+    @Test
+    public void DeclinedCompressionTest() throws Exception {
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        BinaryMessageHandler initiator = handler(transport, new Compression(100));
+        BinaryMessageHandler receiver = handler(transport.getPeer(), null);
+        Thread echo = new Thread(() -> {
+            try {
+                receiver.write(receiver.read() + " 1");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        echo.start();
+        assertFalse(initiator.negotiateCompression());
+        initiator.write(repeat("plain ", 100));
+        assertEquals(repeat("plain ", 100) + " 1", initiator.read());
+        echo.join(5000);
+        assertFalse(receiver.isCompressing());
+    }
+
+    @Test
+    public void CompressedFrameSmallerOnTheWireTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] accepted = ByteBuffer.allocate(5).putInt(1 << 29 | 1).put((byte) 2).array();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(new ByteArrayInputStream(accepted), out);
+        messageHandler.setCompression(new Compression(100));
+        assertTrue(messageHandler.negotiateCompression());
+        int offer = out.size();
+        messageHandler.write("short");
+        messageHandler.write(repeat("compressible ", 1_000));
+        assertTrue("On the wire: " + (out.size() - offer), out.size() - offer < 500);
+    }
+
+    @Test(expected = IOException.class)
+    public void UnexpectedCompressedFrameTest() throws IOException {
+        InputStream in = new ByteArrayInputStream(ByteBuffer.allocate(12).putInt(1 << 30 | 8).putInt(100).putInt(0).array());
+        new BinaryMessageHandler(in, null).read();
+    }
+
+    @Test
+    public void FlowControlTest() throws Exception {
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        BinaryMessageHandler initiator = handler(transport, null);
+        BinaryMessageHandler receiver = handler(transport.getPeer(), null);
+        initiator.setCreditCapacity(1);
+        receiver.setCreditCapacity(4);
+        Thread echo = new Thread(() -> {
+            try {
+                for (int i = 1; i <= 5; i++) {
+                    receiver.write(receiver.read() + " " + i);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        echo.start();
+        assertTrue(initiator.negotiateFlowControl());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(initiator.takeCredit());
+            initiator.write("message");
+        }
+        assertFalse(initiator.takeCredit());
+        for (int i = 1; i <= 4; i++) {
+            assertEquals("message " + i, initiator.read());
+        }
+        initiator.awaitCredit();
+        assertTrue(initiator.takeCredit());
+        initiator.write("message");
+        assertEquals("message 5", initiator.read());
+        echo.join(5000);
+    }
+
+    @Test
+    public void DeclinedFlowControlTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] declined = ByteBuffer.allocate(5).putInt(1 << 29 | 1).put((byte) 5).array();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(new ByteArrayInputStream(declined), out);
+        messageHandler.setCreditCapacity(1);
+        assertFalse(messageHandler.negotiateFlowControl());
+        assertFalse(messageHandler.isFlowControlled());
+        assertTrue(messageHandler.takeCredit());
+    }
+
+    @Test
+    public void CreditsGrantedUpFrontTest() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(ByteBuffer.allocate(5).putInt(1 << 29 | 1).put((byte) 4).array());
+        in.write(bytes("message"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(new ByteArrayInputStream(in.toByteArray()), out);
+        messageHandler.setCreditCapacity(8);
+        assertEquals("message", messageHandler.read());
+        ByteBuffer credit = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(1 << 29 | 5, credit.getInt());
+        assertEquals(6, credit.get());
+        assertEquals(8, credit.getInt());
+    }
+
+    @Test
+    public void NoCreditForExemptFrameTest() throws IOException {
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(ByteBuffer.allocate(5).putInt(1 << 29 | 1).put((byte) 4).array());
+        in.write(bytes("poison-pill"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(new ByteArrayInputStream(in.toByteArray()), out);
+        messageHandler.setCreditCapacity(1);
+        assertEquals("poison-pill", messageHandler.read());
+        messageHandler.creditExempt();
+        try {
+            messageHandler.read();
+        } catch (EOFException e) {
+            assertEquals(9, out.size());
+            return;
+        }
+        throw new AssertionError("Expected the end of stream.");
+    }
+
+    @Test(expected = IOException.class)
+    public void MessageInsteadOfCreditsTest() throws IOException {
+        byte[] answer = ByteBuffer.allocate(9).putInt(1 << 29 | 5).put((byte) 6).putInt(0).array();
+        ByteArrayOutputStream in = new ByteArrayOutputStream();
+        in.write(answer);
+        in.write(bytes("message"));
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(new ByteArrayInputStream(in.toByteArray()), new ByteArrayOutputStream());
+        messageHandler.setCreditCapacity(1);
+        assertTrue(messageHandler.negotiateFlowControl());
+        messageHandler.awaitCredit();
+    }
+
+    @Test
+    public void StreamFramesTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out);
+        messageHandler.setWriteStream(7);
+        messageHandler.write("on a stream");
+        messageHandler.setWriteStream(0);
+        messageHandler.write("on the connection");
+        ByteBuffer frame = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(1 << 28 | 13, frame.getInt());
+        assertEquals(7, frame.getShort());
+        BinaryMessageHandler reader = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals("on a stream", reader.read());
+        assertEquals(7, reader.getReadStream());
+        assertEquals("on the connection", reader.read());
+        assertEquals(0, reader.getReadStream());
+    }
+
+    @Test
+    public void StreamBulkAndTransferTest() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "from the file".getBytes(StandardCharsets.UTF_8));
+        ChunkedChannel channel = new ChunkedChannel(5);
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, new ByteArrayOutputStream(), channel, FlushPolicy.immediate(), 16);
+        messageHandler.setWriteStream(BinaryMessageHandler.MAX_STREAM);
+        messageHandler.writeBulk(ascii("bulk"), ascii(" 1"));
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            messageHandler.transferFrame(fileChannel, 0, (int) fileChannel.size());
+        }
+        BinaryMessageHandler reader = new BinaryMessageHandler(new ByteArrayInputStream(channel.written.toByteArray()), null);
+        assertEquals("bulk 1", reader.read());
+        assertEquals(BinaryMessageHandler.MAX_STREAM, reader.getReadStream());
+        assertEquals("from the file", reader.read());
+        assertEquals(BinaryMessageHandler.MAX_STREAM, reader.getReadStream());
+    }
+
+    @Test
+    public void CompressedStreamTest() throws Exception {
+        String message = repeat("compressible ", 1_000);
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        BinaryMessageHandler initiator = handler(transport, new Compression(100));
+        BinaryMessageHandler receiver = handler(transport.getPeer(), new Compression(100));
+        Thread echo = new Thread(() -> {
+            try {
+                String received = receiver.read();
+                receiver.setWriteStream(receiver.getReadStream());
+                receiver.write(received + " 1");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        echo.start();
+        assertTrue(initiator.negotiateCompression());
+        initiator.setWriteStream(3);
+        initiator.write(message);
+        assertEquals(message + " 1", initiator.read());
+        assertEquals(3, initiator.getReadStream());
+        echo.join(5000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void InvalidStreamTest() {
+        new BinaryMessageHandler(null, new ByteArrayOutputStream()).setWriteStream(BinaryMessageHandler.MAX_STREAM + 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void ControlFrameOnStreamTest() throws IOException {
+        InputStream in = new ByteArrayInputStream(ByteBuffer.allocate(7).putInt(1 << 29 | 1 << 28 | 3).putShort((short) 1).put((byte) 1).array());
+        new BinaryMessageHandler(in, new ByteArrayOutputStream()).read();
+    }
+
+    /**
+     * The messages are recorded as the players see them, before compression and after inflating. Not the control frames.
+     */
+    @Test
+    public void JournalTest() throws Exception {
+        String message = repeat("compressible ", 1_000);
+        InProcessTransport transport = new InProcessTransport(64 * 1024, WaitStrategy.blocking());
+        BinaryMessageHandler initiator = handler(transport, new Compression(100));
+        BinaryMessageHandler receiver = handler(transport.getPeer(), new Compression(100));
+        File directory = folder.newFolder("journal");
+        MessageJournal journal = MessageJournal.create(directory, 1024 * 1024);
+        initiator.setJournal(journal);
+        Thread echo = new Thread(() -> {
+            try {
+                receiver.write(receiver.read() + " 1");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        echo.start();
+        assertTrue(initiator.negotiateCompression());
+        initiator.setWriteStream(3);
+        initiator.write(message);
+        assertEquals(message + " 1", initiator.read());
+        echo.join(5000);
+        journal.close();
+        try (JournalReader reader = new JournalReader(directory)) {
+            assertTrue(reader.next());
+            assertEquals(MessageJournal.SENT, reader.getDirection());
+            assertEquals(3, reader.getStream());
+            assertEquals(message, StandardCharsets.UTF_8.decode(reader.getPayload()).toString());
+            assertTrue(reader.next());
+            assertEquals(MessageJournal.RECEIVED, reader.getDirection());
+            assertEquals(0, reader.getStream());
+            assertEquals(message + " 1", StandardCharsets.UTF_8.decode(reader.getPayload()).toString());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void JournalBulkAndTransferTest() throws IOException {
+        File file = folder.newFile("payload.txt");
+        Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+        File directory = folder.newFolder("journal");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler messageHandler = new BinaryMessageHandler(null, out);
+        try (MessageJournal journal = MessageJournal.create(directory, 1024 * 1024);
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            messageHandler.setJournal(journal);
+            messageHandler.writeBulk(ascii("bulk"), ascii(" suffix"));
+            messageHandler.transferFrame(channel, 2, 5);
+        }
+        BinaryMessageHandler reader = new BinaryMessageHandler(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals("bulk suffix", reader.read());
+        assertEquals("23456", reader.read());
+        try (JournalReader journalReader = new JournalReader(directory)) {
+            assertTrue(journalReader.next());
+            assertEquals("bulk suffix", StandardCharsets.UTF_8.decode(journalReader.getPayload()).toString());
+            assertTrue(journalReader.next());
+            assertEquals("23456", StandardCharsets.UTF_8.decode(journalReader.getPayload()).toString());
+            assertFalse(journalReader.next());
+        }
+    }
+
+    private BinaryMessageHandler handler(Transport transport, Compression compression) throws IOException {
+        BinaryMessageHandler handler = new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream());
+        handler.setCompression(compression);
+        return handler;
+    }
+
+    private String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+
+    private ByteBuffer ascii(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private InputStream frames(String... messages) throws IOException {
+        return new ByteArrayInputStream(bytes(messages));
+    }
+
+    private byte[] bytes(String... messages) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMessageHandler writer = new BinaryMessageHandler(null, out);
+        for (String message : messages) {
+            writer.write(message);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Gathering channel which takes at most a few bytes per write, like a socket with a full send buffer.
+     */
+    private static class ChunkedChannel implements GatheringByteChannel {
+
+        private final int chunk;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        private ChunkedChannel(int chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            int budget = chunk;
+            for (int i = offset; i < offset + length && budget > 0; i++) {
+                while (sources[i].hasRemaining() && budget > 0) {
+                    written.write(sources[i].get());
+                    budget--;
+                }
+            }
+            return chunk - budget;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            return (int) write(new ByteBuffer[]{source});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
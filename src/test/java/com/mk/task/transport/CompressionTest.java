@@ -0,0 +1,91 @@
+package com.mk.task.transport;
+
+import com.mk.task.metrics.PlayerMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link Compression}
+ */
+public class CompressionTest {
+
+    private PlayerMetrics previous;
+    private PlayerMetrics metrics;
+
+    @Before
+    public void setUp() {
+        previous = PlayerMetrics.current();
+        metrics = new PlayerMetrics();
+        PlayerMetrics.use(metrics);
+    }
+
+    @After
+    public void tearDown() {
+        PlayerMetrics.use(previous);
+    }
+
+    @Test
+    public void deflateAndInflateTest() throws IOException {
+        byte[] original = repetitive(10_000);
+        try (Compression compression = new Compression(100)) {
+            int compressed = compression.deflate(original, 0, original.length, original.length);
+            assertTrue("Compressed: " + compressed, compressed > 0 && compressed < original.length / 10);
+            byte[] deflated = new byte[compressed];
+            System.arraycopy(compression.deflated(), 0, deflated, 0, compressed);
+            ByteBuffer inflated = compression.inflate(deflated, 0, compressed, original.length);
+            assertEquals(ByteBuffer.wrap(original), inflated);
+        }
+        assertEquals(1, metrics.getCompressedMessages());
+        assertTrue(metrics.getCompressionRatio() > 10);
+    }
+
+    @Test
+    public void incompressibleTest() {
+        byte[] random = new byte[10_000];
+        new Random(1).nextBytes(random);
+        try (Compression compression = new Compression(100)) {
+            assertEquals(-1, compression.deflate(random, 0, random.length, random.length - 4));
+        }
+        assertEquals(0, metrics.getCompressedMessages());
+        assertEquals(0, metrics.getCompressionRatio(), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptFrameTest() throws IOException {
+        byte[] original = repetitive(1_000);
+        try (Compression compression = new Compression(100)) {
+            int compressed = compression.deflate(original, 0, original.length, original.length);
+            compression.inflate(compression.deflated(), 0, compressed / 2, original.length);
+        }
+    }
+
+    @Test
+    public void reusedAfterCloseTest() throws IOException {
+        byte[] original = repetitive(5_000);
+        for (int i = 0; i < 3; i++) {
+            try (Compression compression = new Compression(100)) {
+                int compressed = compression.deflate(original, 0, original.length, original.length);
+                assertEquals(original.length, compression.inflate(compression.deflated(), 0, compressed, original.length).remaining());
+            }
+        }
+        assertEquals(3, metrics.getCompressedMessages());
+    }
+
+    private static byte[] repetitive(int length) {
+        byte[] message = "Message for this Task -- ".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = message[i % message.length];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,114 @@
+package com.mk.task.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.mk.task.Application.MESSAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link DatagramEndpoint}
+ */
+public class DatagramEndpointTest {
+
+    private final static byte[] MESSAGE_BYTES = MESSAGE.getBytes(StandardCharsets.UTF_8);
+
+    private DatagramEndpoint receiver;
+    private DatagramEndpoint initiator;
+
+    @Before
+    public void setUp() throws IOException {
+        receiver = DatagramEndpoint.bind(0, new SocketOptions());
+        initiator = DatagramEndpoint.connect(new InetSocketAddress("localhost", receiver.getLocalPort()), new SocketOptions());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        initiator.close();
+        receiver.close();
+    }
+
+    @Test
+    public void echoTest() throws IOException {
+        assertEquals(DatagramEndpoint.HEADER_LENGTH + MESSAGE_BYTES.length, initiator.send(7, DatagramEndpoint.MESSAGE_TYPE, MESSAGE_BYTES));
+        assertTrue(receiver.receive());
+        assertEquals(7, receiver.getSequence());
+        assertEquals(DatagramEndpoint.MESSAGE_TYPE, receiver.getType());
+        assertEquals(DatagramEndpoint.HEADER_LENGTH + MESSAGE_BYTES.length, receiver.getLength());
+        receiver.echo();
+        assertTrue(initiator.receive(TimeUnit.SECONDS.toNanos(5)));
+        assertEquals(7, initiator.getSequence());
+        assertEquals(DatagramEndpoint.HEADER_LENGTH + MESSAGE_BYTES.length, initiator.getLength());
+    }
+
+    @Test
+    public void poisonPillTypeTest() throws IOException {
+        initiator.send(Long.MAX_VALUE, DatagramEndpoint.POISON_PILL_TYPE, new byte[0]);
+        assertTrue(receiver.receive());
+        assertEquals(Long.MAX_VALUE, receiver.getSequence());
+        assertEquals(DatagramEndpoint.POISON_PILL_TYPE, receiver.getType());
+        assertEquals(DatagramEndpoint.HEADER_LENGTH, receiver.getLength());
+    }
+
+    @Test
+    public void receiveTimeoutTest() throws IOException {
+        long start = System.nanoTime();
+        assertFalse(initiator.receive(TimeUnit.MILLISECONDS.toNanos(20)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    /**
+     * A deadline which passed only takes what already came. It does not mean waiting forever.
+     */
+    @Test(timeout = 5000)
+    public void passedDeadlineTest() throws IOException {
+        assertFalse(initiator.receive(-TimeUnit.MILLISECONDS.toNanos(20)));
+        assertFalse(initiator.receive(0));
+    }
+
+    @Test
+    public void shortDatagramSkippedTest() throws IOException {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            InetSocketAddress address = new InetSocketAddress("localhost", receiver.getLocalPort());
+            channel.send(ByteBuffer.wrap(new byte[]{1, 2, 3}), address);
+            ByteBuffer datagram = ByteBuffer.allocate(DatagramEndpoint.HEADER_LENGTH);
+            datagram.putLong(3).put(DatagramEndpoint.MESSAGE_TYPE).flip();
+            channel.send(datagram, address);
+        }
+        assertTrue(receiver.receive(TimeUnit.SECONDS.toNanos(5)));
+        assertEquals(3, receiver.getSequence());
+    }
+
+    @Test
+    public void closeStopsReceiveTest() throws Exception {
+        CompletableFuture<Boolean> received = CompletableFuture.supplyAsync(() -> {
+            try {
+                return receiver.receive();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        receiver.close();
+        try {
+            received.get(5, TimeUnit.SECONDS);
+            fail("Receive should fail once closed.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getCause() instanceof ClosedChannelException);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mk.task.transport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FlushPolicy}
+ */
+public class FlushPolicyTest {
+
+    @Test
+    public void immediateTest() {
+        assertTrue(FlushPolicy.immediate().shouldFlush(1, System.nanoTime()));
+        assertSame(FlushPolicy.immediate(), FlushPolicy.parse("immediate"));
+    }
+
+    @Test
+    public void everyMessagesTest() {
+        FlushPolicy policy = FlushPolicy.parse("every:3");
+        assertFalse(policy.shouldFlush(1, System.nanoTime()));
+        assertFalse(policy.shouldFlush(2, System.nanoTime()));
+        assertTrue(policy.shouldFlush(3, System.nanoTime()));
+    }
+
+    @Test
+    public void afterMicrosTest() {
+        FlushPolicy policy = FlushPolicy.parse("micros:1000");
+        assertFalse(policy.shouldFlush(5, System.nanoTime()));
+        assertTrue(policy.shouldFlush(1, System.nanoTime() - 2_000_000));
+        assertEquals(1_005_000, policy.flushDueNanos(5_000));
+        assertEquals(Long.MAX_VALUE, FlushPolicy.parse("every:3").flushDueNanos(5_000));
+    }
+
+    @Test
+    public void whenBufferFullTest() {
+        assertFalse(FlushPolicy.parse("full").shouldFlush(1_000_000, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPolicyTest() {
+        FlushPolicy.parse("sometimes");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingAmountTest() {
+        FlushPolicy.parse("every");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeAmountTest() {
+        FlushPolicy.parse("micros:-5");
+    }
+}
@@ -0,0 +1,113 @@
+package com.mk.task.transport;
+
+import com.mk.task.metrics.LatencyReporter;
+import com.mk.task.player.Initiator;
+import com.mk.task.player.Receiver;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link InProcessTransport}
+ */
+public class InProcessTransportTest {
+
+    @Test
+    public void RoundTripTest() throws IOException {
+        InProcessTransport transport = new InProcessTransport(64, WaitStrategy.spin());
+        BinaryMessageHandler initiatorHandler = new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream());
+        BinaryMessageHandler receiverHandler = new BinaryMessageHandler(transport.getPeer().getInputStream(), transport.getPeer().getOutputStream());
+        initiatorHandler.write("Test message");
+        assertEquals("Test message", receiverHandler.read());
+        receiverHandler.write("Test message 1");
+        assertEquals("Test message 1", initiatorHandler.read());
+    }
+
+    @Test
+    public void WrapAroundTest() throws Exception {
+        InProcessTransport transport = new InProcessTransport(64, WaitStrategy.blocking());
+        byte[] sent = new byte[10000];
+        for (int i = 0; i < sent.length; i++) {
+            sent[i] = (byte) i;
+        }
+        Thread writer = new Thread(() -> {
+            try {
+                transport.getOutputStream().write(sent, 0, sent.length);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+        byte[] received = new byte[sent.length];
+        int length = 0;
+        while (length < received.length) {
+            length += transport.getPeer().getInputStream().read(received, length, received.length - length);
+        }
+        writer.join(5000);
+        for (int i = 0; i < sent.length; i++) {
+            assertEquals(sent[i], received[i]);
+        }
+    }
+
+    @Test
+    public void EndOfStreamAfterPeerClosesTest() throws IOException {
+        InProcessTransport transport = new InProcessTransport(64, WaitStrategy.blocking());
+        transport.getOutputStream().write(7);
+        transport.close();
+        assertEquals(7, transport.getPeer().getInputStream().read());
+        assertEquals(-1, transport.getPeer().getInputStream().read());
+    }
+
+    @Test(expected = EOFException.class)
+    public void BinaryHandlerEndOfStreamTest() throws IOException {
+        InProcessTransport transport = new InProcessTransport(64, WaitStrategy.parking());
+        transport.close();
+        new BinaryMessageHandler(transport.getPeer().getInputStream(), null).read();
+    }
+
+    @Test(expected = IOException.class)
+    public void WriteAfterPeerClosesTest() throws IOException {
+        InProcessTransport transport = new InProcessTransport(64, WaitStrategy.yielding());
+        transport.getPeer().close();
+        transport.getOutputStream().write(new byte[128]);
+    }
+
+    @Test
+    public void BinaryPlayersTest() throws Exception {
+        for (String waitStrategy : new String[]{"blocking", "spin", "yield", "park"}) {
+            InProcessTransport transport = new InProcessTransport(1024, WaitStrategy.parse(waitStrategy));
+            InProcessTransport peer = transport.getPeer();
+            exchange(new BinaryMessageHandler(transport.getInputStream(), transport.getOutputStream()),
+                    new BinaryMessageHandler(peer.getInputStream(), peer.getOutputStream()), transport);
+        }
+    }
+
+    @Test
+    public void TextPlayersTest() throws Exception {
+        InProcessTransport transport = new InProcessTransport(1024, WaitStrategy.blocking());
+        InProcessTransport peer = transport.getPeer();
+        exchange(messageHandler(transport), messageHandler(peer), transport);
+    }
+
+    private void exchange(MessageHandler initiatorHandler, MessageHandler receiverHandler, InProcessTransport transport) throws Exception {
+        Thread receiver = new Thread(new Receiver(receiverHandler)::start);
+        receiver.start();
+        LatencyReporter latencyReporter = new LatencyReporter();
+        new Initiator(initiatorHandler, 1000, 8, latencyReporter).start();
+        transport.close();
+        receiver.join(5000);
+        assertEquals(1000, latencyReporter.getTotal().getCount());
+    }
+
+    private MessageHandler messageHandler(Transport transport) throws IOException {
+        return new TextMessageHandler(new BufferedWriter(new OutputStreamWriter(transport.getOutputStream())),
+                new Scanner(transport.getInputStream()));
+    }
+}
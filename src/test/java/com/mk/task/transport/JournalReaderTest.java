@@ -0,0 +1,85 @@
+package com.mk.task.transport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static com.mk.task.transport.MessageJournalTest.assertRecord;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link JournalReader}
+ */
+public class JournalReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The appends are spaced out, so that the next segment is mapped in the meantime.
+     */
+    @Test
+    public void followsSegmentsTest() throws Exception {
+        File directory = folder.newFolder("journal");
+        long records;
+        try (MessageJournal journal = MessageJournal.create(directory, 256)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(MessageJournal.SENT, i % 3, i, ("message " + i).getBytes(StandardCharsets.UTF_8), 0, ("message " + i).length());
+                Thread.sleep(2);
+            }
+            records = journal.getRecords();
+            assertEquals(100, records + journal.getDropped());
+        }
+        assertTrue(MessageJournal.segmentFile(directory, 2).isFile());
+        long read = 0;
+        long lastNanos = -1;
+        try (JournalReader reader = new JournalReader(directory)) {
+            while (reader.next()) {
+                int i = (int) reader.getNanos();
+                assertTrue(i > lastNanos);
+                assertEquals(i % 3, reader.getStream());
+                assertEquals("message " + i, new String(MessageJournalTest.bytes(reader.getPayload()), StandardCharsets.UTF_8));
+                lastNanos = i;
+                read++;
+            }
+        }
+        assertEquals(records, read);
+    }
+
+    @Test
+    public void missingNextSegmentTest() throws IOException {
+        File directory = folder.newFolder("journal");
+        ByteBuffer segment = ByteBuffer.allocate(64);
+        segment.putInt(3).put(MessageJournal.SENT).putShort((short) 0).putLong(7).put((byte) 'a').put((byte) 'b');
+        segment.putInt(MessageJournal.END_OF_SEGMENT);
+        Files.write(MessageJournal.segmentFile(directory, 0).toPath(), segment.array());
+        try (JournalReader reader = new JournalReader(directory)) {
+            assertRecord(reader, MessageJournal.SENT, 0, 7, "ab");
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void noJournalTest() throws IOException {
+        new JournalReader(folder.newFolder("empty"));
+    }
+
+    @Test(expected = IOException.class)
+    public void brokenRecordTest() throws IOException {
+        File directory = folder.newFolder("journal");
+        ByteBuffer segment = ByteBuffer.allocate(32);
+        segment.putInt(1_000).put(MessageJournal.SENT).putShort((short) 0).putLong(7);
+        Files.write(MessageJournal.segmentFile(directory, 0).toPath(), segment.array());
+        try (JournalReader reader = new JournalReader(directory)) {
+            reader.next();
+        }
+    }
+}
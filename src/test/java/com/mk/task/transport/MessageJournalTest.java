@@ -0,0 +1,199 @@
+package com.mk.task.transport;
+
+import com.mk.task.util.Allocations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link MessageJournal}
+ */
+public class MessageJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendAndReadBackTest() throws IOException {
+        File directory = folder.newFolder("journal");
+        File file = folder.newFile("payload.txt");
+        Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+        try (MessageJournal journal = MessageJournal.create(directory, 4096);
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ascii("buffer");
+            journal.append(MessageJournal.SENT, 0, 10, buffer);
+            assertEquals(0, buffer.position());
+            journal.append(MessageJournal.RECEIVED, 3, 20, "xarrayx".getBytes(StandardCharsets.UTF_8), 1, 5);
+            journal.append(MessageJournal.SENT, BinaryMessageHandler.MAX_STREAM, 30, ascii("bulk"), ascii(" suffix"));
+            journal.append(MessageJournal.SENT, 0, 40, channel, 2, 5);
+            journal.append(MessageJournal.RECEIVED, 0, 50, "text");
+            journal.append(MessageJournal.SENT, 0, 60, ByteBuffer.allocate(0));
+            assertEquals(6, journal.getRecords());
+            assertEquals(0, journal.getDropped());
+        }
+        try (JournalReader reader = new JournalReader(directory)) {
+            assertRecord(reader, MessageJournal.SENT, 0, 10, "buffer");
+            assertRecord(reader, MessageJournal.RECEIVED, 3, 20, "array");
+            assertRecord(reader, MessageJournal.SENT, BinaryMessageHandler.MAX_STREAM, 30, "bulk suffix");
+            assertRecord(reader, MessageJournal.SENT, 0, 40, "23456");
+            assertRecord(reader, MessageJournal.RECEIVED, 0, 50, "text");
+            assertRecord(reader, MessageJournal.SENT, 0, 60, "");
+            assertFalse(reader.next());
+        }
+    }
+
+    /**
+     * The next regions of the same file are copied from its mapping. So, the channel is not read again, even once closed.
+     */
+    @Test
+    public void fileRegionFromMappingTest() throws IOException {
+        File directory = folder.newFolder("journal");
+        File file = folder.newFile("payload.txt");
+        Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            journal.append(MessageJournal.SENT, 0, 1, channel, 0, 10);
+            channel.close();
+            journal.append(MessageJournal.SENT, 0, 2, channel, 0, 10);
+            journal.append(MessageJournal.SENT, 0, 3, channel, 4, 3);
+            assertEquals(3, journal.getRecords());
+        }
+        try (JournalReader reader = new JournalReader(directory)) {
+            assertRecord(reader, MessageJournal.SENT, 0, 1, "0123456789");
+            assertRecord(reader, MessageJournal.SENT, 0, 2, "0123456789");
+            assertRecord(reader, MessageJournal.SENT, 0, 3, "456");
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void fileRegionNotInFileTest() throws IOException {
+        File file = folder.newFile("payload.txt");
+        Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+        try (MessageJournal journal = MessageJournal.create(folder.newFolder("journal"), 4096);
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            try {
+                journal.append(MessageJournal.SENT, 0, 1, channel, 8, 5);
+                fail();
+            } catch (IOException e) {
+                assertEquals("Region is not in the file: position: [8], length: [5]", e.getMessage());
+            }
+            assertEquals(0, journal.getRecords());
+        }
+    }
+
+    @Test
+    public void utf8AsStringGetBytesTest() throws IOException {
+        File directory = folder.newFolder("journal");
+        String text = "a\u00e9\u20ac\ud83d\ude00 lone \ud83d and \ude00";
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            journal.append(MessageJournal.SENT, 0, 1, text);
+        }
+        try (JournalReader reader = new JournalReader(directory)) {
+            assertTrue(reader.next());
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), bytes(reader.getPayload()));
+        }
+    }
+
+    @Test
+    public void tooLargeRecordDroppedTest() throws IOException {
+        File directory = folder.newFolder("journal");
+        try (MessageJournal journal = MessageJournal.create(directory, 128)) {
+            journal.append(MessageJournal.SENT, 0, 1, ByteBuffer.allocate(200));
+            journal.append(MessageJournal.SENT, 0, 2, ascii("fits"));
+            assertEquals(1, journal.getRecords());
+            assertEquals(1, journal.getDropped());
+        }
+        try (JournalReader reader = new JournalReader(directory)) {
+            assertRecord(reader, MessageJournal.SENT, 0, 2, "fits");
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void createReplacesPreviousJournalTest() throws IOException {
+        File directory = folder.newFolder("journal");
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            journal.append(MessageJournal.SENT, 0, 1, ascii("old"));
+        }
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            journal.append(MessageJournal.SENT, 0, 2, ascii("new"));
+        }
+        try (JournalReader reader = new JournalReader(directory)) {
+            assertRecord(reader, MessageJournal.SENT, 0, 2, "new");
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void closeDeletesUnusedSegmentTest() throws Exception {
+        File directory = folder.newFolder("journal");
+        MessageJournal journal = MessageJournal.create(directory, 4096);
+        journal.append(MessageJournal.SENT, 0, 1, ascii("only"));
+        journal.close();
+        journal.close();
+        assertTrue(MessageJournal.segmentFile(directory, 0).isFile());
+        assertFalse(MessageJournal.segmentFile(directory, 1).exists());
+        journal.append(MessageJournal.SENT, 0, 2, ascii("closed"));
+        assertEquals(1, journal.getDropped());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooSmallSegmentTest() throws IOException {
+        MessageJournal.create(folder.newFolder("journal"), MessageJournal.RECORD_HEADER_LENGTH);
+    }
+
+    /**
+     * The records are copied into the mapped segment. So, the more records, not the more garbage.
+     */
+    @Test
+    public void appendWithoutAllocationTest() throws IOException {
+        byte[] payload = "binary payload".getBytes(StandardCharsets.UTF_8);
+        try (MessageJournal journal = MessageJournal.create(folder.newFolder("journal"), 16 * 1024 * 1024)) {
+            long fewAllocated = Allocations.allocatedBytes(() -> append(journal, payload, 1_000));
+            long manyAllocated = Allocations.allocatedBytes(() -> append(journal, payload, 101_000));
+            assertTrue("Allocated per record: " + (manyAllocated - fewAllocated) / 100_000.0,
+                    manyAllocated - fewAllocated < 100_000);
+            assertEquals(0, journal.getDropped());
+        }
+    }
+
+    private static void append(MessageJournal journal, byte[] payload, int records) {
+        for (int i = 0; i < records; i++) {
+            journal.append(MessageJournal.SENT, 0, i, payload, 0, payload.length);
+            journal.append(MessageJournal.RECEIVED, 0, i, "text message 1");
+        }
+    }
+
+    static void assertRecord(JournalReader reader, byte direction, int stream, long nanos, String payload) throws IOException {
+        assertTrue(reader.next());
+        assertEquals(direction, reader.getDirection());
+        assertEquals(stream, reader.getStream());
+        assertEquals(nanos, reader.getNanos());
+        assertEquals(payload, new String(bytes(reader.getPayload()), StandardCharsets.UTF_8));
+    }
+
+    static byte[] bytes(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static ByteBuffer ascii(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
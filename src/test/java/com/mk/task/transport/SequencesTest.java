@@ -0,0 +1,63 @@
+package com.mk.task.transport;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link Sequences}
+ */
+public class SequencesTest {
+
+    @Test
+    public void putDecimalTest() {
+        assertEquals("message 0", put("message ", 0));
+        assertEquals("message 7", put("message ", 7));
+        assertEquals("message 10", put("message ", 10));
+        assertEquals("message 2147483647", put("message ", Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putNegativeDecimalTest() {
+        Sequences.putDecimal(ByteBuffer.allocate(16), -1);
+    }
+
+    @Test
+    public void parseTrailingBufferTest() {
+        assertEquals(11, Sequences.parseTrailing(buffer("message 11")));
+        assertEquals(2147483647, Sequences.parseTrailing(buffer("message 2147483647")));
+        assertEquals(-1, Sequences.parseTrailing(buffer("message 2147483648")));
+        assertEquals(-1, Sequences.parseTrailing(buffer("message")));
+        assertEquals(-1, Sequences.parseTrailing(buffer("")));
+    }
+
+    @Test
+    public void parseTrailingPositionedBufferTest() {
+        ByteBuffer buffer = buffer("12 message 34 ");
+        buffer.position(3).limit(13);
+        assertEquals(34, Sequences.parseTrailing(buffer));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    public void parseTrailingStringTest() {
+        assertEquals(11, Sequences.parseTrailing("message 11"));
+        assertEquals(1, Sequences.parseTrailing("message 1"));
+        assertEquals(-1, Sequences.parseTrailing("Unknown"));
+        assertEquals(-1, Sequences.parseTrailing("message 99999999999"));
+    }
+
+    private String put(String prefix, int sequence) {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        buffer.put(prefix.getBytes(StandardCharsets.UTF_8));
+        Sequences.putDecimal(buffer, sequence);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer buffer(String message) {
+        return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,128 @@
+package com.mk.task.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests for {@link SharedMemoryTransport}
+ */
+public class SharedMemoryTransportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private SharedMemoryTransport receiver;
+    private SharedMemoryTransport initiator;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "shm");
+        receiver = SharedMemoryTransport.create(file, 64);
+        initiator = SharedMemoryTransport.open(file, 1000);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        initiator.close();
+        receiver.close();
+    }
+
+    @Test
+    public void RoundTripTest() throws IOException {
+        BinaryMessageHandler initiatorHandler = new BinaryMessageHandler(initiator.getInputStream(), initiator.getOutputStream());
+        BinaryMessageHandler receiverHandler = new BinaryMessageHandler(receiver.getInputStream(), receiver.getOutputStream());
+        initiatorHandler.write("Test message");
+        assertEquals("Test message", receiverHandler.read());
+        receiverHandler.write("Test message 1");
+        assertEquals("Test message 1", initiatorHandler.read());
+    }
+
+    @Test
+    public void WrapAroundTest() throws Exception {
+        byte[] sent = new byte[10000];
+        for (int i = 0; i < sent.length; i++) {
+            sent[i] = (byte) i;
+        }
+        Thread writer = new Thread(() -> {
+            try {
+                initiator.getOutputStream().write(sent, 0, sent.length);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+        byte[] received = new byte[sent.length];
+        int length = 0;
+        while (length < received.length) {
+            length += receiver.getInputStream().read(received, length, received.length - length);
+        }
+        writer.join(5000);
+        for (int i = 0; i < sent.length; i++) {
+            assertEquals(sent[i], received[i]);
+        }
+    }
+
+    @Test
+    public void EndOfStreamAfterPeerClosesTest() throws IOException {
+        initiator.getOutputStream().write(7);
+        initiator.close();
+        assertEquals(7, receiver.getInputStream().read());
+        assertEquals(-1, receiver.getInputStream().read());
+    }
+
+    @Test(expected = EOFException.class)
+    public void BinaryHandlerEndOfStreamTest() throws IOException {
+        initiator.close();
+        new BinaryMessageHandler(receiver.getInputStream(), receiver.getOutputStream()).read();
+    }
+
+    @Test(expected = IOException.class)
+    public void WriteAfterPeerClosesTest() throws IOException {
+        receiver.close();
+        initiator.getOutputStream().write(new byte[128]);
+    }
+
+    @Test
+    public void ReceiverDeletesFileTest() throws IOException {
+        receiver.close();
+        assertFalse(file.exists());
+    }
+
+    /**
+     * The attached flag is set without taking the lock of the initiator, as a crashed initiator leaves the file.
+     */
+    @Test(timeout = 5000, expected = IOException.class)
+    public void PeerGoneWithoutClosingTest() throws IOException {
+        File other = new File(folder.getRoot(), "other");
+        try (SharedMemoryTransport transport = SharedMemoryTransport.create(other, 64);
+             RandomAccessFile randomAccessFile = new RandomAccessFile(other, "rw")) {
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+            buffer.putInt(SharedMemoryTransport.ATTACHED_OFFSET, 1);
+            transport.getInputStream().read();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void OpenTimeoutTest() throws IOException {
+        SharedMemoryTransport.open(new File(folder.getRoot(), "missing"), 50);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void CapacityNotPowerOfTwoTest() throws IOException {
+        SharedMemoryTransport.create(new File(folder.getRoot(), "other"), 100);
+    }
+}
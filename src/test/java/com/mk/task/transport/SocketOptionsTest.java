@@ -0,0 +1,53 @@
+package com.mk.task.transport;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SocketOptions}
+ */
+public class SocketOptionsTest {
+
+    @Test
+    public void applyTest() throws IOException {
+        try (Socket socket = new Socket()) {
+            SocketOptions socketOptions = new SocketOptions();
+            socketOptions.setTcpNoDelay(true);
+            socketOptions.setKeepAlive(true);
+            socketOptions.apply(socket);
+            assertTrue(socket.getTcpNoDelay());
+            assertTrue(socket.getKeepAlive());
+        }
+    }
+
+    @Test
+    public void applyNothingTest() throws IOException {
+        try (Socket socket = new Socket()) {
+            boolean tcpNoDelay = socket.getTcpNoDelay();
+            int sendBufferSize = socket.getSendBufferSize();
+            new SocketOptions().apply(socket);
+            assertEquals(tcpNoDelay, socket.getTcpNoDelay());
+            assertEquals(sendBufferSize, socket.getSendBufferSize());
+            assertFalse(socket.getKeepAlive());
+        }
+    }
+
+    @Test
+    public void applyDatagramTest() throws IOException {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            SocketOptions socketOptions = new SocketOptions();
+            socketOptions.setTcpNoDelay(true);
+            socketOptions.setReceiveBufferSize(64 * 1024);
+            socketOptions.apply(channel);
+            assertTrue(channel.getOption(StandardSocketOptions.SO_RCVBUF) >= 64 * 1024);
+        }
+    }
+}
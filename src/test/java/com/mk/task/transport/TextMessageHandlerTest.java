@@ -0,0 +1,106 @@
+package com.mk.task.transport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link TextMessageHandler}
+ */
+public class TextMessageHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void WriteTest() throws IOException {
+        StringWriter writer = new StringWriter();
+        MessageHandler messageHandler = new TextMessageHandler(writer, null);
+        messageHandler.write("Test message");
+        assertEquals("Test message\n", writer.toString());
+    }
+
+    @Test(expected = IOException.class)
+    public void ExceptionInWriterTest() throws IOException {
+        Writer writer = mock(Writer.class);
+        doThrow(new IOException()).when(writer).write(anyString());
+        MessageHandler messageHandler = new TextMessageHandler(writer, null);
+        messageHandler.write("Test message");
+    }
+
+    @Test
+    public void ReadTest() throws IOException {
+        String input = "Test scanner message";
+        InputStream in = new ByteArrayInputStream(input.getBytes());
+        System.setIn(in);
+        Scanner scanner = new Scanner(in);
+        MessageHandler messageHandler = new TextMessageHandler(null, scanner);
+        assertEquals("Test scanner message", messageHandler.read());
+    }
+
+    @Test
+    public void ReadWithNoMessageTest() throws IOException {
+        String input = "Test scanner message";
+        InputStream in = new ByteArrayInputStream(input.getBytes());
+        System.setIn(in);
+        Scanner scanner = new Scanner(in);
+        scanner.nextLine();
+        MessageHandler messageHandler = new TextMessageHandler(null, scanner);
+        assertEquals("Unknown", messageHandler.read());
+    }
+
+    @Test
+    public void WriteEveryMessagesTest() throws IOException {
+        Writer writer = mock(Writer.class);
+        MessageHandler messageHandler = new TextMessageHandler(writer, null, FlushPolicy.everyMessages(2));
+        messageHandler.write("first");
+        verify(writer, never()).flush();
+        messageHandler.write("second");
+        verify(writer, times(1)).flush();
+    }
+
+    @Test
+    public void FlushBeforeReadTest() throws IOException {
+        Writer writer = mock(Writer.class);
+        Scanner scanner = new Scanner(new ByteArrayInputStream("reply\n".getBytes()));
+        MessageHandler messageHandler = new TextMessageHandler(writer, scanner, FlushPolicy.whenBufferFull());
+        messageHandler.write("request");
+        verify(writer, never()).flush();
+        assertEquals("reply", messageHandler.read());
+        verify(writer, times(1)).flush();
+    }
+
+    /**
+     * Only the messages read are recorded. Not the "Unknown" returned at the end of the stream.
+     */
+    @Test
+    public void JournalTest() throws IOException {
+        File directory = folder.newFolder("journal");
+        Scanner scanner = new Scanner(new ByteArrayInputStream("r\u00e9ply\n".getBytes(StandardCharsets.UTF_8)), "UTF-8");
+        MessageHandler messageHandler = new TextMessageHandler(new StringWriter(), scanner);
+        try (MessageJournal journal = MessageJournal.create(directory, 4096)) {
+            messageHandler.setJournal(journal);
+            messageHandler.write("request");
+            assertEquals("r\u00e9ply", messageHandler.read());
+            assertEquals("Unknown", messageHandler.read());
+        }
+        try (JournalReader reader = new JournalReader(directory)) {
+            assertTrue(reader.next());
+            assertEquals(MessageJournal.SENT, reader.getDirection());
+            assertEquals("request", StandardCharsets.UTF_8.decode(reader.getPayload()).toString());
+            assertTrue(reader.next());
+            assertEquals(MessageJournal.RECEIVED, reader.getDirection());
+            assertEquals("r\u00e9ply", StandardCharsets.UTF_8.decode(reader.getPayload()).toString());
+            assertFalse(reader.next());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mk.task.transport;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link WaitStrategy}
+ */
+public class WaitStrategyTest {
+
+    @Test
+    public void blockingTest() throws Exception {
+        awaitOtherThread(WaitStrategy.parse("blocking"));
+    }
+
+    @Test
+    public void spinTest() throws Exception {
+        awaitOtherThread(WaitStrategy.parse("spin"));
+    }
+
+    @Test
+    public void yieldTest() throws Exception {
+        awaitOtherThread(WaitStrategy.parse("yield"));
+    }
+
+    @Test
+    public void parkTest() throws Exception {
+        awaitOtherThread(WaitStrategy.parse("park"));
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void blockingInterruptedTest() throws InterruptedIOException {
+        Thread.currentThread().interrupt();
+        try {
+            WaitStrategy.blocking().await(() -> false);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownTest() {
+        WaitStrategy.parse("sleep");
+    }
+
+    private void awaitOtherThread(WaitStrategy waitStrategy) throws Exception {
+        AtomicBoolean ready = new AtomicBoolean();
+        Thread signaller = new Thread(() -> {
+            ready.set(true);
+            waitStrategy.signal();
+        });
+        signaller.start();
+        waitStrategy.await(ready::get);
+        assertTrue(ready.get());
+        signaller.join(5000);
+    }
+}
@@ -0,0 +1,23 @@
+package com.mk.task.util;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated by the current thread for allocation assertions.
+ * Eg: {@link com.mk.task.player.ReceiverTest}
+ */
+public class Allocations {
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {
+    }
+
+    public static long allocatedBytes(Runnable task) {
+        long threadId = Thread.currentThread().getId();
+        long before = THREAD_BEAN.getThreadAllocatedBytes(threadId);
+        task.run();
+        return THREAD_BEAN.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -3,8 +3,10 @@ package com.mk.task.util;
 import com.mk.task.player.InitiatorTest;
 
 import java.util.List;
+import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
 
 /**
  * Adds the logs into a list for log assertions.
@@ -13,6 +15,7 @@ import java.util.logging.LogRecord;
 public class LogHandler extends Handler {
 
     private final List<String> logList;
+    private final Formatter formatter = new SimpleFormatter();
 
     public LogHandler(List<String> logList) {
         this.logList = logList;
@@ -20,7 +23,7 @@ public class LogHandler extends Handler {
 
     @Override
     public void publish(LogRecord record) {
-        logList.add(record.getLevel() + " - " + record.getMessage());
+        logList.add(record.getLevel() + " - " + formatter.formatMessage(record));
     }
 
     @Override